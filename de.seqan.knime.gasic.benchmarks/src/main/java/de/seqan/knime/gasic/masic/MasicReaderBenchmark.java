@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.masic;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ingest throughput of the masic readers on generated files held in memory:
+ * the former split based parsing as baseline, the parsing of
+ * {@link MasicReader} and the complete row construction into a lightweight
+ * stand-in of a KNIME container. Besides the time per file, the "bytes" and
+ * "reads" counters report the throughput in bytes/s and reads/s.
+ * 
+ * @author aiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MasicReaderBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int numGenomes;
+
+    @Param({ "100000" })
+    public int numReads;
+
+    /**
+     * Probability that a mapped read maps to one more genome, 0 for unique
+     * reads.
+     */
+    @Param({ "0.0", "0.5" })
+    public double shared;
+
+    private byte[] file;
+
+    /**
+     * Throughput counters, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long bytes;
+        public long reads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            reads = 0;
+        }
+    }
+
+    /**
+     * Stand-in for the KNIME container: plain objects as cells, the rows are
+     * only counted.
+     */
+    private static final class StandInRows extends MasicRowBuilder<Object> {
+        private long numRows = 0;
+        private long numMapped = 0;
+
+        StandInRows(final int numGenomes) {
+            super(numGenomes, false);
+        }
+
+        @Override
+        protected Object[] createCells(final int length) {
+            return new Object[length];
+        }
+
+        @Override
+        protected Object createStringCell(final String value) {
+            return new StringBuilder(value);
+        }
+
+        @Override
+        protected Object getTrue() {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        protected Object getFalse() {
+            return Boolean.FALSE;
+        }
+
+        @Override
+        protected void addRow(final String key, final Object[] cells) {
+            ++numRows;
+            numMapped += (cells[cells.length - 1] == Boolean.TRUE ? 1 : 0);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        StringWriter out = new StringWriter();
+        new MasicGenerator(numGenomes, MasicGenerator.geometric(0.1, shared,
+                Math.min(numGenomes, 5)), numGenomes).writeSample(out,
+                numReads);
+        file = out.toString().getBytes("UTF-8");
+    }
+
+    private BufferedReader open() {
+        return new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(file)));
+    }
+
+    private void count(final Throughput throughput) {
+        throughput.bytes += file.length;
+        throughput.reads += numReads;
+    }
+
+    /**
+     * The parsing of the readers before {@link MasicReader}.
+     */
+    @Benchmark
+    public long split(final Throughput throughput) throws IOException {
+        BufferedReader reader = open();
+        long mapped = 0;
+        String line = reader.readLine();
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(">")) {
+                continue;
+            }
+            String[] tokens = line.trim().split("\t", -1);
+            for (int i = 1; i < tokens.length; ++i) {
+                mapped += Integer.parseInt(tokens[i]);
+            }
+        }
+        reader.close();
+        count(throughput);
+        return mapped;
+    }
+
+    @Benchmark
+    public long parse(final Throughput throughput) throws IOException {
+        MasicReader reader = new MasicReader(open());
+        long mapped = 0;
+        while (reader.next()) {
+            for (int i = 0; i < reader.getNumMappings(); ++i) {
+                mapped += reader.getMapping(i);
+            }
+        }
+        reader.close();
+        count(throughput);
+        return mapped;
+    }
+
+    @Benchmark
+    public long rows(final Throughput throughput) throws IOException {
+        MasicReader reader = new MasicReader(open());
+        StandInRows rows = new StandInRows(reader.getNumGenomes());
+        int rowIdx = 1;
+        while (reader.next()) {
+            rows.addRow(rowIdx++, null, reader);
+        }
+        reader.close();
+        count(throughput);
+        return rows.numRows + rows.numMapped;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Correction problems for the benchmarks: the fixtures of the unit tests and
+ * synthetic problems of arbitrary size and sparsity.
+ * 
+ * @author aiche
+ */
+final class BenchmarkProblem {
+
+    /**
+     * Fraction of the genomes present in a synthetic sample.
+     */
+    private static final double PRESENT_FRACTION = 0.1;
+
+    /**
+     * Largest similarity between two different genomes.
+     */
+    private static final double MAX_SIMILARITY = 0.5;
+
+    private final SimpleMatrix sm;
+    private final SimpleMatrix reads;
+
+    private BenchmarkProblem(final SimpleMatrix sm, final SimpleMatrix reads) {
+        this.sm = sm;
+        this.reads = reads;
+    }
+
+    /**
+     * Creates a synthetic problem. Every genome is similar to itself (1 on
+     * the diagonal) and, with the given probability, to every other genome.
+     * The reads are the exact observations of a sample containing a random
+     * tenth of the genomes.
+     * 
+     * @param numGenomes
+     *            The number of genomes.
+     * @param density
+     *            The fraction of non-zero off-diagonal similarities.
+     * @param seed
+     *            The seed of the generator.
+     * @return The problem.
+     */
+    static BenchmarkProblem synthetic(final int numGenomes,
+            final double density, final long seed) {
+        Random random = new Random(seed);
+        SimpleMatrix sm = new SimpleMatrix(numGenomes, numGenomes);
+        for (int i = 0; i < numGenomes; ++i) {
+            for (int j = 0; j < numGenomes; ++j) {
+                if (i == j) {
+                    sm.set(i, j, 1.0);
+                } else if (random.nextDouble() < density) {
+                    sm.set(i, j, MAX_SIMILARITY * random.nextDouble());
+                }
+            }
+        }
+
+        SimpleMatrix abundances = new SimpleMatrix(numGenomes, 1);
+        double sum = 0.0;
+        for (int i = 0; i < numGenomes; ++i) {
+            if (i == 0 || random.nextDouble() < PRESENT_FRACTION) {
+                abundances.set(i, 0, random.nextDouble());
+                sum += abundances.get(i, 0);
+            }
+        }
+        abundances = abundances.scale(0.9 / sum);
+
+        return new BenchmarkProblem(sm, sm.mult(abundances));
+    }
+
+    /**
+     * Loads a sample of the unit test fixtures (matrix.txt and input.txt).
+     * 
+     * @param sample
+     *            The column of input.txt.
+     * @param numReads
+     *            The number of reads the counts are normalized with.
+     * @return The problem.
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    static BenchmarkProblem fixture(final int sample, final int numReads)
+            throws IOException, URISyntaxException {
+        SimpleMatrix input = SimpleMatrix.loadCSV(BenchmarkProblem.class
+                .getResource("input.txt").toURI().getPath());
+        SimpleMatrix sm = SimpleMatrix.loadCSV(BenchmarkProblem.class
+                .getResource("matrix.txt").toURI().getPath());
+        return new BenchmarkProblem(sm, input.extractVector(false, sample)
+                .divide(numReads));
+    }
+
+    /**
+     * @return The similarity matrix.
+     */
+    SimpleMatrix getSimilarityMatrix() {
+        return sm;
+    }
+
+    /**
+     * @return The normalized read counts.
+     */
+    SimpleMatrix getReads() {
+        return reads;
+    }
+
+    /**
+     * @return A feasible point to evaluate the objective at.
+     */
+    double[] getPoint() {
+        double[] x = new double[sm.numCols()];
+        Arrays.fill(x, 1.0 / sm.numCols());
+        return x;
+    }
+}
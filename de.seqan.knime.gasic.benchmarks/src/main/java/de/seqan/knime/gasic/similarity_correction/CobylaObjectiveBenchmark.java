@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.simple.SimpleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A single evaluation of the objective function, the inner loop of every
+ * COBYLA run, in double and single precision. The same residual computed with
+ * EJML serves as reference for the dense kernels.
+ * 
+ * @author aiche
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CobylaObjectiveBenchmark {
+
+    @Param({ "10", "100", "500", "2000" })
+    public int numGenomes;
+
+    @Param({ "0.01", "0.1", "1.0" })
+    public double density;
+
+    private CobylaObjective objective;
+    private CobylaObjective singleObjective;
+    private double[] x;
+
+    private SimpleMatrix sm;
+    private SimpleMatrix reads;
+    private SimpleMatrix xVector;
+
+    @Setup
+    public void setup() {
+        BenchmarkProblem problem = BenchmarkProblem.synthetic(numGenomes,
+                density, numGenomes);
+        sm = problem.getSimilarityMatrix();
+        reads = problem.getReads();
+        x = problem.getPoint();
+        xVector = new SimpleMatrix(numGenomes, 1, true, x);
+
+        objective = new CobylaObjective(sm, reads);
+        singleObjective = new CobylaObjective(DenseKernels.toFloat(sm
+                .getMatrix().getData(), numGenomes * numGenomes), numGenomes,
+                numGenomes, reads, 1.0);
+    }
+
+    @Benchmark
+    public double objective() {
+        return objective.computeObjectiveValue(x);
+    }
+
+    @Benchmark
+    public double singlePrecisionObjective() {
+        return singleObjective.computeObjectiveValue(x);
+    }
+
+    @Benchmark
+    public double ejmlObjective() {
+        SimpleMatrix residual = sm.mult(xVector).minus(reads);
+        return residual.dot(residual);
+    }
+}
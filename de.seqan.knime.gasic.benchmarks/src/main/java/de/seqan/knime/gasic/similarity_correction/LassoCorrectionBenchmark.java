@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.simple.SimpleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete similarity corrections. A single correction takes from
+ * milliseconds to minutes, so every invocation is measured on its own. The
+ * run time of COBYLA grows about cubically with the number of genomes (about
+ * a minute for 100 genomes), larger problems can be selected on the command
+ * line, e.g. -p numGenomes=2000, together with screening.
+ * 
+ * @author aiche
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LassoCorrectionBenchmark {
+
+    /**
+     * The number of data driven start points of the synthetic problems, the
+     * heuristic start points grow with the number of genomes.
+     */
+    private static final int NUM_STARTS = 8;
+
+    /**
+     * The number of reads of the fixtures, as in LassoCorrectionTest.
+     */
+    private static final int FIXTURE_READS = 100000;
+
+    /**
+     * Synthetic problems of increasing size and density.
+     */
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+
+        @Param({ "10", "50", "100" })
+        public int numGenomes;
+
+        @Param({ "0.01", "0.1", "1.0" })
+        public double density;
+
+        @Param({ "1", "4" })
+        public int numThreads;
+
+        @Param({ "false", "true" })
+        public boolean screening;
+
+        @Param({ "2000" })
+        public int maxIterations;
+
+        private LassoCorrection correction;
+        private SimpleMatrix sm;
+        private SimpleMatrix reads;
+
+        @Setup
+        public void setup() {
+            BenchmarkProblem problem = BenchmarkProblem.synthetic(numGenomes,
+                    density, numGenomes);
+            sm = problem.getSimilarityMatrix();
+            reads = problem.getReads();
+            correction = new LassoCorrection(new LassoSettings.Builder()
+                    .threads(numThreads).maxIterations(maxIterations)
+                    .startPoints(StartPointStrategy.DATA_DRIVEN, NUM_STARTS)
+                    .screening(screening).build());
+        }
+    }
+
+    /**
+     * The first sample of the unit test fixtures with the default settings of
+     * the node.
+     */
+    @State(Scope.Benchmark)
+    public static class Fixture {
+
+        @Param({ "1", "4" })
+        public int numThreads;
+
+        private LassoCorrection correction;
+        private SimpleMatrix sm;
+        private SimpleMatrix reads;
+
+        @Setup
+        public void setup() throws IOException, URISyntaxException {
+            BenchmarkProblem problem = BenchmarkProblem.fixture(0,
+                    FIXTURE_READS);
+            sm = problem.getSimilarityMatrix();
+            reads = problem.getReads();
+            correction = new LassoCorrection(0, numThreads, 1.0, 1.0e-10,
+                    10000);
+        }
+    }
+
+    @Benchmark
+    public double[] synthetic(final Synthetic state) {
+        return state.correction.similarityCorrection(state.sm, state.reads);
+    }
+
+    @Benchmark
+    public double[] fixture(final Fixture state) {
+        return state.correction.similarityCorrection(state.sm, state.reads);
+    }
+}
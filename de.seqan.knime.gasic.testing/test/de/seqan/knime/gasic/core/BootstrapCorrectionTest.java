@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.seqan.knime.gasic.masic.MasicGenerator;
+import de.seqan.knime.gasic.masic.MasicReader;
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoSettings;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
+
+/**
+ * @author aiche
+ */
+public class BootstrapCorrectionTest {
+
+    private static final int NUM_GENOMES = 6;
+
+    /**
+     * Reads the masic content into a matrix, the reads of a simulation get
+     * the given source.
+     */
+    private static void read(final String content, final MappingMatrix matrix,
+            final int source) throws IOException {
+        MasicReader reader = new MasicReader(new BufferedReader(
+                new StringReader(content)));
+        while (reader.next()) {
+            int read = (source < 0 ? matrix.addRead() : matrix.addRead(source));
+            for (int m = 0; m < reader.getNumMappings(); ++m) {
+                matrix.setMapped(read, reader.getMapping(m));
+            }
+        }
+        reader.close();
+    }
+
+    static MappingMatrix[] generate(final int numReads,
+            final int numSimReads) throws IOException {
+        MasicGenerator generator = new MasicGenerator(NUM_GENOMES,
+                MasicGenerator.geometric(0.1, 0.3, 3), 42);
+        MappingMatrix reads = new MappingMatrix(NUM_GENOMES, 0);
+        StringWriter sample = new StringWriter();
+        generator.writeSample(sample, numReads);
+        read(sample.toString(), reads, -1);
+
+        MappingMatrix simulations = new MappingMatrix(NUM_GENOMES, 0);
+        for (int g = 0; g < NUM_GENOMES; ++g) {
+            StringWriter simulation = new StringWriter();
+            generator.writeSimulation(simulation, g, numSimReads);
+            read(simulation.toString(), simulations, g);
+        }
+        return new MappingMatrix[] { reads, simulations };
+    }
+
+    /**
+     * Counts over the bitmaps, with and without weights.
+     */
+    @Test
+    public void testCounts() {
+        // more than 64 genomes, so the bitmaps span several words
+        MappingMatrix matrix = new MappingMatrix(70, 1);
+        int r0 = matrix.addRead(0);
+        matrix.setMapped(r0, 0);
+        matrix.setMapped(r0, 69);
+        int r1 = matrix.addRead(0);
+        matrix.setMapped(r1, 1);
+        int r2 = matrix.addRead(2);
+        matrix.setMapped(r2, 2);
+        matrix.setMapped(r2, 69);
+
+        assertEquals(3, matrix.getNumReads());
+        assertTrue(matrix.hasSources());
+        assertTrue(matrix.isMapped(r0, 69));
+        assertFalse(matrix.isMapped(r1, 69));
+        assertEquals(0, matrix.getSourceStart(0));
+        assertEquals(2, matrix.getSourceEnd(0));
+        assertEquals(2, matrix.getSourceStart(1));
+        assertEquals(2, matrix.getSourceEnd(1));
+        assertEquals(3, matrix.getSourceEnd(2));
+
+        int[] counts = matrix.getGenomeCounts(null);
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[69]);
+        counts = matrix.getGenomeCounts(new int[] { 3, 0, 1 });
+        assertEquals(3, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(4, counts[69]);
+
+        int[][] sourceCounts = matrix.getSourceCounts(null);
+        assertEquals(1, sourceCounts[0][1]);
+        assertEquals(1, sourceCounts[2][69]);
+        int[] selfCounts = matrix.getSelfCounts(new int[] { 2, 5, 1 });
+        assertEquals(2, selfCounts[0]);
+        assertEquals(0, selfCounts[1]);
+        assertEquals(1, selfCounts[2]);
+
+        int[] readPatterns = new int[3];
+        assertEquals(3, matrix.getPatterns(readPatterns).getNumPatterns());
+    }
+
+    /**
+     * Off heap matrices count like heap matrices.
+     */
+    @Test
+    public void testMapped() throws IOException {
+        MappingMatrix[] data = generate(2000, 200);
+        MappingMatrix mapped = MappingMatrix.createMapped(NUM_GENOMES, 16);
+        try {
+            for (int r = 0; r < data[1].getNumReads(); ++r) {
+                int source = 0;
+                while (r >= data[1].getSourceEnd(source)) {
+                    ++source;
+                }
+                int read = mapped.addRead(source);
+                for (int g = 0; g < NUM_GENOMES; ++g) {
+                    if (data[1].isMapped(r, g)) {
+                        mapped.setMapped(read, g);
+                    }
+                }
+            }
+            assertEquals(0, mapped.getSizeInBytes() - 4L * NUM_GENOMES);
+            int[][] expected = data[1].getSourceCounts(null);
+            int[][] actual = mapped.getSourceCounts(null);
+            for (int g = 0; g < NUM_GENOMES; ++g) {
+                assertArrayEquals(expected[g], actual[g]);
+            }
+        } finally {
+            mapped.close();
+        }
+    }
+
+    /**
+     * The simulated reads of every genome are resampled separately.
+     */
+    @Test
+    public void testBootstrap() {
+        MappingMatrix matrix = new MappingMatrix(3, 0);
+        for (int s = 0; s < 3; ++s) {
+            for (int r = 0; r < 10 * (s + 1); ++r) {
+                matrix.setMapped(matrix.addRead(s), s);
+            }
+        }
+        int[] weights = Bootstrap.sample(matrix,
+                ResamplingStrategy.MULTINOMIAL, new Random(1));
+        for (int s = 0; s < 3; ++s) {
+            int sum = 0;
+            for (int r = matrix.getSourceStart(s); r < matrix.getSourceEnd(s); ++r) {
+                sum += weights[r];
+            }
+            assertEquals(10 * (s + 1), sum);
+        }
+        assertArrayEquals(
+                Bootstrap.sample(matrix, ResamplingStrategy.POISSON,
+                        new Random(7)),
+                Bootstrap.sample(matrix, ResamplingStrategy.POISSON,
+                        new Random(7)));
+    }
+
+    /**
+     * Both engines estimate the abundances of a generated sample, equal
+     * seeds give equal results.
+     */
+    @Test
+    public void testCorrection() throws IOException {
+        MappingMatrix[] data = generate(2000, 200);
+        SolverExecutor executor = new SolverExecutor(1);
+        try {
+            for (CorrectionEngine engine : new CorrectionEngine[] {
+                    CorrectionEngine.LASSO, CorrectionEngine.EM }) {
+                BootstrapCorrection correction = new BootstrapCorrection(
+                        engine, ResamplingStrategy.MULTINOMIAL,
+                        new LassoCorrection(new LassoSettings.Builder()
+                                .threads(1).maxIterations(2000)
+                                .startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                                .build()),
+                        new EMCorrection(), true);
+                correction.setWarmStart(true);
+
+                BootstrapResult result = correction.run(data[0], data[1], 3,
+                        new Random(5), executor, BootstrapMonitor.NONE,
+                        LassoCorrection.NO_DEADLINE);
+                assertEquals(3, result.getNumCompleted());
+
+                double[] mean = result.getSummary().getMean();
+                double sum = 0.0;
+                for (double a : mean) {
+                    sum += a;
+                }
+                assertTrue(engine + ": " + sum, sum > 0.5 && sum <= 1.0 + 1e-6);
+                // the first genome is the most abundant one
+                for (int g = 1; g < NUM_GENOMES; ++g) {
+                    assertTrue(engine.toString(), mean[0] > mean[g]);
+                }
+
+                BootstrapResult again = correction.run(data[0], data[1], 3,
+                        new Random(5), executor, BootstrapMonitor.NONE,
+                        LassoCorrection.NO_DEADLINE);
+                assertArrayEquals(mean, again.getSummary().getMean(), 0.0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
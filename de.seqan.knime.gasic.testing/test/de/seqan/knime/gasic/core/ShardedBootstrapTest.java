@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoSettings;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
+
+/**
+ * @author aiche
+ */
+public class ShardedBootstrapTest {
+
+    /**
+     * Merged summaries equal the summary of all replicates.
+     */
+    @Test
+    public void testMerge() {
+        Random random = new Random(3);
+        BootstrapSummary all = new BootstrapSummary(4, 0.2);
+        BootstrapSummary first = new BootstrapSummary(4, 0.2);
+        BootstrapSummary second = new BootstrapSummary(4, 0.2);
+        for (int i = 0; i < 10; ++i) {
+            double[] abundances = new double[4];
+            for (int j = 0; j < 4; ++j) {
+                abundances[j] = random.nextDouble();
+            }
+            all.add(abundances);
+            (i < 3 ? first : second).add(abundances);
+        }
+        first.merge(second);
+
+        assertEquals(10, first.getNumReplicates());
+        assertArrayEquals(all.getMean(), first.getMean(), 1e-12);
+        assertArrayEquals(all.getVariance(), first.getVariance(), 1e-12);
+        assertArrayEquals(all.getFailRate(), first.getFailRate(), 0.0);
+    }
+
+    /**
+     * Shards computed by local worker processes give the result of the
+     * replicates computed in this JVM.
+     */
+    @Test
+    public void testLocalWorkers() throws IOException {
+        MappingMatrix[] data = BootstrapCorrectionTest.generate(2000, 200);
+        // without warm starts every replicate only depends on its seed
+        BootstrapCorrection correction = new BootstrapCorrection(
+                CorrectionEngine.LASSO, ResamplingStrategy.MULTINOMIAL,
+                new LassoCorrection(new LassoSettings.Builder().threads(1)
+                        .maxIterations(2000)
+                        .startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                        .build()), new EMCorrection(),
+                true);
+
+        SolverExecutor executor = new SolverExecutor(1);
+        BootstrapResult local;
+        try {
+            local = correction.run(data[0], data[1], 0, 5, 11L, executor,
+                    BootstrapMonitor.NONE, LassoCorrection.NO_DEADLINE);
+        } finally {
+            executor.shutdown();
+        }
+
+        BootstrapResult sharded = new ShardedBootstrap(correction,
+                new LocalWorkerLauncher(), 2, 1).run(data[0], data[1], 5,
+                11L, SolverMonitor.NONE, LassoCorrection.NO_DEADLINE);
+
+        assertEquals(5, sharded.getNumCompleted());
+        assertEquals(5, sharded.getNumRequested());
+        BootstrapSummary expected = local.getSummary();
+        BootstrapSummary actual = sharded.getSummary();
+        assertArrayEquals(expected.getMean(), actual.getMean(), 1e-12);
+        assertArrayEquals(expected.getVariance(), actual.getVariance(), 1e-12);
+        assertArrayEquals(expected.getFailRate(), actual.getFailRate(), 0.0);
+    }
+
+    /**
+     * A worker estimates with the similarity model of its job.
+     */
+    @Test
+    public void testModelJob() throws IOException {
+        MappingMatrix[] data = BootstrapCorrectionTest.generate(2000, 200);
+        SimilarityModel model = SimilarityModel.create(new String[] { "a",
+                "b", "c", "d", "e", "f" }, data[1], 4,
+                ResamplingStrategy.MULTINOMIAL, 2L);
+        BootstrapCorrection correction = new BootstrapCorrection(
+                CorrectionEngine.EM, ResamplingStrategy.MULTINOMIAL,
+                new LassoCorrection(new LassoSettings.Builder().threads(1)
+                        .maxIterations(2000)
+                        .startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                        .build()), new EMCorrection(),
+                true);
+
+        SolverExecutor executor = new SolverExecutor(1);
+        BootstrapResult local;
+        try {
+            local = correction.run(data[0], model, 1, 3, 7L, executor,
+                    BootstrapMonitor.NONE, LassoCorrection.NO_DEADLINE);
+        } finally {
+            executor.shutdown();
+        }
+
+        ByteArrayOutputStream job = new ByteArrayOutputStream();
+        ShardWorker.writeJob(new DataOutputStream(job), correction, data[0],
+                model, 1, 3, 7L, 1, LassoCorrection.NO_DEADLINE);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ShardWorker.run(new DataInputStream(new ByteArrayInputStream(
+                job.toByteArray())), new DataOutputStream(result));
+        BootstrapResult worker = ShardWorker.readResult(new DataInputStream(
+                new ByteArrayInputStream(result.toByteArray())));
+
+        assertEquals(3, worker.getNumCompleted());
+        assertArrayEquals(local.getSummary().getMean(), worker.getSummary()
+                .getMean(), 1e-12);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author aiche
+ */
+public class SimilarityIndexTest {
+
+    private static final String[] NAMES = { "g0", "g1", "g2", "g3", "g4",
+            "g5" };
+
+    /**
+     * Loading some genomes of an index equals selecting them from the model.
+     */
+    @Test
+    public void testLoad() throws IOException {
+        SimilarityModel model = SimilarityModel.create(NAMES,
+                BootstrapCorrectionTest.generate(10, 200)[1], 2,
+                ResamplingStrategy.MULTINOMIAL, 7L);
+        File file = File.createTempFile("gasic-index", ".gsi");
+        try {
+            SimilarityIndex.write(file, model);
+            SimilarityIndex index = SimilarityIndex.open(file);
+            try {
+                assertEquals(NAMES.length, index.getNumGenomes());
+                assertEquals(2, index.getNumReplicates());
+                assertArrayEquals(NAMES, index.getGenomeNames());
+                assertTrue(index.contains("g4"));
+                assertFalse(index.contains("g6"));
+
+                String[] selected = { "g4", "g0", "g2" };
+                SimilarityModelTest.assertModelsEqual(model.select(selected),
+                        index.load(selected));
+            } finally {
+                index.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Restricting the reads of a sample keeps every read and the mappings to
+     * the selected genomes.
+     */
+    @Test
+    public void testSelectGenomes() throws IOException {
+        MappingMatrix reads = BootstrapCorrectionTest.generate(100, 10)[0];
+        int[] genomes = { 3, 1 };
+        MappingMatrix selected = reads.selectGenomes(genomes);
+        assertEquals(reads.getNumReads(), selected.getNumReads());
+        assertEquals(2, selected.getNumGenomes());
+        int[] counts = reads.getGenomeCounts(null);
+        assertArrayEquals(new int[] { counts[3], counts[1] },
+                selected.getGenomeCounts(null));
+    }
+
+    /**
+     * Updating an index record by record equals updating its model.
+     */
+    @Test
+    public void testUpdate() throws IOException {
+        MappingMatrix simulations = BootstrapCorrectionTest.generate(10, 200)[1];
+        String[] first = { "g0", "g1", "g2", "g3" };
+        SimilarityModel model = SimilarityModel.create(first,
+                SimilarityModelTest.copy(simulations,
+                        new int[] { 0, 1, 2, 3 }, 4), 2,
+                ResamplingStrategy.MULTINOMIAL, 5L);
+
+        // g1 is obsolete, g4 and g5 are added
+        String[] sources = { "g0", "g2", "g3", "g4", "g5" };
+        MappingMatrix remapped = SimilarityModelTest.copy(simulations,
+                new int[] { 0, 2, 3, 4, 5 }, 6);
+        Set<String> removed = Collections.singleton("g1");
+        File file = File.createTempFile("gasic-index", ".gsi");
+        File updated = File.createTempFile("gasic-index", ".gsi");
+        try {
+            SimilarityIndex.write(file, model);
+            SimilarityIndex index = SimilarityIndex.open(file);
+            try {
+                index.update(updated, NAMES, sources, remapped, removed);
+            } finally {
+                index.close();
+            }
+
+            SimilarityModel expected = SimilarityModel.create(NAMES,
+                    simulations, 2, ResamplingStrategy.MULTINOMIAL, 5L)
+                    .select(sources);
+            SimilarityModelTest.assertModelsEqual(expected,
+                    model.update(NAMES, sources, remapped, removed));
+            index = SimilarityIndex.open(updated);
+            try {
+                assertArrayEquals(sources, index.getGenomeNames());
+                SimilarityModelTest.assertModelsEqual(expected,
+                        index.load(sources));
+            } finally {
+                index.close();
+            }
+        } finally {
+            file.delete();
+            updated.delete();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoSettings;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
+
+/**
+ * @author aiche
+ */
+public class SimilarityModelTest {
+
+    private static final String[] NAMES = { "g0", "g1", "g2", "g3", "g4",
+            "g5" };
+
+    /**
+     * The model holds the counts of the simulated reads and of the
+     * replicates, drawn with their own seed for every genome.
+     */
+    @Test
+    public void testCreate() throws IOException {
+        MappingMatrix simulations = BootstrapCorrectionTest.generate(10, 200)[1];
+        SimilarityModel model = SimilarityModel.create(NAMES, simulations, 3,
+                ResamplingStrategy.MULTINOMIAL, 11L);
+
+        assertEquals(NAMES.length, model.getNumGenomes());
+        assertEquals(3, model.getNumReplicates());
+        assertArrayEquals(new int[] { 200, 200, 200, 200, 200, 200 },
+                model.getTotals());
+        assertCountsEqual(simulations.getSourceCounts(null), model.getCounts());
+        assertArrayEquals(simulations.getSourceCounts(2, Bootstrap.sample(
+                simulations, 2, ResamplingStrategy.MULTINOMIAL, new Random(
+                        BootstrapCorrection.getReplicateSeed(
+                                BootstrapCorrection.getReplicateSeed(11L, 1),
+                                "g2".hashCode())))), model.getCounts(1)[2]);
+        // replicates are reused if there are more bootstrap samples
+        assertSame(model.getCounts(1), model.getCounts(4));
+
+        SimilarityModel selected = model.select(new String[] { "g3", "g1" });
+        assertArrayEquals(new String[] { "g3", "g1" },
+                selected.getGenomeNames());
+        assertEquals(model.getCounts()[3][1], selected.getCounts()[0][1]);
+        assertEquals(model.getCounts(2)[1][1], selected.getCounts(2)[1][1]);
+
+        SimilarityModel none = SimilarityModel.create(NAMES, simulations, 0,
+                ResamplingStrategy.POISSON, 11L);
+        assertSame(none.getCounts(), none.getCounts(7));
+    }
+
+    /**
+     * The binary form restores the model.
+     */
+    @Test
+    public void testSerialization() throws IOException {
+        SimilarityModel model = SimilarityModel.create(NAMES,
+                BootstrapCorrectionTest.generate(10, 200)[1], 2,
+                ResamplingStrategy.POISSON, 3L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+
+        SimilarityModel read = SimilarityModel.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+        assertModelsEqual(model, read);
+    }
+
+    /**
+     * Adding genomes to a model gives the model built from scratch, removing
+     * genomes drops their rows and columns.
+     */
+    @Test
+    public void testUpdate() throws IOException {
+        MappingMatrix simulations = BootstrapCorrectionTest.generate(10, 200)[1];
+        SimilarityModel expected = SimilarityModel.create(NAMES, simulations,
+                3, ResamplingStrategy.POISSON, 13L);
+
+        // the first four genomes, mapped against them only
+        String[] first = { "g0", "g1", "g2", "g3" };
+        SimilarityModel model = SimilarityModel.create(first,
+                copy(simulations, new int[] { 0, 1, 2, 3 }, 4), 3,
+                ResamplingStrategy.POISSON, 13L);
+        Set<String> none = Collections.emptySet();
+        assertModelsEqual(expected,
+                model.update(NAMES, NAMES, simulations, none));
+
+        // without the remapped reads of the model, only the rows of the
+        // added genomes are counted
+        SimilarityModel added = model.update(NAMES, new String[] { "g4",
+                "g5" }, copy(simulations, new int[] { 4, 5 }, 6), none);
+        assertArrayEquals(NAMES, added.getGenomeNames());
+        assertArrayEquals(expected.getCounts()[4], added.getCounts()[4]);
+        assertArrayEquals(expected.getCounts(2)[5], added.getCounts(2)[5]);
+        assertEquals(0, added.getCounts()[0][4]);
+        assertEquals(model.getCounts()[0][1], added.getCounts()[0][1]);
+
+        String[] kept = { "g0", "g2", "g3", "g4", "g5" };
+        assertModelsEqual(expected.select(kept), expected.update(null, null,
+                null, Collections.singleton("g1")));
+    }
+
+    /**
+     * Copies the simulated reads of some genomes, mapped against the first
+     * genomes.
+     */
+    static MappingMatrix copy(final MappingMatrix simulations,
+            final int[] sources, final int numColumns) {
+        MappingMatrix copy = new MappingMatrix(numColumns, 0);
+        for (int i = 0; i < sources.length; ++i) {
+            for (int r = simulations.getSourceStart(sources[i]); r < simulations
+                    .getSourceEnd(sources[i]); ++r) {
+                final int read = copy.addRead(i);
+                for (int g = 0; g < numColumns; ++g) {
+                    if (simulations.isMapped(r, g)) {
+                        copy.setMapped(read, g);
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    static void assertModelsEqual(final SimilarityModel expected,
+            final SimilarityModel actual) {
+        assertArrayEquals(expected.getGenomeNames(), actual.getGenomeNames());
+        assertArrayEquals(expected.getTotals(), actual.getTotals());
+        assertEquals(expected.getNumReplicates(), actual.getNumReplicates());
+        assertEquals(expected.getResampling(), actual.getResampling());
+        assertEquals(expected.getSeed(), actual.getSeed());
+        assertCountsEqual(expected.getCounts(), actual.getCounts());
+        for (int r = 0; r < expected.getNumReplicates(); ++r) {
+            assertCountsEqual(expected.getCounts(r), actual.getCounts(r));
+        }
+    }
+
+    /**
+     * Both engines estimate the abundances with a model instead of the
+     * simulated reads.
+     */
+    @Test
+    public void testCorrection() throws IOException {
+        MappingMatrix[] data = BootstrapCorrectionTest.generate(2000, 200);
+        SimilarityModel model = SimilarityModel.create(NAMES, data[1], 3,
+                ResamplingStrategy.MULTINOMIAL, 5L);
+        SolverExecutor executor = new SolverExecutor(1);
+        try {
+            for (CorrectionEngine engine : new CorrectionEngine[] {
+                    CorrectionEngine.LASSO, CorrectionEngine.EM }) {
+                BootstrapCorrection correction = new BootstrapCorrection(
+                        engine, ResamplingStrategy.MULTINOMIAL,
+                        new LassoCorrection(new LassoSettings.Builder()
+                                .threads(1).maxIterations(2000)
+                                .startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                                .build()),
+                        new EMCorrection(), true);
+
+                BootstrapResult result = correction.run(data[0], model, 3,
+                        new Random(5), executor, BootstrapMonitor.NONE,
+                        LassoCorrection.NO_DEADLINE);
+                assertEquals(3, result.getNumCompleted());
+
+                double[] mean = result.getSummary().getMean();
+                double sum = 0.0;
+                for (double a : mean) {
+                    sum += a;
+                }
+                assertTrue(engine + ": " + sum, sum > 0.5 && sum <= 1.0 + 1e-6);
+                for (int g = 1; g < NAMES.length; ++g) {
+                    assertTrue(engine.toString(), mean[0] > mean[g]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * With a model, genomes without reads are dropped before the estimation.
+     * If the simulated reads of such a genome do not map to the genomes with
+     * reads, the LASSO estimate equals the one of the two-table path, which
+     * gives the genome no abundance.
+     */
+    @Test
+    public void testAbsentGenome() {
+        String[] names = { "g0", "g1", "g2" };
+        MappingMatrix simulations = new MappingMatrix(names.length, 0);
+        addReads(simulations, 0, 80, 0);
+        addReads(simulations, 0, 20, 0, 1);
+        addReads(simulations, 1, 70, 1);
+        addReads(simulations, 1, 30, 0, 1);
+        addReads(simulations, 2, 100, 2);
+        MappingMatrix reads = new MappingMatrix(names.length, 0);
+        addReads(reads, -1, 60, 0);
+        addReads(reads, -1, 25, 1);
+        addReads(reads, -1, 15, 0, 1);
+
+        LassoCorrection lc = new LassoCorrection(new LassoSettings.Builder()
+                .threads(1).startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                .build());
+        final int numReads = reads.getNumReads();
+        double[] full = lc.solve(
+                BootstrapCorrection.getSimilarityMatrix(simulations
+                        .getSourceCounts(null)),
+                BootstrapCorrection.getReadVector(reads.getGenomeCounts(null),
+                        numReads), null).getSolution();
+
+        SimilarityModel model = SimilarityModel.create(names, simulations, 0,
+                ResamplingStrategy.MULTINOMIAL, 1L).select(
+                new String[] { "g0", "g1" });
+        MappingMatrix mapped = reads.selectGenomes(new int[] { 0, 1 });
+        double[] selected = lc.solve(
+                BootstrapCorrection.getSimilarityMatrix(model.getCounts()),
+                BootstrapCorrection.getReadVector(mapped.getGenomeCounts(null),
+                        numReads), null).getSolution();
+
+        assertEquals(full[0], selected[0], 1e-4);
+        assertEquals(full[1], selected[1], 1e-4);
+        assertEquals(0.0, full[2], 1e-4);
+    }
+
+    private static void addReads(final MappingMatrix matrix, final int source,
+            final int count, final int... genomes) {
+        for (int i = 0; i < count; ++i) {
+            int read = (source < 0 ? matrix.addRead() : matrix.addRead(source));
+            for (int g : genomes) {
+                matrix.setMapped(read, g);
+            }
+        }
+    }
+
+    private static void assertCountsEqual(final int[][] expected,
+            final int[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int g = 0; g < expected.length; ++g) {
+            assertArrayEquals(expected[g], actual[g]);
+        }
+    }
+}
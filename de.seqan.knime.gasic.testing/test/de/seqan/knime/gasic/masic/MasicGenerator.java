@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.masic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic masic files, for tests and benchmarks
+ * of the readers and the correction.
+ * 
+ * Every read originates from a source genome. The number of genomes it maps
+ * to is drawn from the multiplicity distribution. A mapped read always maps
+ * to its source genome, the remaining mappings go to the closely related
+ * genomes, i.e., the genomes with neighboring indices. This yields the
+ * clustered mapping patterns of real reference sets instead of random ones.
+ * 
+ * @author aiche
+ */
+public final class MasicGenerator {
+
+    /**
+     * Number of neighbors on each side of a genome that reads can be shared
+     * with.
+     */
+    private static final int NUM_RELATIVES = 4;
+
+    private final int numGenomes;
+    private final double[] multiplicity;
+    private final long seed;
+
+    /**
+     * @param numGenomes
+     *            The number of genomes.
+     * @param multiplicity
+     *            multiplicity[k] is the probability that a read maps to k
+     *            genomes (k = 0 for unmapped reads). Normalized internally.
+     * @param seed
+     *            The seed, equal seeds produce equal files.
+     */
+    public MasicGenerator(final int numGenomes, final double[] multiplicity,
+            final long seed) {
+        if (multiplicity.length < 2
+                || multiplicity.length > Math.min(numGenomes,
+                        2 * NUM_RELATIVES + 1) + 1) {
+            throw new IllegalArgumentException(
+                    "Reads can map to at most one genome and its "
+                            + (2 * NUM_RELATIVES) + " relatives.");
+        }
+        this.numGenomes = numGenomes;
+        this.seed = seed;
+
+        double sum = 0.0;
+        for (double p : multiplicity) {
+            sum += p;
+        }
+        this.multiplicity = new double[multiplicity.length];
+        for (int k = 0; k < multiplicity.length; ++k) {
+            this.multiplicity[k] = multiplicity[k] / sum;
+        }
+    }
+
+    /**
+     * A multiplicity distribution where a fraction of the reads is unmapped
+     * and the number of genomes of a mapped read is geometric.
+     * 
+     * @param unmapped
+     *            The fraction of unmapped reads.
+     * @param shared
+     *            The probability that a mapped read maps to one more genome.
+     * @param maxGenomes
+     *            The largest number of genomes of a read.
+     * @return The distribution.
+     */
+    public static double[] geometric(final double unmapped,
+            final double shared, final int maxGenomes) {
+        double[] multiplicity = new double[maxGenomes + 1];
+        multiplicity[0] = unmapped;
+        double p = 1.0 - unmapped;
+        for (int k = 1; k <= maxGenomes; ++k) {
+            multiplicity[k] = p * (k < maxGenomes ? 1.0 - shared : 1.0);
+            p *= shared;
+        }
+        return multiplicity;
+    }
+
+    /**
+     * Writes the reads of a sample in which the abundance of genome g is
+     * proportional to 1 / (g + 1).
+     * 
+     * @param out
+     *            Receives the masic file.
+     * @param numReads
+     *            The number of reads.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void writeSample(final Writer out, final int numReads)
+            throws IOException {
+        double[] cumulative = new double[numGenomes];
+        double sum = 0.0;
+        for (int g = 0; g < numGenomes; ++g) {
+            sum += 1.0 / (g + 1);
+            cumulative[g] = sum;
+        }
+
+        Random random = new Random(seed);
+        writeHeader(out, numReads);
+        for (int r = 0; r < numReads; ++r) {
+            double u = random.nextDouble() * sum;
+            int source = 0;
+            while (source < numGenomes - 1 && cumulative[source] < u) {
+                ++source;
+            }
+            writeRead(out, "read" + r, source, random);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the simulated reads of a single genome, one of the files read by
+     * the list reader.
+     * 
+     * @param out
+     *            Receives the masic file.
+     * @param genome
+     *            The source genome of all reads.
+     * @param numReads
+     *            The number of reads.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void writeSimulation(final Writer out, final int genome,
+            final int numReads) throws IOException {
+        Random random = new Random(seed + genome);
+        writeHeader(out, numReads);
+        for (int r = 0; r < numReads; ++r) {
+            writeRead(out, "sim" + genome + "_" + r, genome, random);
+        }
+        out.flush();
+    }
+
+    private void writeHeader(final Writer out, final int numReads)
+            throws IOException {
+        out.write(numGenomes + "\t" + numReads + "\n");
+        for (int g = 0; g < numGenomes; ++g) {
+            out.write(">genome" + g + "\n");
+        }
+    }
+
+    private void writeRead(final Writer out, final String name,
+            final int source, final Random random) throws IOException {
+        int k = 0;
+        double u = random.nextDouble();
+        while (k < multiplicity.length - 1 && u >= multiplicity[k]) {
+            u -= multiplicity[k];
+            ++k;
+        }
+        // genomes at the ends of the index range have fewer relatives
+        k = Math.min(k, Math.min(numGenomes - 1, source + NUM_RELATIVES)
+                - Math.max(0, source - NUM_RELATIVES) + 1);
+
+        out.write(name);
+        if (k > 0) {
+            out.write("\t" + source);
+        }
+        // distinct relatives within the neighborhood of the source genome
+        boolean[] used = new boolean[2 * NUM_RELATIVES + 1];
+        used[NUM_RELATIVES] = true;
+        for (int m = 1; m < k; ++m) {
+            int offset;
+            int genome;
+            do {
+                offset = random.nextInt(2 * NUM_RELATIVES + 1);
+                genome = source + offset - NUM_RELATIVES;
+            } while (used[offset] || genome < 0 || genome >= numGenomes);
+            used[offset] = true;
+            out.write("\t" + genome);
+        }
+        out.write("\n");
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.masic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * @author aiche
+ */
+public class MasicReaderTest {
+
+    private static MasicReader open(String content) throws IOException {
+        return new MasicReader(new BufferedReader(new StringReader(content)));
+    }
+
+    /**
+     * Reads are parsed like the tab separated lines they are, empty lines are
+     * skipped.
+     */
+    @Test
+    public void testParse() throws IOException {
+        MasicReader reader = open("2\t3\n>a\n> b \nc\n  read1\t0\t1 \r\n\nread2\n");
+
+        assertEquals(2, reader.getNumGenomes());
+        assertEquals(3, reader.getNumReads());
+        assertEquals("b", reader.getGenomes().get(1));
+        // the header ends at the first line without prefix, c is a read
+        assertTrue(reader.next());
+        assertEquals("c", reader.getReadName());
+        assertEquals(0, reader.getNumMappings());
+
+        assertTrue(reader.next());
+        assertEquals("read1", reader.getReadName());
+        assertEquals(2, reader.getNumMappings());
+        assertEquals(0, reader.getMapping(0));
+        assertEquals(1, reader.getMapping(1));
+
+        assertTrue(reader.next());
+        assertEquals("read2", reader.getReadName());
+        assertEquals(0, reader.getNumMappings());
+        assertFalse(reader.next());
+    }
+
+    /**
+     * Genome indices outside of the header and empty indices are rejected.
+     */
+    @Test
+    public void testInvalidIndex() throws IOException {
+        for (String index : new String[] { "2", "-1", "x", "\t1", "99999999999" }) {
+            MasicReader reader = open("2\t1\n>a\n>b\nread\t" + index + "\n");
+            try {
+                reader.next();
+                fail("accepted genome index " + index);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * The generated files can be read back and are reproducible.
+     */
+    @Test
+    public void testGenerator() throws IOException {
+        MasicGenerator generator = new MasicGenerator(20,
+                MasicGenerator.geometric(0.1, 0.3, 5), 42);
+        StringWriter first = new StringWriter();
+        generator.writeSample(first, 1000);
+        StringWriter second = new StringWriter();
+        generator.writeSample(second, 1000);
+        assertEquals(first.toString(), second.toString());
+
+        MasicReader reader = open(first.toString());
+        assertEquals(20, reader.getGenomes().size());
+        int numReads = 0;
+        int numUnmapped = 0;
+        while (reader.next()) {
+            ++numReads;
+            numUnmapped += (reader.getNumMappings() == 0 ? 1 : 0);
+        }
+        assertEquals(1000, numReads);
+        assertEquals(100, numUnmapped, 30);
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * @author aiche
+ */
+public class EMCorrectionTest {
+
+    private static final double EPSILON = 0.001;
+
+    private static BitSet pattern(int... genomes) {
+        BitSet pattern = new BitSet();
+        for (int g : genomes) {
+            pattern.set(g);
+        }
+        return pattern;
+    }
+
+    private static double[] estimate(MappingPatterns patterns,
+            double[] mappability, int numReads) {
+        SolverExecutor executor = new SolverExecutor(2);
+        try {
+            return new EMCorrection().estimate(patterns, mappability,
+                    numReads, null, executor, SolverMonitor.NONE,
+                    SolverRecorder.NONE).getSolution();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Uniquely mapping reads are counted as they are, corrected by the
+     * mappability of the genome.
+     */
+    @Test
+    public void testUniqueReads() {
+        MappingPatterns patterns = new MappingPatterns(3);
+        for (int i = 0; i < 300; ++i) {
+            patterns.add(pattern(0));
+        }
+        for (int i = 0; i < 100; ++i) {
+            patterns.add(pattern(1));
+        }
+        for (int i = 0; i < 600; ++i) {
+            patterns.add(pattern());
+        }
+
+        double[] abundance = estimate(patterns, new double[] { 1.0, 0.5, 1.0 },
+                1000);
+        assertEquals(0.3, abundance[0], EPSILON);
+        assertEquals(0.2, abundance[1], EPSILON);
+        assertEquals(0.0, abundance[2], EPSILON);
+    }
+
+    /**
+     * Reads shared by two genomes are assigned in proportion to the
+     * abundances that the unique reads support.
+     */
+    @Test
+    public void testSharedReads() {
+        MappingPatterns patterns = new MappingPatterns(2);
+        for (int i = 0; i < 300; ++i) {
+            patterns.add(pattern(0));
+        }
+        for (int i = 0; i < 100; ++i) {
+            patterns.add(pattern(1));
+        }
+        for (int i = 0; i < 400; ++i) {
+            patterns.add(pattern(0, 1));
+        }
+
+        double[] abundance = estimate(patterns, new double[] { 1.0, 1.0 }, 800);
+        assertEquals(0.75, abundance[0], EPSILON);
+        assertEquals(0.25, abundance[1], EPSILON);
+        assertEquals(3, patterns.getNumPatterns());
+    }
+}
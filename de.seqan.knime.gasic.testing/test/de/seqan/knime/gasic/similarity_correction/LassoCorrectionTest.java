@@ -30,10 +30,12 @@
 package de.seqan.knime.gasic.similarity_correction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.ejml.simple.SimpleMatrix;
 import org.junit.Test;
@@ -45,6 +47,11 @@ public class LassoCorrectionTest {
 
     private static final double EPSILON = 0.001;
 
+    /**
+     * Number of reads of the samples of the test data.
+     */
+    private static final int NUM_READS = 100000;
+
     private double[][] simpleMatrixTo2DArray(SimpleMatrix sm) {
         double[][] data = new double[sm.numRows()][sm.numCols()];
 
@@ -56,6 +63,28 @@ public class LassoCorrectionTest {
         return data;
     }
 
+    /**
+     * Loads a matrix of the test data.
+     */
+    private static SimpleMatrix loadMatrix(String name) throws IOException,
+            URISyntaxException {
+        return SimpleMatrix.loadCSV(LassoCorrectionTest.class
+                .getResource(name).toURI().getPath());
+    }
+
+    /**
+     * @return The normalized read vectors of the test data, one per sample.
+     */
+    private static SimpleMatrix[] loadSamples() throws IOException,
+            URISyntaxException {
+        SimpleMatrix input = loadMatrix("input.txt");
+        SimpleMatrix[] samples = new SimpleMatrix[input.numCols()];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = input.extractVector(false, i).divide(NUM_READS);
+        }
+        return samples;
+    }
+
     @Test
     public void testSimpleMatrixTo2DArray() {
         double[][] data = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
@@ -161,4 +190,318 @@ public class LassoCorrectionTest {
             assertEquals(theirObj, ourObj, 0.0001);
         }
     }
+
+    /**
+     * Racing must not change the quality of the solution compared to the
+     * exhaustive multistart optimization.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testRacingSimilarityCorrection() throws IOException,
+            URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        for (SimpleMatrix normalizedInput : loadSamples()) {
+            double[] exhaustive = (new LassoCorrection()).similarityCorrection(
+                    simpleMatrixTo2DArray(smMatrix),
+                    normalizedInput.getMatrix().data);
+            double[] raced = (new LassoCorrection(new LassoSettings.Builder()
+                    .racing(true).build())).similarityCorrection(
+                    simpleMatrixTo2DArray(smMatrix),
+                    normalizedInput.getMatrix().data);
+
+            CobylaObjective objective = new CobylaObjective(smMatrix,
+                    normalizedInput);
+            assertEquals(objective.computeObjectiveValue(exhaustive),
+                    objective.computeObjectiveValue(raced), 0.0001);
+        }
+    }
+
+    /**
+     * Screening must only remove genomes that are absent in the optimum, so
+     * the screened solution has to be as good as the unscreened one.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testScreeningSimilarityCorrection() throws IOException,
+            URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        for (SimpleMatrix normalizedInput : loadSamples()) {
+            double[] unscreened = (new LassoCorrection())
+                    .similarityCorrection(simpleMatrixTo2DArray(smMatrix),
+                            normalizedInput.getMatrix().data);
+            double[] screened = (new LassoCorrection(
+                    new LassoSettings.Builder()
+                            .startPoints(StartPointStrategy.DATA_DRIVEN, 4)
+                            .screening(true).build()))
+                    .similarityCorrection(simpleMatrixTo2DArray(smMatrix),
+                            normalizedInput.getMatrix().data);
+
+            CobylaObjective objective = new CobylaObjective(smMatrix,
+                    normalizedInput);
+            assertTrue(objective.computeObjectiveValue(screened) <= objective
+                    .computeObjectiveValue(unscreened) + 0.0001);
+        }
+    }
+
+    /**
+     * The data driven start points must not depend on anything but the
+     * problem, so repeated executions reproduce their results.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testDataDrivenStartPointsAreDeterministic()
+            throws IOException, URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        for (SimpleMatrix normalizedInput : loadSamples()) {
+            double[][] first = StartPointStrategy.DATA_DRIVEN
+                    .createStartPoints(smMatrix, normalizedInput, 8);
+            double[][] second = StartPointStrategy.DATA_DRIVEN
+                    .createStartPoints(smMatrix, normalizedInput, 8);
+
+            assertEquals(8, first.length);
+            for (int p = 0; p < first.length; ++p) {
+                assertTrue(Arrays.equals(first[p], second[p]));
+            }
+        }
+    }
+
+    /**
+     * All data driven start points must lie on the feasible set, i.e., be
+     * non-negative and sum up to at most 1.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testDataDrivenStartPointsAreFeasible() throws IOException,
+            URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        for (SimpleMatrix normalizedInput : loadSamples()) {
+            for (double[] start : StartPointStrategy.DATA_DRIVEN
+                    .createStartPoints(smMatrix, normalizedInput, 8)) {
+                assertEquals(smMatrix.numCols(), start.length);
+                double sum = 0.0;
+                for (double x : start) {
+                    assertTrue(x >= 0.0);
+                    sum += x;
+                }
+                assertTrue(sum <= 1.0 + 1.0e-12);
+            }
+        }
+    }
+
+    /**
+     * The heuristic start points are used by older workflows and must stay
+     * the ones of the original implementation.
+     */
+    @Test
+    public void testHeuristicStartPoints() {
+        for (int numGenomes = 1; numGenomes <= 12; ++numGenomes) {
+            SimpleMatrix sm = SimpleMatrix.identity(numGenomes);
+            SimpleMatrix reads = new SimpleMatrix(numGenomes, 1);
+            double[][] starts = StartPointStrategy.HEURISTIC
+                    .createStartPoints(sm, reads, 4);
+            assertEquals(3 * numGenomes + 1 + (numGenomes == 1 ? 10 : 0),
+                    starts.length);
+        }
+    }
+
+    /**
+     * Consecutive bootstrap replicates are close to each other, so a replicate
+     * warm started from the solution of the previous one must reach the same
+     * quality with fewer function evaluations than a cold start.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testWarmStartAcrossReplicates() throws IOException,
+            URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        SimpleMatrix sample = loadSamples()[0];
+
+        LassoCorrection lc = new LassoCorrection();
+        double[] previous = lc.solve(smMatrix, sample, null).getSolution();
+        Random random = new Random(42);
+        for (int r = 0; r < 5; ++r) {
+            // the replicate is a small perturbation of the sample
+            SimpleMatrix replicate = sample.copy();
+            for (int i = 0; i < replicate.numRows(); ++i) {
+                replicate.set(i, 0, Math.max(0.0, replicate.get(i, 0)
+                        * (1.0 + 0.02 * random.nextGaussian())));
+            }
+
+            LassoResult cold = lc.solve(smMatrix, replicate, null);
+            LassoResult warm = lc.solve(smMatrix, replicate, previous);
+
+            assertTrue(warm.getObjective() <= cold.getObjective() + 0.0001);
+            assertTrue(warm.getEvaluations() < cold.getEvaluations());
+            previous = warm.getSolution();
+        }
+    }
+
+    /**
+     * Storing the similarity matrix in single precision must not change the
+     * quality of the solution on the reference data.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testSinglePrecisionSimilarityCorrection() throws IOException,
+            URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+        SimpleMatrix output = loadMatrix("output.txt");
+        SimpleMatrix[] samples = loadSamples();
+
+        LassoCorrection singlePrecision = new LassoCorrection(
+                new LassoSettings.Builder().singlePrecision(true).build());
+        for (int i = 0; i < samples.length; ++i) {
+            double[] single = singlePrecision.similarityCorrection(
+                    simpleMatrixTo2DArray(smMatrix),
+                    samples[i].getMatrix().data);
+
+            // both evaluated in double precision
+            CobylaObjective objective = new CobylaObjective(smMatrix,
+                    samples[i]);
+            assertEquals(objective.computeObjectiveValue(output
+                    .extractVector(false, i).getMatrix().data),
+                    objective.computeObjectiveValue(single), 0.0001);
+        }
+    }
+
+    /**
+     * A single precision solve from the counts must run COBYLA on the float
+     * matrix only, without ever building the double matrix, and find the
+     * same solution as a solve on the double matrix.
+     */
+    @Test
+    public void testSinglePrecisionUsesFloatMatrix() {
+        final int numGenomes = 20;
+
+        Random random = new Random(1);
+        int[][] counts = new int[numGenomes][numGenomes];
+        double[] observed = new double[numGenomes];
+        for (int i = 0; i < numGenomes; ++i) {
+            counts[i][i] = 1000;
+            counts[i][random.nextInt(numGenomes)] += random.nextInt(200);
+            observed[i] = (i % 5 == 0 ? 0.1 : 0.0);
+        }
+        SimpleMatrix reads = new SimpleMatrix(numGenomes, 1, true, observed);
+
+        LassoSettings settings = new LassoSettings.Builder().threads(1)
+                .startPoints(StartPointStrategy.DATA_DRIVEN, 2)
+                .singlePrecision(true).build();
+        final int[] runs = new int[1];
+        LassoCorrection lc = new LassoCorrection(settings) {
+            @Override
+            CobylaObjective createObjective(SimpleMatrix sm, float[] singleSm,
+                    int numRows, int numCols, SimpleMatrix reads,
+                    double sumBound) {
+                CobylaObjective objective = super.createObjective(sm,
+                        singleSm, numRows, numCols, reads, sumBound);
+                assertTrue(sm == null);
+                assertTrue(objective.isSinglePrecision());
+                ++runs[0];
+                return objective;
+            }
+        };
+        SolverExecutor executor = new SolverExecutor(1);
+        LassoResult lean;
+        try {
+            lean = lc.solve(counts, reads, null, executor, SolverMonitor.NONE,
+                    SolverRecorder.NONE, LassoCorrection.NO_DEADLINE);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(runs[0] > 0);
+
+        LassoResult reference = new LassoCorrection(settings).solve(
+                LassoCorrection.getSimilarityMatrix(counts), reads, null);
+        assertEquals(reference.getObjective(), lean.getObjective(), 1.0e-12);
+    }
+
+    /**
+     * The objective gap reported by the approximate mode must bound the loss
+     * compared to the exact solution.
+     */
+    @Test
+    public void testSketchedSimilarityCorrection() {
+        final int numRows = 120;
+        final int numGenomes = 12;
+
+        Random random = new Random(1);
+        SimpleMatrix sm = new SimpleMatrix(numRows, numGenomes);
+        for (int i = 0; i < numRows; ++i) {
+            for (int j = 0; j < numGenomes; ++j) {
+                sm.set(i, j, (i % numGenomes == j ? 1.0 : 0.0) + 0.05
+                        * random.nextDouble());
+            }
+        }
+        double[] abundance = new double[numGenomes];
+        abundance[0] = 0.4;
+        abundance[3] = 0.3;
+        abundance[7] = 0.2;
+        SimpleMatrix reads = sm.mult(new SimpleMatrix(numGenomes, 1, true,
+                abundance));
+        for (int i = 0; i < numRows; ++i) {
+            reads.set(i, 0, reads.get(i, 0) + 0.01 * random.nextGaussian());
+        }
+
+        LassoSettings.Builder settings = new LassoSettings.Builder()
+                .startPoints(StartPointStrategy.DATA_DRIVEN, 4);
+        LassoResult exact = new LassoCorrection(settings.build()).solve(sm,
+                reads, null);
+        for (SketchType sketchType : SketchType.values()) {
+            LassoResult sketched = new LassoCorrection(settings.sketch(
+                    sketchType, 40, false).build()).solve(sm, reads, null);
+            assertTrue(sketched.getObjective() - exact.getObjective() <= sketched
+                    .getObjectiveGap() + 0.0001);
+        }
+        assertTrue(Double.isNaN(exact.getObjectiveGap()));
+    }
+
+    /**
+     * A single instance must not leak state between solves, i.e., a good
+     * optimum of an earlier problem must not be returned for a later one.
+     * 
+     * @throws IOException
+     *             Thrown if loading of matrices fails.
+     * @throws URISyntaxException
+     *             Thrown if converting the URI to the test data fails.
+     */
+    @Test
+    public void testSolveIsStateless() throws IOException, URISyntaxException {
+        SimpleMatrix smMatrix = loadMatrix("matrix.txt");
+
+        LassoCorrection lc = new LassoCorrection();
+        for (SimpleMatrix normalizedInput : loadSamples()) {
+            LassoResult shared = lc.solve(smMatrix, normalizedInput, null);
+            LassoResult fresh = (new LassoCorrection()).solve(smMatrix,
+                    normalizedInput, null);
+
+            assertEquals(fresh.getObjective(), shared.getObjective(), 0.0001);
+            assertEquals(shared.getObjective(), (new CobylaObjective(smMatrix,
+                    normalizedInput)).computeObjectiveValue(shared
+                    .getSolution()), EPSILON);
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.knime.core.node.NodeSettings;
+
+import de.seqan.knime.gasic.nodes.gasic.GASiCNodeFactory;
+
+/**
+ * Loads settings of the GASiC node the way a saved workflow does and checks
+ * that workflows saved before an option existed keep their old behavior.
+ * 
+ * @author aiche
+ */
+public class GASiCSettingsTest {
+
+    /**
+     * Settings with only the keys of the first release of the node.
+     */
+    private static NodeSettings legacySettings() {
+        NodeSettings settings = new NodeSettings("model");
+        settings.addInt("max_iterations", 10000);
+        settings.addInt("num_boostrap", 5);
+        settings.addInt("num_threads", 1);
+        settings.addDouble("rho_beg", 0.5);
+        settings.addDouble("rho_end", 1e-6);
+        settings.addDouble("test_level", 0.01);
+        return settings;
+    }
+
+    @Test
+    public void testLegacyWorkflow() throws Exception {
+        NodeRunner gasic = new NodeRunner(new GASiCNodeFactory());
+        gasic.setSettings(legacySettings());
+
+        NodeSettings saved = gasic.getSettings();
+        assertFalse(saved.getBoolean("warm_start"));
+        assertEquals("HEURISTIC", saved.getString("start_strategy"));
+        assertEquals(5, saved.getInt("num_boostrap"));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        NodeRunner gasic = new NodeRunner(new GASiCNodeFactory());
+        NodeSettings settings = gasic.getSettings();
+        assertTrue(settings.getBoolean("warm_start"));
+
+        // the settings of a new workflow survive saving and loading
+        gasic.setSettings(legacySettings());
+        gasic.setSettings(settings);
+        NodeSettings saved = gasic.getSettings();
+        assertTrue(saved.getBoolean("warm_start"));
+        assertEquals(settings.getString("start_strategy"),
+                saved.getString("start_strategy"));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.testing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+import org.knime.core.data.container.ContainerTable;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.Node;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.workflow.SingleNodeContainer;
+
+/**
+ * Executes a node model outside of a workflow. The model is created by its
+ * factory and executed with its own execution context, so the data tables
+ * are created by KNIME just like in a workflow. The protected methods of the
+ * model are called through the {@link NodeModel} base class.
+ * 
+ * @author aiche
+ */
+final class NodeRunner {
+
+    private final NodeModel model;
+    private final ExecutionContext exec;
+
+    /**
+     * @param factory
+     *            The factory of the node.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NodeRunner(final NodeFactory<? extends NodeModel> factory) {
+        model = factory.createNodeModel();
+        exec = new ExecutionContext(new DefaultNodeProgressMonitor(),
+                new Node((NodeFactory) factory),
+                SingleNodeContainer.MemoryPolicy.CacheSmallInMemory,
+                new HashMap<Integer, ContainerTable>());
+    }
+
+    /**
+     * @return The current settings of the model, modified settings are
+     *         applied with {@link #setSettings(NodeSettings)}.
+     * @throws Exception
+     *             If the settings cannot be saved.
+     */
+    NodeSettings getSettings() throws Exception {
+        NodeSettings settings = new NodeSettings("model");
+        invoke("saveSettingsTo", new Class<?>[] { NodeSettingsWO.class },
+                settings);
+        return settings;
+    }
+
+    /**
+     * Validates and loads the settings like the dialog would.
+     * 
+     * @param settings
+     *            The settings.
+     * @throws Exception
+     *             If the settings are invalid.
+     */
+    void setSettings(final NodeSettings settings) throws Exception {
+        invoke("validateSettings", new Class<?>[] { NodeSettingsRO.class },
+                settings);
+        invoke("loadValidatedSettingsFrom",
+                new Class<?>[] { NodeSettingsRO.class }, settings);
+    }
+
+    /**
+     * @param inData
+     *            The input port objects.
+     * @return The output port objects.
+     * @throws Exception
+     *             Any exception of the execution.
+     */
+    PortObject[] execute(final PortObject... inData) throws Exception {
+        return (PortObject[]) invoke("execute", new Class<?>[] {
+                PortObject[].class, ExecutionContext.class }, inData, exec);
+    }
+
+    private Object invoke(final String name, final Class<?>[] types,
+            final Object... args) throws Exception {
+        Method method = NodeModel.class.getDeclaredMethod(name, types);
+        method.setAccessible(true);
+        try {
+            return method.invoke(model, args);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
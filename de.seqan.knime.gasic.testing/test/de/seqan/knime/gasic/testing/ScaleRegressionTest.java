@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.core.data.uri.URIContent;
+import org.knime.core.data.uri.URIPortObject;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.port.PortObject;
+
+import de.seqan.knime.gasic.masic.MasicGenerator;
+import de.seqan.knime.gasic.nodes.gasic.GASiCNodeFactory;
+import de.seqan.knime.gasic.nodes.listreader.GASiCListReaderNodeFactory;
+import de.seqan.knime.gasic.nodes.reader.GASiCReaderNodeFactory;
+
+/**
+ * Runs the reader nodes and the GASiC node on synthetic data sets of
+ * increasing size and checks run time and peak heap usage against budgets
+ * that grow linearly with the size of the mapping tables (reads times
+ * genomes). Additionally, the run time of a stage may grow at most
+ * {@link #MAX_GROWTH} times faster than its input between two scales, which
+ * catches accidental quadratic behavior long before the absolute budgets
+ * are exceeded.
+ * 
+ * The results of every run are appended to a CSV file (system property
+ * <code>gasic.scale.trend</code>, <code>gasic-scale-trend.csv</code> in the
+ * working directory by default). The system property
+ * <code>gasic.scale.factor</code> multiplies the number of reads of all
+ * scales, e.g., for runs on a dedicated performance machine.
+ * 
+ * @author aiche
+ */
+public class ScaleRegressionTest {
+
+    static final String PROPERTY_TREND = "gasic.scale.trend";
+    static final String DEFAULT_TREND = "gasic-scale-trend.csv";
+
+    static final String PROPERTY_FACTOR = "gasic.scale.factor";
+    static final double DEFAULT_FACTOR = 1.0;
+
+    private static final int NUM_GENOMES = 20;
+
+    /**
+     * Number of reads of the sample at each scale, the simulation has the
+     * same number of reads in total.
+     */
+    private static final int[] NUM_READS = { 5000, 20000, 80000 };
+
+    private static final long SEED = 42;
+
+    // budgets, generous enough for slow test machines
+    private static final long FIXED_MILLIS = 2000;
+    private static final double MILLIS_PER_CELL = 0.01;
+    private static final long FIXED_HEAP = 64L << 20;
+    private static final long HEAP_PER_CELL = 64;
+
+    /**
+     * Largest allowed ratio of the run time growth and the input growth
+     * between two scales. Quadratic behavior exceeds this as soon as the
+     * input grows by more than this factor.
+     */
+    private static final double MAX_GROWTH = 3.0;
+
+    /**
+     * Run times below this are too noisy for the growth check.
+     */
+    private static final long MIN_GROWTH_MILLIS = 250;
+
+    private static final String[] STAGES = { "reader", "list_reader", "gasic" };
+
+    private static final String HEADER = "date,stage,genomes,reads,cells,"
+            + "millis,millis_budget,peak_heap_mb,heap_budget_mb,status";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Measurement of one stage at one scale.
+     */
+    private static final class Measurement {
+        final String stage;
+        final int numReads;
+        final long cells;
+        long millis;
+        long heap;
+        String status = "ok";
+
+        Measurement(final String stage, final int numReads, final long cells) {
+            this.stage = stage;
+            this.numReads = numReads;
+            this.cells = cells;
+        }
+
+        long getMillisBudget() {
+            return FIXED_MILLIS + (long) (MILLIS_PER_CELL * cells);
+        }
+
+        long getHeapBudget() {
+            return FIXED_HEAP + HEAP_PER_CELL * cells;
+        }
+    }
+
+    /**
+     * Reading and correction scale linearly with the number of reads.
+     */
+    @Test
+    public void testScaling() throws Exception {
+        final double factor = Double.parseDouble(System.getProperty(
+                PROPERTY_FACTOR, Double.toString(DEFAULT_FACTOR)));
+
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        List<String> violations = new ArrayList<String>();
+        Measurement[] previous = new Measurement[STAGES.length];
+
+        for (int numReadsAtScale : NUM_READS) {
+            final int numReads = (int) Math.ceil(factor * numReadsAtScale);
+            Measurement[] current = runScale(numReads);
+
+            for (int s = 0; s < STAGES.length; ++s) {
+                checkBudgets(current[s], previous[s], violations);
+                measurements.add(current[s]);
+            }
+            previous = current;
+        }
+
+        writeTrend(measurements);
+        assertTrue(violations.toString(), violations.isEmpty());
+    }
+
+    /**
+     * Generates the data set of a scale and runs all stages on it.
+     */
+    private Measurement[] runScale(final int numReads) throws Exception {
+        final int numSimReads = Math.max(1, numReads / NUM_GENOMES);
+        MasicGenerator generator = new MasicGenerator(NUM_GENOMES,
+                MasicGenerator.geometric(0.1, 0.3, 5), SEED);
+
+        File dir = folder.newFolder("scale_" + numReads);
+        File sample = new File(dir, "sample.masic");
+        Writer out = new BufferedWriter(new FileWriter(sample));
+        try {
+            generator.writeSample(out, numReads);
+        } finally {
+            out.close();
+        }
+        List<URIContent> simulations = new ArrayList<URIContent>();
+        for (int g = 0; g < NUM_GENOMES; ++g) {
+            File simulation = new File(dir, "simulation_" + g + ".masic");
+            out = new BufferedWriter(new FileWriter(simulation));
+            try {
+                generator.writeSimulation(out, g, numSimReads);
+            } finally {
+                out.close();
+            }
+            simulations.add(new URIContent(simulation.toURI(), "masic"));
+        }
+
+        List<URIContent> samples = new ArrayList<URIContent>();
+        samples.add(new URIContent(sample.toURI(), "masic"));
+
+        Measurement[] result = new Measurement[STAGES.length];
+        result[0] = new Measurement(STAGES[0], numReads, (long) numReads
+                * NUM_GENOMES);
+        result[1] = new Measurement(STAGES[1], numReads, (long) numSimReads
+                * NUM_GENOMES * NUM_GENOMES);
+        result[2] = new Measurement(STAGES[2], numReads, result[0].cells
+                + result[1].cells);
+
+        BufferedDataTable reads = (BufferedDataTable) run(new NodeRunner(
+                new GASiCReaderNodeFactory()), result[0], new URIPortObject(
+                samples))[0];
+        assertEquals(numReads, reads.getRowCount());
+
+        BufferedDataTable simulated = (BufferedDataTable) run(new NodeRunner(
+                new GASiCListReaderNodeFactory()), result[1],
+                new URIPortObject(simulations))[0];
+        assertEquals(numSimReads * NUM_GENOMES, simulated.getRowCount());
+
+        NodeRunner gasic = new NodeRunner(new GASiCNodeFactory());
+        NodeSettings settings = gasic.getSettings();
+        settings.addInt("num_boostrap", 2);
+        settings.addBoolean("use_seed", true);
+        gasic.setSettings(settings);
+        PortObject[] corrected = run(gasic, result[2], reads, simulated);
+        assertEquals(NUM_GENOMES,
+                ((BufferedDataTable) corrected[0]).getRowCount());
+
+        return result;
+    }
+
+    /**
+     * Executes a node and records its run time and peak heap usage.
+     */
+    private static PortObject[] run(final NodeRunner node,
+            final Measurement measurement, final PortObject... inData)
+            throws Exception {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+
+        // the peak is measured relative to the live data before the stage
+        System.gc();
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+            baseline += pool.getUsage().getUsed();
+        }
+
+        final long start = System.nanoTime();
+        PortObject[] outData = node.execute(inData);
+        measurement.millis = (System.nanoTime() - start) / 1000000;
+
+        // the pools peak at different times, so this is an upper bound
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        measurement.heap = Math.max(0, peak - baseline);
+        return outData;
+    }
+
+    private static void checkBudgets(final Measurement current,
+            final Measurement previous, final List<String> violations) {
+        List<String> failed = new ArrayList<String>();
+        if (current.millis > current.getMillisBudget()) {
+            failed.add("time");
+        }
+        if (current.heap > current.getHeapBudget()) {
+            failed.add("heap");
+        }
+        if (previous != null && previous.millis >= MIN_GROWTH_MILLIS) {
+            double timeGrowth = current.millis / (double) previous.millis;
+            double inputGrowth = current.cells / (double) previous.cells;
+            if (timeGrowth > MAX_GROWTH * inputGrowth) {
+                failed.add("growth");
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            current.status = join(failed, "+");
+            violations.add(String.format(
+                    "%s with %d reads: %s (%d ms, %d MB)", current.stage,
+                    current.numReads, current.status, current.millis,
+                    current.heap >> 20));
+        }
+    }
+
+    /**
+     * Appends the measurements to the trend file.
+     */
+    private static void writeTrend(final List<Measurement> measurements)
+            throws IOException {
+        File trend = new File(System.getProperty(PROPERTY_TREND,
+                DEFAULT_TREND));
+        final boolean exists = trend.exists();
+        final String date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss")
+                .format(new Date());
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(
+                trend, true)));
+        try {
+            if (!exists) {
+                out.println(HEADER);
+            }
+            for (Measurement m : measurements) {
+                out.println(date + "," + m.stage + "," + NUM_GENOMES + ","
+                        + m.numReads + "," + m.cells + "," + m.millis + ","
+                        + m.getMillisBudget() + "," + (m.heap >> 20) + ","
+                        + (m.getHeapBudget() >> 20) + "," + m.status);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String join(final List<String> values,
+            final String separator) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(separator);
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
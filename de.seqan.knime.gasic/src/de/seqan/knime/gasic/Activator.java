@@ -29,8 +29,15 @@
  */
 package de.seqan.knime.gasic;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 
 /**
  * The activator class controls the plug-in life cycle.
@@ -86,4 +93,46 @@ public class Activator extends AbstractUIPlugin {
         return plugin;
     }
 
+    /**
+     * Resolves the class path of a JVM running the GASiC estimation outside
+     * of KNIME, e.g., the bootstrap workers of the GASiC node: the entries of
+     * the Bundle-ClassPath relative to the location of the plug-in. Jars
+     * inside a packed plug-in are extracted by the {@link FileLocator}.
+     * 
+     * @return The class path.
+     * @throws IOException
+     *             If the plug-in cannot be located or an entry cannot be
+     *             extracted.
+     */
+    public String getWorkerClassPath() throws IOException {
+        final File bundleFile = FileLocator.getBundleFile(getBundle());
+        String entries = getBundle().getHeaders().get(
+                Constants.BUNDLE_CLASSPATH);
+        if (entries == null) {
+            entries = ".";
+        }
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : entries.split(",")) {
+            entry = entry.trim();
+            File file;
+            if (".".equals(entry)) {
+                file = bundleFile;
+            } else if (bundleFile.isDirectory()) {
+                file = new File(bundleFile, entry);
+            } else {
+                URL url = FileLocator.find(getBundle(), new Path(entry), null);
+                file = (url != null ? new File(FileLocator.toFileURL(url)
+                        .getPath()) : null);
+            }
+            if (file == null || !file.exists()) {
+                continue;
+            }
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparatorChar);
+            }
+            classPath.append(file.getPath());
+        }
+        return classPath.toString();
+    }
+
 }
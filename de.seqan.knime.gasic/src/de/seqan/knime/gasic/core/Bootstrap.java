@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.util.Random;
+
+import de.seqan.knime.gasic.similarity_correction.PoissonBootstrap;
+
+/**
+ * Draws bootstrap samples of a {@link MappingMatrix}. A sample is given by the
+ * weight of every read, the number of times the read is contained in the
+ * sample. Simulated reads are resampled separately for every source genome.
+ * 
+ * @author aiche
+ */
+public final class Bootstrap {
+
+    private Bootstrap() {
+    }
+
+    /**
+     * Draws a bootstrap sample of the reads.
+     * 
+     * @param matrix
+     *            The reads.
+     * @param resampling
+     *            MULTINOMIAL or POISSON.
+     * @param random
+     *            The source of randomness.
+     * @return The weight of every read.
+     */
+    public static int[] sample(final MappingMatrix matrix,
+            final ResamplingStrategy resampling, final Random random) {
+        int[] weights = new int[matrix.getNumReads()];
+        if (resampling == ResamplingStrategy.POISSON) {
+            for (int r = 0; r < weights.length; ++r) {
+                weights[r] = PoissonBootstrap.nextWeight(random);
+            }
+        } else if (resampling == ResamplingStrategy.MULTINOMIAL) {
+            if (matrix.hasSources()) {
+                for (int s = 0; s < matrix.getNumGenomes(); ++s) {
+                    drawMultinomial(weights, matrix.getSourceStart(s),
+                            matrix.getSourceEnd(s), random);
+                }
+            } else {
+                drawMultinomial(weights, 0, weights.length, random);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported resampling "
+                    + resampling + ".");
+        }
+        return weights;
+    }
+
+    /**
+     * Draws a bootstrap sample of the simulated reads of one genome.
+     * 
+     * @param matrix
+     *            The simulated reads.
+     * @param source
+     *            The source genome.
+     * @param resampling
+     *            MULTINOMIAL or POISSON.
+     * @param random
+     *            The source of randomness.
+     * @return The weight of every read of the genome, starting with its first
+     *         read.
+     */
+    public static int[] sample(final MappingMatrix matrix, final int source,
+            final ResamplingStrategy resampling, final Random random) {
+        int[] weights = new int[matrix.getSourceEnd(source)
+                - matrix.getSourceStart(source)];
+        if (resampling == ResamplingStrategy.POISSON) {
+            for (int r = 0; r < weights.length; ++r) {
+                weights[r] = PoissonBootstrap.nextWeight(random);
+            }
+        } else if (resampling == ResamplingStrategy.MULTINOMIAL) {
+            drawMultinomial(weights, 0, weights.length, random);
+        } else {
+            throw new IllegalArgumentException("Unsupported resampling "
+                    + resampling + ".");
+        }
+        return weights;
+    }
+
+    /**
+     * Draws end - start reads with replacement from [start, end).
+     */
+    private static void drawMultinomial(final int[] weights, final int start,
+            final int end, final Random random) {
+        final int n = end - start;
+        for (int i = 0; i < n; ++i) {
+            ++weights[start + random.nextInt(n)];
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.ejml.simple.SimpleMatrix;
+
+import de.seqan.knime.gasic.similarity_correction.CorrectionCache;
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+import de.seqan.knime.gasic.similarity_correction.MappingPatterns;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+import de.seqan.knime.gasic.similarity_correction.SolverRecorder;
+
+/**
+ * The GASiC estimation: the abundances of the genomes are estimated on
+ * bootstrap samples of the reads and of the simulated reads, which yields
+ * their variance and the p-value of every genome being present. Instead of
+ * the simulated reads, a {@link SimilarityModel} computed in advance can
+ * provide the similarity information.
+ * 
+ * The estimation works on {@link MappingMatrix} instances only and is used
+ * by the GASiC node as well as by the command line ({@link GASiCMain}).
+ * 
+ * @author aiche
+ */
+public final class BootstrapCorrection {
+
+    /**
+     * Default smallest abundance of a present genome.
+     */
+    public static final double DEFAULT_TEST_LEVEL = 0.01;
+
+    private final CorrectionEngine engine;
+    private final ResamplingStrategy resampling;
+    private final LassoCorrection lasso;
+    private final EMCorrection em;
+    private final boolean compressReads;
+
+    private boolean warmStart = false;
+    private CorrectionCache cache = null;
+    private int replicateBudget = 0;
+    private double testLevel = DEFAULT_TEST_LEVEL;
+
+    /**
+     * @param engine
+     *            LASSO or EM.
+     * @param resampling
+     *            MULTINOMIAL or POISSON.
+     * @param lasso
+     *            The solver of the LASSO engine.
+     * @param em
+     *            The solver of the EM engine.
+     * @param compressReads
+     *            If true, the LASSO engine compresses the reads into their
+     *            mapping patterns once and counts the patterns of every
+     *            replicate instead of all reads. The EM engine always works
+     *            on the patterns.
+     */
+    public BootstrapCorrection(final CorrectionEngine engine,
+            final ResamplingStrategy resampling, final LassoCorrection lasso,
+            final EMCorrection em, final boolean compressReads) {
+        if (engine == CorrectionEngine.AUTO
+                || resampling == ResamplingStrategy.AUTO) {
+            throw new IllegalArgumentException(
+                    "The engine and the resampling must be chosen before the estimation.");
+        }
+        this.engine = engine;
+        this.resampling = resampling;
+        this.lasso = lasso;
+        this.em = em;
+        this.compressReads = compressReads;
+    }
+
+    /**
+     * @param warmStart
+     *            If true, every replicate starts from the solution of the
+     *            previous replicate.
+     */
+    public void setWarmStart(final boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * @param cache
+     *            Cache of the LASSO solutions, null for none.
+     */
+    public void setCache(final CorrectionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param replicateBudget
+     *            The time budget of a single replicate in seconds, 0 for
+     *            unlimited.
+     */
+    public void setReplicateBudget(final int replicateBudget) {
+        this.replicateBudget = replicateBudget;
+    }
+
+    /**
+     * @param testLevel
+     *            The smallest abundance of a present genome, used for the
+     *            p-values of the summary.
+     */
+    public void setTestLevel(final double testLevel) {
+        this.testLevel = testLevel;
+    }
+
+    /**
+     * Estimates the abundances of all replicates.
+     * 
+     * @param reads
+     *            The reads of the sample.
+     * @param simulations
+     *            The simulated reads of every genome.
+     * @param numReplicates
+     *            The number of bootstrap replicates.
+     * @param random
+     *            The source of randomness of the bootstrap samples.
+     * @param executor
+     *            The executor of the solvers.
+     * @param monitor
+     *            Receives the progress of the replicates.
+     * @param deadline
+     *            No replicate is started after this deadline (in
+     *            milliseconds since the epoch), but at least one replicate is
+     *            computed. {@link LassoCorrection#NO_DEADLINE} for none.
+     * @return The summary of the completed replicates.
+     * @throws IOException
+     *             If a result cannot be written to the disk cache.
+     * @throws CancellationException
+     *             If the monitor requested cancellation.
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final MappingMatrix simulations, final int numReplicates,
+            final Random random, final SolverExecutor executor,
+            final BootstrapMonitor monitor, final long deadline)
+            throws IOException {
+        return run(reads, simulations, null, 0, numReplicates, random, 0L,
+                executor, monitor, deadline);
+    }
+
+    /**
+     * Estimates the abundances of a shard of the replicates. Every replicate
+     * is drawn with its own seed (see {@link #getReplicateSeed(long, int)}),
+     * so a replicate does not depend on the shard it is computed in.
+     * 
+     * @param firstReplicate
+     *            The index of the first replicate of the shard.
+     * @param numReplicates
+     *            The number of replicates of the shard.
+     * @param seed
+     *            The seed of all replicates.
+     * @see #run(MappingMatrix, MappingMatrix, int, Random, SolverExecutor,
+     *      BootstrapMonitor, long)
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final MappingMatrix simulations, final int firstReplicate,
+            final int numReplicates, final long seed,
+            final SolverExecutor executor, final BootstrapMonitor monitor,
+            final long deadline) throws IOException {
+        return run(reads, simulations, null, firstReplicate, numReplicates,
+                null, seed, executor, monitor, deadline);
+    }
+
+    /**
+     * Estimates the abundances of all replicates with the similarity
+     * information of a model instead of the simulated reads.
+     * 
+     * @param model
+     *            The similarity model of the genomes, in the order of the
+     *            genomes of the reads.
+     * @see #run(MappingMatrix, MappingMatrix, int, Random, SolverExecutor,
+     *      BootstrapMonitor, long)
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final SimilarityModel model, final int numReplicates,
+            final Random random, final SolverExecutor executor,
+            final BootstrapMonitor monitor, final long deadline)
+            throws IOException {
+        return run(reads, null, model, 0, numReplicates, random, 0L,
+                executor, monitor, deadline);
+    }
+
+    /**
+     * Estimates the abundances of a shard of the replicates with the
+     * similarity information of a model.
+     * 
+     * @see #run(MappingMatrix, SimilarityModel, int, Random, SolverExecutor,
+     *      BootstrapMonitor, long)
+     * @see #run(MappingMatrix, MappingMatrix, int, int, long, SolverExecutor,
+     *      BootstrapMonitor, long)
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final SimilarityModel model, final int firstReplicate,
+            final int numReplicates, final long seed,
+            final SolverExecutor executor, final BootstrapMonitor monitor,
+            final long deadline) throws IOException {
+        return run(reads, null, model, firstReplicate, numReplicates, null,
+                seed, executor, monitor, deadline);
+    }
+
+    /**
+     * Uses the given source of randomness for all replicates, or a source
+     * per replicate derived from the seed if it is null. The similarity
+     * information comes from the simulated reads or, if they are null, from
+     * the model.
+     */
+    private BootstrapResult run(final MappingMatrix reads,
+            final MappingMatrix simulations, final SimilarityModel model,
+            final int firstReplicate, final int numReplicates,
+            final Random random, final long seed,
+            final SolverExecutor executor, final BootstrapMonitor monitor,
+            final long deadline) throws IOException {
+        final int numGenomes = reads.getNumGenomes();
+        if ((simulations != null ? simulations.getNumGenomes() : model
+                .getNumGenomes()) != numGenomes) {
+            throw new IllegalArgumentException(
+                    "The number of genomes of the reads and the simulated reads are not equal.");
+        }
+        final int numReads = reads.getNumReads();
+
+        // the EM engine (and LASSO if requested) works on the compressed
+        // mapping patterns of the reads
+        int[] readPatterns = null;
+        MappingPatterns patterns = null;
+        if (engine == CorrectionEngine.EM || compressReads) {
+            readPatterns = new int[numReads];
+            patterns = reads.getPatterns(readPatterns);
+        }
+
+        BootstrapSummary summary = new BootstrapSummary(numGenomes, testLevel);
+        double[] previous = null;
+        int budgetHits = 0;
+        long cacheHits = 0;
+        // largest objective gap of the approximate mode
+        double objectiveGap = 0.0;
+
+        for (int i = 0; i < numReplicates; ++i) {
+
+            // the remaining replicates are skipped once the overall budget is
+            // exhausted, but at least one replicate is computed
+            if (i > 0 && System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            final long replicateDeadline = getDeadline(
+                    System.currentTimeMillis(), replicateBudget, deadline);
+
+            // bootstrap replicates are closely related, so we start from the
+            // solution of the previous replicate
+            double[] start = (warmStart ? previous : null);
+            SolverMonitor replicateMonitor = monitor.startReplicate(i,
+                    numReplicates);
+            SolverRecorder recorder = monitor.getRecorder(i);
+
+            final Random replicateRandom = (random != null ? random
+                    : new Random(getReplicateSeed(seed, firstReplicate + i)));
+            int[] readWeights = Bootstrap.sample(reads, resampling,
+                    replicateRandom);
+
+            LassoResult result;
+            if (engine == CorrectionEngine.EM) {
+                MappingPatterns sample = patterns.resample(readPatterns,
+                        readWeights);
+                double[] mappability = (simulations != null ? EMCorrection
+                        .getMappability(simulations.getSelfCounts(Bootstrap
+                                .sample(simulations, resampling,
+                                        replicateRandom)), simulations
+                                .getNumReads() / numGenomes) : model
+                        .getMappability(firstReplicate + i));
+                result = em.estimate(sample, mappability, numReads, start,
+                        executor, replicateMonitor, recorder, replicateDeadline);
+            } else {
+                SimpleMatrix readVector = getReadVector(
+                        (patterns != null ? patterns.resample(readPatterns,
+                                readWeights).getGenomeCounts() : reads
+                                .getGenomeCounts(readWeights)), numReads);
+                int[][] counts = (simulations != null ? simulations
+                        .getSourceCounts(Bootstrap.sample(simulations,
+                                resampling, replicateRandom)) : model
+                        .getCounts(firstReplicate + i));
+
+                // the solver builds the similarity matrix itself, so a single
+                // precision solve does not keep a double copy alive
+                String cacheKey = (cache == null ? null : CorrectionCache
+                        .fingerprint(getSimilarityMatrix(counts), readVector,
+                                start, lasso.getSettingsFingerprint()));
+                result = (cache == null ? null : cache.get(cacheKey));
+                if (result != null) {
+                    ++cacheHits;
+                } else {
+                    result = lasso.solve(counts, readVector, start, executor,
+                            replicateMonitor, recorder, replicateDeadline);
+                    // results stopped by the budget depend on the timing
+                    if (cache != null && !result.isBudgetExceeded()) {
+                        cache.put(cacheKey, result);
+                    }
+                }
+            }
+
+            if (result.isBudgetExceeded()) {
+                ++budgetHits;
+            }
+            if (!Double.isNaN(result.getObjectiveGap())) {
+                objectiveGap = Math.max(objectiveGap, result.getObjectiveGap());
+            }
+            previous = result.getSolution();
+            summary.add(previous);
+            monitor.finishReplicate(i, result);
+
+            if (replicateMonitor.isCanceled()) {
+                throw new CancellationException();
+            }
+        }
+
+        return new BootstrapResult(summary, numReplicates, budgetHits,
+                cacheHits, objectiveGap);
+    }
+
+    /**
+     * Derives the seed of a replicate from the seed of all replicates
+     * (SplitMix64 finalizer), so neighboring replicates get unrelated
+     * seeds.
+     * 
+     * @param seed
+     *            The seed of all replicates.
+     * @param replicate
+     *            The index of the replicate.
+     * @return The seed of the replicate.
+     */
+    public static long getReplicateSeed(final long seed, final int replicate) {
+        long z = seed + (replicate + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Writes the settings of the estimation (except the cache, which is local
+     * to a process), e.g., to configure the estimation of a worker process.
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeUTF(engine.name());
+        out.writeUTF(resampling.name());
+        lasso.write(out);
+        em.write(out);
+        out.writeBoolean(compressReads);
+        out.writeBoolean(warmStart);
+        out.writeInt(replicateBudget);
+        out.writeDouble(testLevel);
+    }
+
+    /**
+     * Creates an estimation with the settings written by
+     * {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The estimation.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public static BootstrapCorrection read(final DataInput in)
+            throws IOException {
+        try {
+            final CorrectionEngine engine = CorrectionEngine.valueOf(in
+                    .readUTF());
+            final ResamplingStrategy resampling = ResamplingStrategy
+                    .valueOf(in.readUTF());
+            BootstrapCorrection correction = new BootstrapCorrection(engine,
+                    resampling, LassoCorrection.read(in),
+                    EMCorrection.read(in), in.readBoolean());
+            correction.setWarmStart(in.readBoolean());
+            correction.setReplicateBudget(in.readInt());
+            correction.setTestLevel(in.readDouble());
+            return correction;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid estimation settings: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the deadline of a time budget.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @param budget
+     *            The budget in seconds, 0 for unlimited.
+     * @param outer
+     *            A deadline that must not be exceeded.
+     * @return The earlier of the budget's deadline and the outer deadline.
+     */
+    public static long getDeadline(final long now, final int budget,
+            final long outer) {
+        if (budget <= 0) {
+            return outer;
+        }
+        return Math.min(outer, now + budget * 1000L);
+    }
+
+    /**
+     * @param counts
+     *            The number of reads mapping to every genome.
+     * @param numReads
+     *            The number of reads, including unmapped reads.
+     * @return The fraction of the reads mapping to every genome.
+     */
+    public static SimpleMatrix getReadVector(final int[] counts,
+            final int numReads) {
+        final int numGenomes = counts.length;
+
+        SimpleMatrix normalizedReads = new SimpleMatrix(numGenomes, 1);
+
+        for (int i = 0; i < numGenomes; ++i) {
+            normalizedReads.set(i, 0, (double) counts[i] / (double) numReads);
+        }
+
+        return normalizedReads;
+    }
+
+    /**
+     * @param counts
+     *            counts[i][j] is the number of simulated reads of genome i
+     *            mapping to genome j.
+     * @return The similarity matrix, the counts normalized by the number of
+     *         simulated reads mapping back to their own genome.
+     */
+    public static SimpleMatrix getSimilarityMatrix(final int[][] counts) {
+        return LassoCorrection.getSimilarityMatrix(counts);
+    }
+}
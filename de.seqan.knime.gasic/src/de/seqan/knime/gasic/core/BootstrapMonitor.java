@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+import de.seqan.knime.gasic.similarity_correction.SolverRecorder;
+
+/**
+ * Connects a running {@link BootstrapCorrection} to its caller, e.g., the
+ * execution context of the GASiC node or the console of the command line.
+ * 
+ * @author aiche
+ */
+public interface BootstrapMonitor {
+
+    /**
+     * Monitor that never cancels and ignores all events.
+     */
+    BootstrapMonitor NONE = new BootstrapMonitor() {
+        @Override
+        public SolverMonitor startReplicate(int replicate, int numReplicates) {
+            return SolverMonitor.NONE;
+        }
+
+        @Override
+        public SolverRecorder getRecorder(int replicate) {
+            return SolverRecorder.NONE;
+        }
+
+        @Override
+        public void finishReplicate(int replicate, LassoResult result) {
+        }
+    };
+
+    /**
+     * Called before a replicate is drawn.
+     * 
+     * @param replicate
+     *            The index of the replicate.
+     * @param numReplicates
+     *            The number of requested replicates.
+     * @return The monitor of the solver of the replicate. If it requests
+     *         cancellation, no further replicates are computed.
+     */
+    SolverMonitor startReplicate(int replicate, int numReplicates);
+
+    /**
+     * @param replicate
+     *            The index of the replicate.
+     * @return The recorder of the solver statistics of the replicate.
+     */
+    SolverRecorder getRecorder(int replicate);
+
+    /**
+     * Called after a replicate was solved.
+     * 
+     * @param replicate
+     *            The index of the replicate.
+     * @param result
+     *            The solution of the replicate.
+     */
+    void finishReplicate(int replicate, LassoResult result);
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The summary of the bootstrap replicates computed by a
+ * {@link BootstrapCorrection} and what happened while computing them. The
+ * results of shards of the replicates can be merged (see
+ * {@link ShardedBootstrap}).
+ * 
+ * @author aiche
+ */
+public final class BootstrapResult {
+
+    private final BootstrapSummary summary;
+    private final int numRequested;
+    private final int budgetHits;
+    private final long cacheHits;
+    private final double objectiveGap;
+
+    BootstrapResult(final BootstrapSummary summary, final int numRequested,
+            final int budgetHits, final long cacheHits,
+            final double objectiveGap) {
+        this.summary = summary;
+        this.numRequested = numRequested;
+        this.budgetHits = budgetHits;
+        this.cacheHits = cacheHits;
+        this.objectiveGap = objectiveGap;
+    }
+
+    /**
+     * @return The summary statistics of the completed replicates.
+     */
+    public BootstrapSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return The number of completed replicates, smaller than the number of
+     *         requested replicates if the overall deadline passed.
+     */
+    public int getNumCompleted() {
+        return summary.getNumReplicates();
+    }
+
+    /**
+     * @return The number of requested replicates.
+     */
+    public int getNumRequested() {
+        return numRequested;
+    }
+
+    /**
+     * @return The number of replicates whose solver was stopped by the
+     *         deadline and that use the best solution found so far.
+     */
+    public int getBudgetHits() {
+        return budgetHits;
+    }
+
+    /**
+     * @return The number of replicates taken from the result cache.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return The largest objective gap of the approximate mode, 0 if no
+     *         replicate was solved approximately.
+     */
+    public double getObjectiveGap() {
+        return objectiveGap;
+    }
+
+    /**
+     * @param other
+     *            The result of a disjoint set of replicates.
+     * @return The result of the replicates of both results.
+     */
+    public BootstrapResult merge(final BootstrapResult other) {
+        BootstrapSummary merged = new BootstrapSummary(
+                summary.getNumGenomes(), summary.getTestLevel());
+        merged.merge(summary);
+        merged.merge(other.summary);
+        return new BootstrapResult(merged, numRequested + other.numRequested,
+                budgetHits + other.budgetHits, cacheHits + other.cacheHits,
+                Math.max(objectiveGap, other.objectiveGap));
+    }
+
+    /**
+     * @param out
+     *            Receives the result in binary form.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        summary.write(out);
+        out.writeInt(numRequested);
+        out.writeInt(budgetHits);
+        out.writeLong(cacheHits);
+        out.writeDouble(objectiveGap);
+    }
+
+    /**
+     * Reads a result written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The result.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public static BootstrapResult read(final DataInput in) throws IOException {
+        BootstrapSummary summary = BootstrapSummary.read(in);
+        return new BootstrapResult(summary, in.readInt(), in.readInt(),
+                in.readLong(), in.readDouble());
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Summary statistics of the abundances of the bootstrap replicates.
+ * 
+ * The replicates are not stored: the summary keeps the per genome sums, sums
+ * of squared deviations from the mean and the number of replicates below the
+ * test level. Summaries of disjoint sets of replicates, e.g., computed by
+ * different worker processes, can be merged into the summary of all
+ * replicates (Chan et al. (1979), "Updating formulae and a pairwise algorithm
+ * for computing sample variances").
+ * 
+ * @author aiche
+ */
+public final class BootstrapSummary {
+
+    private final int numGenomes;
+    private final double testLevel;
+    private int numReplicates;
+    private final double[] sum;
+    private final double[] squares;
+    private final int[] fails;
+
+    /**
+     * Creates an empty summary.
+     * 
+     * @param numGenomes
+     *            The number of genomes.
+     * @param testLevel
+     *            The smallest abundance of a present genome.
+     */
+    public BootstrapSummary(final int numGenomes, final double testLevel) {
+        this.numGenomes = numGenomes;
+        this.testLevel = testLevel;
+        this.numReplicates = 0;
+        this.sum = new double[numGenomes];
+        this.squares = new double[numGenomes];
+        this.fails = new int[numGenomes];
+    }
+
+    /**
+     * Adds a replicate.
+     * 
+     * @param abundances
+     *            The abundance of every genome in the replicate.
+     */
+    public void add(final double[] abundances) {
+        if (abundances.length != numGenomes) {
+            throw new IllegalArgumentException("Expected " + numGenomes
+                    + " abundances, got " + abundances.length + ".");
+        }
+        ++numReplicates;
+        for (int j = 0; j < numGenomes; ++j) {
+            // Welford's update of the squared deviations
+            final double previousMean = (numReplicates > 1 ? sum[j]
+                    / (numReplicates - 1) : 0.0);
+            sum[j] += abundances[j];
+            squares[j] += (abundances[j] - previousMean)
+                    * (abundances[j] - sum[j] / numReplicates);
+            if (abundances[j] < testLevel) {
+                ++fails[j];
+            }
+        }
+    }
+
+    /**
+     * Adds all replicates of another summary.
+     * 
+     * @param other
+     *            The summary of a disjoint set of replicates with the same
+     *            genomes and test level.
+     */
+    public void merge(final BootstrapSummary other) {
+        if (other.numGenomes != numGenomes || other.testLevel != testLevel) {
+            throw new IllegalArgumentException(
+                    "Only summaries of the same genomes and test level can be merged.");
+        }
+        if (other.numReplicates == 0) {
+            return;
+        }
+        final double n = numReplicates;
+        final double m = other.numReplicates;
+        for (int j = 0; j < numGenomes; ++j) {
+            if (numReplicates > 0) {
+                final double delta = other.sum[j] / m - sum[j] / n;
+                squares[j] += other.squares[j] + delta * delta * n * m
+                        / (n + m);
+            } else {
+                squares[j] = other.squares[j];
+            }
+            sum[j] += other.sum[j];
+            fails[j] += other.fails[j];
+        }
+        numReplicates += other.numReplicates;
+    }
+
+    /**
+     * @return The number of replicates.
+     */
+    public int getNumReplicates() {
+        return numReplicates;
+    }
+
+    /**
+     * @return The number of genomes.
+     */
+    public int getNumGenomes() {
+        return numGenomes;
+    }
+
+    /**
+     * @return The smallest abundance of a present genome.
+     */
+    public double getTestLevel() {
+        return testLevel;
+    }
+
+    /**
+     * @return The mean abundance of every genome.
+     */
+    public double[] getMean() {
+        double[] mean = new double[numGenomes];
+        for (int j = 0; j < numGenomes; ++j) {
+            mean[j] = sum[j] / numReplicates;
+        }
+        return mean;
+    }
+
+    /**
+     * @return The sample variance of the abundance of every genome, NaN for
+     *         a single replicate.
+     */
+    public double[] getVariance() {
+        double[] var = new double[numGenomes];
+        for (int j = 0; j < numGenomes; ++j) {
+            var[j] = (numReplicates > 1 ? squares[j] / (numReplicates - 1)
+                    : Double.NaN);
+        }
+        return var;
+    }
+
+    /**
+     * Fraction of the replicates in which the abundance of a genome is below
+     * the test level, the p-value of the genome being present.
+     * 
+     * @return The fraction for every genome.
+     */
+    public double[] getFailRate() {
+        double[] rate = new double[numGenomes];
+        for (int j = 0; j < numGenomes; ++j) {
+            rate[j] = (double) fails[j] / numReplicates;
+        }
+        return rate;
+    }
+
+    /**
+     * @param out
+     *            Receives the summary in binary form.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(numGenomes);
+        out.writeDouble(testLevel);
+        out.writeInt(numReplicates);
+        for (int j = 0; j < numGenomes; ++j) {
+            out.writeDouble(sum[j]);
+            out.writeDouble(squares[j]);
+            out.writeInt(fails[j]);
+        }
+    }
+
+    /**
+     * Reads a summary written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The summary.
+     * @throws IOException
+     *             If reading fails or the input is not a summary.
+     */
+    public static BootstrapSummary read(final DataInput in)
+            throws IOException {
+        final int numGenomes = in.readInt();
+        if (numGenomes <= 0) {
+            throw new IOException("Invalid bootstrap summary.");
+        }
+        BootstrapSummary summary = new BootstrapSummary(numGenomes,
+                in.readDouble());
+        summary.numReplicates = in.readInt();
+        for (int j = 0; j < numGenomes; ++j) {
+            summary.sum[j] = in.readDouble();
+            summary.squares[j] = in.readDouble();
+            summary.fails[j] = in.readInt();
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.seqan.knime.gasic.masic.MasicReader;
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoSettings;
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+import de.seqan.knime.gasic.similarity_correction.SolverRecorder;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
+
+/**
+ * Command line entry point of the GASiC estimation, e.g., for batch jobs on
+ * cluster nodes without KNIME:
+ * 
+ * <pre>
+ * java -cp seqan-gasic.jar:lib/ejml-0.21.jar:lib/jcobyla.jar \
+ *     de.seqan.knime.gasic.core.GASiCMain [options] sample.masic sim_1.masic ...
+ * </pre>
+ * 
+ * The simulation files are given in the order of the genomes in the sample,
+ * one file per genome. The result has the columns of the output table of the
+ * GASiC node. The defaults of the options are the defaults of the node.
+ * 
+ * @author aiche
+ */
+public final class GASiCMain {
+
+    private static final String USAGE = "Usage: GASiCMain [options] <sample.masic> <simulation.masic>...\n"
+            + "  -o <file>         output file (default: standard output)\n"
+            + "  -b <n>            number of bootstrap replicates (default: 5)\n"
+            + "  -t <n>            number of threads (default: 2)\n"
+            + "  -e LASSO|EM       correction engine (default: LASSO)\n"
+            + "  -r MULTINOMIAL|POISSON\n"
+            + "                    resampling of the reads (default: MULTINOMIAL)\n"
+            + "  -i <n>            maximal number of solver iterations (default: 10000)\n"
+            + "  -l <level>        test level of the p-values (default: 0.01)\n"
+            + "  -s <seed>         seed of the bootstrap samples (default: random)\n"
+            + "  -w <n>            number of worker JVMs computing shards of the\n"
+            + "                    replicates (default: 0, this JVM)\n"
+            + "  -q                no progress messages\n";
+
+    private File output = null;
+    private int numBootstrap = 5;
+    private int numThreads = 2;
+    private CorrectionEngine engine = CorrectionEngine.LASSO;
+    private ResamplingStrategy resampling = ResamplingStrategy.MULTINOMIAL;
+    private int maxIterations = 10000;
+    private double testLevel = 0.01;
+    private long seed = new Random().nextLong();
+    private int numWorkers = 0;
+    private boolean quiet = false;
+    private File sample = null;
+    private final List<File> simulations = new ArrayList<File>();
+
+    private GASiCMain() {
+    }
+
+    /**
+     * @param args
+     *            The command line arguments, see the usage.
+     */
+    public static void main(final String[] args) {
+        GASiCMain main = new GASiCMain();
+        try {
+            main.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            main.run();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void parse(final String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            final String arg = args[i];
+            if (!arg.startsWith("-") || arg.length() == 1) {
+                if (sample == null) {
+                    sample = new File(arg);
+                } else {
+                    simulations.add(new File(arg));
+                }
+            } else if (arg.equals("-q")) {
+                quiet = true;
+            } else {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of "
+                            + arg + ".");
+                }
+                final String value = args[++i];
+                try {
+                    if (arg.equals("-o")) {
+                        output = new File(value);
+                    } else if (arg.equals("-b")) {
+                        numBootstrap = Integer.parseInt(value);
+                    } else if (arg.equals("-t")) {
+                        numThreads = Integer.parseInt(value);
+                    } else if (arg.equals("-e")) {
+                        engine = CorrectionEngine.valueOf(value);
+                    } else if (arg.equals("-r")) {
+                        resampling = ResamplingStrategy.valueOf(value);
+                    } else if (arg.equals("-i")) {
+                        maxIterations = Integer.parseInt(value);
+                    } else if (arg.equals("-l")) {
+                        testLevel = Double.parseDouble(value);
+                    } else if (arg.equals("-s")) {
+                        seed = Long.parseLong(value);
+                    } else if (arg.equals("-w")) {
+                        numWorkers = Integer.parseInt(value);
+                    } else {
+                        throw new IllegalArgumentException("Unknown option "
+                                + arg + ".");
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value of "
+                            + arg + ": " + value);
+                }
+            }
+        }
+        if (sample == null || simulations.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "A sample and at least one simulation are required.");
+        }
+        if (numBootstrap < 1 || numThreads < 1 || maxIterations < 1
+                || numWorkers < 0) {
+            throw new IllegalArgumentException(
+                    "The number of replicates, threads and iterations must be positive.");
+        }
+        if (engine == CorrectionEngine.AUTO
+                || resampling == ResamplingStrategy.AUTO) {
+            throw new IllegalArgumentException(
+                    "AUTO is only available in the GASiC node.");
+        }
+    }
+
+    private void run() throws IOException {
+        // the reads of the sample
+        List<String> genomes;
+        MappingMatrix reads;
+        MasicReader reader = open(sample);
+        try {
+            genomes = reader.getGenomes();
+            reads = new MappingMatrix(reader.getNumGenomes(),
+                    reader.getNumReads());
+            while (reader.next()) {
+                addMappings(reader, reads, reads.addRead());
+            }
+        } finally {
+            reader.close();
+        }
+        if (simulations.size() != genomes.size()) {
+            throw new IOException("The sample has " + genomes.size()
+                    + " genomes, but " + simulations.size()
+                    + " simulations are given.");
+        }
+
+        // the simulated reads, one file per genome
+        MappingMatrix simulated = new MappingMatrix(genomes.size(), 0);
+        for (int s = 0; s < simulations.size(); ++s) {
+            reader = open(simulations.get(s));
+            try {
+                if (reader.getNumGenomes() != genomes.size()) {
+                    throw new IOException(simulations.get(s)
+                            + " does not have the genomes of the sample.");
+                }
+                while (reader.next()) {
+                    addMappings(reader, simulated, simulated.addRead(s));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        progress(String.format("%d reads, %d simulated reads, %d genomes",
+                reads.getNumReads(), simulated.getNumReads(), genomes.size()));
+
+        LassoCorrection lasso = new LassoCorrection(new LassoSettings.Builder()
+                .threads(numThreads).maxIterations(maxIterations)
+                .startPoints(StartPointStrategy.DATA_DRIVEN, 4).build());
+        EMCorrection em = new EMCorrection(maxIterations, 1.0e-10);
+        BootstrapCorrection correction = new BootstrapCorrection(engine,
+                resampling, lasso, em, numBootstrap > 1);
+        correction.setWarmStart(true);
+        correction.setTestLevel(testLevel);
+
+        BootstrapResult result;
+        if (numWorkers > 0) {
+            progress("Computing the replicates in " + numWorkers
+                    + " worker processes");
+            result = new ShardedBootstrap(correction,
+                    new LocalWorkerLauncher(), numWorkers, numThreads).run(
+                    reads, simulated, numBootstrap, seed, SolverMonitor.NONE,
+                    LassoCorrection.NO_DEADLINE);
+        } else {
+            SolverExecutor executor = new SolverExecutor(numThreads);
+            try {
+                // seeds per replicate, the replicates do not depend on -w
+                result = correction.run(reads, simulated, 0, numBootstrap,
+                        seed, executor, new ConsoleMonitor(),
+                        LassoCorrection.NO_DEADLINE);
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        writeResult(genomes, reads, result.getSummary());
+    }
+
+    private void writeResult(final List<String> genomes,
+            final MappingMatrix reads, final BootstrapSummary summary)
+            throws IOException {
+        final int numReads = reads.getNumReads();
+        int[] mappedReads = reads.getGenomeCounts(null);
+        double[] mean = summary.getMean();
+        double[] var = summary.getVariance();
+        double[] fails = summary.getFailRate();
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                output == null ? new OutputStreamWriter(System.out)
+                        : new FileWriter(output)));
+        try {
+            out.println("name\tmapped reads\tcorrected\terror\tpval\tabbundance");
+            for (int i = 0; i < genomes.size(); ++i) {
+                out.println(genomes.get(i) + "\t" + mappedReads[i] + "\t"
+                        + (mean[i] * numReads) + "\t" + (var[i] * numReads)
+                        + "\t" + fails[i] + "\t" + mean[i]);
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Writing the result failed.");
+        }
+    }
+
+    private static MasicReader open(final File file) throws IOException {
+        return new MasicReader(new BufferedReader(new InputStreamReader(
+                new FileInputStream(file))));
+    }
+
+    private static void addMappings(final MasicReader reader,
+            final MappingMatrix matrix, final int read) {
+        for (int m = 0; m < reader.getNumMappings(); ++m) {
+            matrix.setMapped(read, reader.getMapping(m));
+        }
+    }
+
+    private void progress(final String message) {
+        if (!quiet) {
+            System.err.println(message);
+        }
+    }
+
+    /**
+     * Prints a line per replicate to the standard error.
+     */
+    private final class ConsoleMonitor implements BootstrapMonitor {
+
+        @Override
+        public SolverMonitor startReplicate(int replicate, int numReplicates) {
+            return SolverMonitor.NONE;
+        }
+
+        @Override
+        public SolverRecorder getRecorder(int replicate) {
+            return SolverRecorder.NONE;
+        }
+
+        @Override
+        public void finishReplicate(int replicate, LassoResult result) {
+            progress(String.format(
+                    "Bootstrap sample %d of %d: objective=%g, evaluations=%d, time=%dms",
+                    replicate + 1, numBootstrap, result.getObjective(),
+                    result.getEvaluations(), result.getTime()));
+        }
+    }
+}
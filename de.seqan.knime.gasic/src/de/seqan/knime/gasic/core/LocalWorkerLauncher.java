@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ejml.simple.SimpleMatrix;
+
+import com.cureos.numerics.Cobyla;
+
+/**
+ * Starts the workers of a {@link ShardedBootstrap} as separate JVMs on the
+ * local machine.
+ * 
+ * @author aiche
+ */
+public final class LocalWorkerLauncher implements WorkerLauncher {
+
+    private final String javaCommand;
+    private final String classPath;
+    private final List<String> jvmArguments;
+
+    /**
+     * Starts the workers with the Java installation and the class path of
+     * this JVM (see {@link #getDefaultClassPath()}).
+     */
+    public LocalWorkerLauncher() {
+        this(getDefaultJavaCommand(), getDefaultClassPath(), Collections
+                .<String> emptyList());
+    }
+
+    /**
+     * @param javaCommand
+     *            The java executable.
+     * @param classPath
+     *            The class path of the workers, it must contain the GASiC
+     *            classes, EJML and jcobyla.
+     * @param jvmArguments
+     *            Additional arguments of the worker JVMs, e.g., "-Xmx4g".
+     */
+    public LocalWorkerLauncher(final String javaCommand,
+            final String classPath, final List<String> jvmArguments) {
+        this.javaCommand = javaCommand;
+        this.classPath = classPath;
+        this.jvmArguments = new ArrayList<String>(jvmArguments);
+    }
+
+    @Override
+    public Process launch() throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(javaCommand);
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(classPath);
+        command.add(ShardWorker.class.getName());
+        return new ProcessBuilder(command).start();
+    }
+
+    /**
+     * @return The java executable of this JVM.
+     */
+    public static String getDefaultJavaCommand() {
+        return new File(new File(System.getProperty("java.home"), "bin"),
+                "java").getPath();
+    }
+
+    /**
+     * Determines the class path of the workers from the locations the GASiC,
+     * EJML and jcobyla classes were loaded from. Falls back to the class path
+     * of this JVM if a location is not a local file, e.g., inside an OSGi
+     * container (the GASiC node resolves the class path of its bundle
+     * itself).
+     * 
+     * @return The class path.
+     */
+    public static String getDefaultClassPath() {
+        StringBuilder classPath = new StringBuilder();
+        for (Class<?> c : new Class<?>[] { ShardWorker.class,
+                SimpleMatrix.class, Cobyla.class }) {
+            File location = getLocation(c);
+            if (location == null) {
+                return System.getProperty("java.class.path");
+            }
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparatorChar);
+            }
+            classPath.append(location.getPath());
+        }
+        return classPath.toString();
+    }
+
+    private static File getLocation(final Class<?> c) {
+        CodeSource source = c.getProtectionDomain().getCodeSource();
+        URL url = (source == null ? null : source.getLocation());
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
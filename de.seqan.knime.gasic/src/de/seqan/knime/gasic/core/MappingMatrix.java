@@ -0,0 +1,428 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+
+import de.seqan.knime.gasic.similarity_correction.MappingPatterns;
+
+/**
+ * The mapping information of a read set: for every read, the set of genomes
+ * it maps to, stored as a bitmap of one bit per genome. Simulated reads
+ * additionally know the genome they were simulated from. The reads of a
+ * source genome are stored consecutively, in the order of the source genomes.
+ * 
+ * All counts can be weighted with the number of times a read is contained in
+ * a bootstrap sample (see {@link Bootstrap}), so a replicate never copies
+ * the mapping information.
+ * 
+ * The bitmaps are kept on the Java heap or, for read sets larger than the
+ * heap, off heap in a memory mapped temporary file that is removed by
+ * {@link #close()}.
+ * 
+ * @author aiche
+ */
+public final class MappingMatrix implements Closeable {
+
+    private static final int WORD_BITS = 64;
+
+    private final int numGenomes;
+    private final int wordsPerRead;
+    private final WordStore words;
+    private int numReads;
+
+    /**
+     * sourceStart[s] is the index of the first read of source genome s, for
+     * all sources up to the last one.
+     */
+    private final int[] sourceStart;
+    private int lastSource;
+
+    /**
+     * Creates an empty matrix.
+     * 
+     * @param numGenomes
+     *            The number of genomes.
+     * @param expectedReads
+     *            The expected number of reads, the matrix grows if more reads
+     *            are added.
+     */
+    public MappingMatrix(final int numGenomes, final int expectedReads) {
+        this(numGenomes, expectedReads, new WordStore.Heap(Math.max(1,
+                expectedReads) * (long) getWordsPerRead(numGenomes)));
+    }
+
+    /**
+     * Creates an empty matrix whose bitmaps are stored off heap in a memory
+     * mapped temporary file.
+     * 
+     * @param numGenomes
+     *            The number of genomes.
+     * @param expectedReads
+     *            The expected number of reads, the matrix grows if more reads
+     *            are added.
+     * @return The matrix, it must be closed to remove the file.
+     * @throws IOException
+     *             If the temporary file cannot be created.
+     */
+    public static MappingMatrix createMapped(final int numGenomes,
+            final int expectedReads) throws IOException {
+        return new MappingMatrix(numGenomes, expectedReads,
+                new WordStore.Mapped(Math.max(1, expectedReads)
+                        * (long) getWordsPerRead(numGenomes)));
+    }
+
+    private MappingMatrix(final int numGenomes, final int expectedReads,
+            final WordStore words) {
+        if (numGenomes <= 0) {
+            throw new IllegalArgumentException(
+                    "The number of genomes must be positive.");
+        }
+        this.numGenomes = numGenomes;
+        this.wordsPerRead = getWordsPerRead(numGenomes);
+        this.words = words;
+        this.numReads = 0;
+        this.sourceStart = new int[numGenomes];
+        this.lastSource = -1;
+    }
+
+    /**
+     * Adds a read of a sample that maps to no genome yet.
+     * 
+     * @return The index of the read.
+     */
+    public int addRead() {
+        if (lastSource >= 0) {
+            throw new IllegalStateException(
+                    "The reads of a simulation need a source genome.");
+        }
+        return append();
+    }
+
+    /**
+     * Adds a simulated read that maps to no genome yet.
+     * 
+     * @param source
+     *            The genome the read was simulated from. Must not be smaller
+     *            than the source of the previous read.
+     * @return The index of the read.
+     */
+    public int addRead(final int source) {
+        if (source < lastSource || source >= numGenomes
+                || (lastSource < 0 && numReads > 0)) {
+            throw new IllegalArgumentException("Invalid source genome "
+                    + source + " after " + lastSource + ".");
+        }
+        while (lastSource < source) {
+            sourceStart[++lastSource] = numReads;
+        }
+        return append();
+    }
+
+    private int append() {
+        words.ensureCapacity((numReads + 1L) * wordsPerRead);
+        return numReads++;
+    }
+
+    private static int getWordsPerRead(final int numGenomes) {
+        return (numGenomes + WORD_BITS - 1) / WORD_BITS;
+    }
+
+    /**
+     * @param read
+     *            The read index.
+     * @param genome
+     *            A genome the read maps to.
+     */
+    public void setMapped(final int read, final int genome) {
+        words.or((long) read * wordsPerRead + genome / WORD_BITS,
+                1L << (genome % WORD_BITS));
+    }
+
+    /**
+     * @param read
+     *            The read index.
+     * @param genome
+     *            The genome index.
+     * @return True if the read maps to the genome.
+     */
+    public boolean isMapped(final int read, final int genome) {
+        return (words.get((long) read * wordsPerRead + genome / WORD_BITS) & (1L << (genome % WORD_BITS))) != 0;
+    }
+
+    /**
+     * @return The number of genomes.
+     */
+    public int getNumGenomes() {
+        return numGenomes;
+    }
+
+    /**
+     * @return The number of reads.
+     */
+    public int getNumReads() {
+        return numReads;
+    }
+
+    /**
+     * @return True if the reads are simulated reads with source genomes.
+     */
+    public boolean hasSources() {
+        return lastSource >= 0;
+    }
+
+    /**
+     * @param source
+     *            The source genome.
+     * @return The index of the first read simulated from the genome.
+     */
+    public int getSourceStart(final int source) {
+        return (source <= lastSource ? sourceStart[source] : numReads);
+    }
+
+    /**
+     * @param source
+     *            The source genome.
+     * @return The index after the last read simulated from the genome.
+     */
+    public int getSourceEnd(final int source) {
+        return (source < lastSource ? sourceStart[source + 1] : numReads);
+    }
+
+    /**
+     * @return The heap memory used by the mapping information in bytes.
+     */
+    public long getSizeInBytes() {
+        return words.getHeapBytes() + 4L * sourceStart.length;
+    }
+
+    /**
+     * Releases the bitmaps and removes the temporary file of an off heap
+     * matrix. The matrix must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        words.close();
+    }
+
+    /**
+     * Writes the matrix in a compact binary form, e.g., to send it to a
+     * worker process (see {@link ShardWorker}).
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(numGenomes);
+        out.writeInt(numReads);
+        out.writeInt(lastSource);
+        for (int s = 0; s <= lastSource; ++s) {
+            out.writeInt(sourceStart[s]);
+        }
+        for (long i = 0, n = (long) numReads * wordsPerRead; i < n; ++i) {
+            out.writeLong(words.get(i));
+        }
+    }
+
+    /**
+     * Reads a matrix written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The matrix.
+     * @throws IOException
+     *             If reading fails or the input is not a matrix.
+     */
+    public static MappingMatrix read(final DataInput in) throws IOException {
+        final int numGenomes = in.readInt();
+        final int numReads = in.readInt();
+        final int lastSource = in.readInt();
+        if (numGenomes <= 0 || numReads < 0 || lastSource < -1
+                || lastSource >= numGenomes) {
+            throw new IOException("Invalid mapping matrix.");
+        }
+        MappingMatrix matrix = new MappingMatrix(numGenomes, numReads);
+        for (int s = 0; s <= lastSource; ++s) {
+            matrix.sourceStart[s] = in.readInt();
+        }
+        for (long i = 0, n = (long) numReads * matrix.wordsPerRead; i < n; ++i) {
+            matrix.words.or(i, in.readLong());
+        }
+        matrix.numReads = numReads;
+        matrix.lastSource = lastSource;
+        return matrix;
+    }
+
+    /**
+     * Counts the reads mapping to every genome.
+     * 
+     * @param weights
+     *            The weight of every read, null to count every read once.
+     * @return The number of reads mapping to every genome (reads mapping to
+     *         several genomes are counted for each of them).
+     */
+    public int[] getGenomeCounts(final int[] weights) {
+        int[] counts = new int[numGenomes];
+        for (int r = 0; r < numReads; ++r) {
+            final int weight = (weights == null ? 1 : weights[r]);
+            if (weight > 0) {
+                countRead(r, weight, counts);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the simulated reads of every source genome mapping to every
+     * genome.
+     * 
+     * @param weights
+     *            The weight of every read, null to count every read once.
+     * @return counts[s][g] is the number of reads simulated from genome s
+     *         that map to genome g.
+     */
+    public int[][] getSourceCounts(final int[] weights) {
+        int[][] counts = new int[numGenomes][numGenomes];
+        for (int s = 0; s <= lastSource; ++s) {
+            for (int r = getSourceStart(s); r < getSourceEnd(s); ++r) {
+                final int weight = (weights == null ? 1 : weights[r]);
+                if (weight > 0) {
+                    countRead(r, weight, counts[s]);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the simulated reads of one source genome mapping to every
+     * genome, i.e., one row of {@link #getSourceCounts(int[])}.
+     * 
+     * @param source
+     *            The source genome.
+     * @param weights
+     *            The weight of every read of the source genome, starting with
+     *            its first read, null to count every read once.
+     * @return The number of reads simulated from the genome that map to every
+     *         genome.
+     */
+    public int[] getSourceCounts(final int source, final int[] weights) {
+        int[] counts = new int[numGenomes];
+        final int start = getSourceStart(source);
+        for (int r = start; r < getSourceEnd(source); ++r) {
+            final int weight = (weights == null ? 1 : weights[r - start]);
+            if (weight > 0) {
+                countRead(r, weight, counts);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the simulated reads of every genome that map back to it, i.e.,
+     * the diagonal of {@link #getSourceCounts(int[])}.
+     * 
+     * @param weights
+     *            The weight of every read, null to count every read once.
+     * @return The number of reads of every genome mapping back to it.
+     */
+    public int[] getSelfCounts(final int[] weights) {
+        int[] counts = new int[numGenomes];
+        for (int s = 0; s <= lastSource; ++s) {
+            for (int r = getSourceStart(s); r < getSourceEnd(s); ++r) {
+                if (isMapped(r, s)) {
+                    counts[s] += (weights == null ? 1 : weights[r]);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Restricts the reads of a sample to some of the genomes. Every read is
+     * kept, reads mapping to none of the genomes become unmapped.
+     *
+     * @param genomes
+     *            The genomes, in the order of the columns of the result.
+     * @return The reads mapping to these genomes, on the heap.
+     */
+    public MappingMatrix selectGenomes(final int[] genomes) {
+        MappingMatrix selected = new MappingMatrix(genomes.length, numReads);
+        for (int r = 0; r < numReads; ++r) {
+            selected.addRead();
+            for (int i = 0; i < genomes.length; ++i) {
+                if (isMapped(r, genomes[i])) {
+                    selected.setMapped(r, i);
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Compresses the reads into their mapping patterns.
+     * 
+     * @param readPatterns
+     *            Receives the pattern index of every read, -1 for unmapped
+     *            reads.
+     * @return The mapping patterns of all reads.
+     */
+    public MappingPatterns getPatterns(final int[] readPatterns) {
+        MappingPatterns patterns = new MappingPatterns(numGenomes);
+        BitSet pattern = new BitSet(numGenomes);
+        for (int r = 0; r < numReads; ++r) {
+            pattern.clear();
+            final long offset = (long) r * wordsPerRead;
+            for (int w = 0; w < wordsPerRead; ++w) {
+                for (long bits = words.get(offset + w); bits != 0; bits &= bits - 1) {
+                    pattern.set(w * WORD_BITS + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            readPatterns[r] = patterns.add(pattern);
+        }
+        return patterns;
+    }
+
+    private void countRead(final int read, final int weight,
+            final int[] counts) {
+        final long offset = (long) read * wordsPerRead;
+        for (int w = 0; w < wordsPerRead; ++w) {
+            for (long bits = words.get(offset + w); bits != 0; bits &= bits - 1) {
+                counts[w * WORD_BITS + Long.numberOfTrailingZeros(bits)] += weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+
+/**
+ * Entry point of a worker process of a {@link ShardedBootstrap}. The worker
+ * reads a job from the standard input: the settings of the estimation, the
+ * mapping information (the simulated reads or a {@link SimilarityModel}) and
+ * the replicates of its shard. It computes the
+ * replicates and writes the mergeable {@link BootstrapResult} to the standard
+ * output. Errors are reported on the standard error and by a non-zero exit
+ * code.
+ * 
+ * @author aiche
+ */
+public final class ShardWorker {
+
+    /**
+     * Marks the jobs and results of this protocol version.
+     */
+    private static final int PROTOCOL = 0x47415302;
+
+    private ShardWorker() {
+    }
+
+    /**
+     * @param args
+     *            Not used, the job is read from the standard input.
+     */
+    public static void main(final String[] args) {
+        // the standard output belongs to the result, diagnostic output of
+        // the solvers goes to the standard error
+        final PrintStream stdout = System.out;
+        System.setOut(System.err);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    System.in));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(stdout));
+            run(in, out);
+            out.flush();
+        } catch (Throwable e) {
+            System.err.println("Error: " + e);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Reads a job, computes its replicates and writes the result.
+     * 
+     * @param in
+     *            The job written by
+     *            {@link #writeJob(DataOutput, BootstrapCorrection, MappingMatrix, MappingMatrix, int, int, long, int, long)}
+     *            .
+     * @param out
+     *            Receives the result, see {@link #readResult(DataInput)}.
+     * @throws IOException
+     *             If reading the job or writing the result fails.
+     */
+    static void run(final DataInput in, final DataOutput out)
+            throws IOException {
+        if (in.readInt() != PROTOCOL) {
+            throw new IOException("Not a GASiC shard job.");
+        }
+        BootstrapCorrection correction = BootstrapCorrection.read(in);
+        MappingMatrix reads = MappingMatrix.read(in);
+        final boolean hasModel = in.readBoolean();
+        MappingMatrix simulations = (hasModel ? null : MappingMatrix.read(in));
+        SimilarityModel model = (hasModel ? SimilarityModel.read(in) : null);
+        final int firstReplicate = in.readInt();
+        final int numReplicates = in.readInt();
+        final long seed = in.readLong();
+        final int numThreads = in.readInt();
+        final long deadline = in.readLong();
+
+        SolverExecutor executor = new SolverExecutor(numThreads);
+        BootstrapResult result;
+        try {
+            result = (hasModel ? correction.run(reads, model, firstReplicate,
+                    numReplicates, seed, executor, BootstrapMonitor.NONE,
+                    deadline) : correction.run(reads, simulations,
+                    firstReplicate, numReplicates, seed, executor,
+                    BootstrapMonitor.NONE, deadline));
+        } finally {
+            executor.shutdown();
+        }
+
+        out.writeInt(PROTOCOL);
+        result.write(out);
+    }
+
+    /**
+     * Writes the job of a worker.
+     * 
+     * @param out
+     *            The standard input of the worker.
+     * @param correction
+     *            The settings of the estimation.
+     * @param reads
+     *            The reads of the sample.
+     * @param simulations
+     *            The simulated reads of every genome.
+     * @param firstReplicate
+     *            The index of the first replicate of the shard.
+     * @param numReplicates
+     *            The number of replicates of the shard.
+     * @param seed
+     *            The seed of all replicates.
+     * @param numThreads
+     *            The number of solver threads of the worker.
+     * @param deadline
+     *            The overall deadline in milliseconds since the epoch.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public static void writeJob(final DataOutput out,
+            final BootstrapCorrection correction, final MappingMatrix reads,
+            final MappingMatrix simulations, final int firstReplicate,
+            final int numReplicates, final long seed, final int numThreads,
+            final long deadline) throws IOException {
+        writeJob(out, correction, reads, simulations, null, firstReplicate,
+                numReplicates, seed, numThreads, deadline);
+    }
+
+    /**
+     * Writes the job of a worker that uses a similarity model instead of the
+     * simulated reads.
+     * 
+     * @param model
+     *            The similarity model of the genomes.
+     * @see #writeJob(DataOutput, BootstrapCorrection, MappingMatrix,
+     *      MappingMatrix, int, int, long, int, long)
+     */
+    public static void writeJob(final DataOutput out,
+            final BootstrapCorrection correction, final MappingMatrix reads,
+            final SimilarityModel model, final int firstReplicate,
+            final int numReplicates, final long seed, final int numThreads,
+            final long deadline) throws IOException {
+        writeJob(out, correction, reads, null, model, firstReplicate,
+                numReplicates, seed, numThreads, deadline);
+    }
+
+    private static void writeJob(final DataOutput out,
+            final BootstrapCorrection correction, final MappingMatrix reads,
+            final MappingMatrix simulations, final SimilarityModel model,
+            final int firstReplicate, final int numReplicates,
+            final long seed, final int numThreads, final long deadline)
+            throws IOException {
+        out.writeInt(PROTOCOL);
+        correction.write(out);
+        reads.write(out);
+        out.writeBoolean(model != null);
+        if (model != null) {
+            model.write(out);
+        } else {
+            simulations.write(out);
+        }
+        out.writeInt(firstReplicate);
+        out.writeInt(numReplicates);
+        out.writeLong(seed);
+        out.writeInt(numThreads);
+        out.writeLong(deadline);
+    }
+
+    /**
+     * @param in
+     *            The standard output of the worker.
+     * @return The result of the shard.
+     * @throws IOException
+     *             If reading fails or the worker did not write a result.
+     */
+    public static BootstrapResult readResult(final DataInput in)
+            throws IOException {
+        if (in.readInt() != PROTOCOL) {
+            throw new IOException("Not a GASiC shard result.");
+        }
+        return BootstrapResult.read(in);
+    }
+}
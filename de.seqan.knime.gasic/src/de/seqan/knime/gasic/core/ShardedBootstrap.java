@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+
+/**
+ * Splits the bootstrap replicates of a {@link BootstrapCorrection} into
+ * shards that are computed by separate worker processes (see
+ * {@link ShardWorker}), e.g., to use more memory and cores than a single JVM
+ * has. Every worker returns the mergeable summary of its replicates, the
+ * coordinator merges them into the summary of all replicates.
+ * 
+ * Every replicate is drawn with a seed derived from the seed of the
+ * execution and its index, so the replicates do not depend on the number of
+ * workers. Warm starts only apply within a shard, which may change the
+ * solutions within the solver tolerance.
+ * 
+ * @author aiche
+ */
+public final class ShardedBootstrap {
+
+    /**
+     * Interval in which the coordinator polls its monitor for cancellation.
+     */
+    private static final long MONITOR_INTERVAL_MS = 100;
+
+    /**
+     * Number of characters of the standard error of a worker kept for error
+     * messages.
+     */
+    private static final int MAX_ERROR_LENGTH = 4096;
+
+    private final BootstrapCorrection correction;
+    private final WorkerLauncher launcher;
+    private final int numWorkers;
+    private final int numThreads;
+
+    /**
+     * @param correction
+     *            The estimation computed by the workers, its cache is not
+     *            used.
+     * @param launcher
+     *            Starts the worker processes.
+     * @param numWorkers
+     *            The number of workers, each computes one shard.
+     * @param numThreads
+     *            The number of solver threads of every worker.
+     */
+    public ShardedBootstrap(final BootstrapCorrection correction,
+            final WorkerLauncher launcher, final int numWorkers,
+            final int numThreads) {
+        if (numWorkers < 1 || numThreads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of workers and threads must be positive.");
+        }
+        this.correction = correction;
+        this.launcher = launcher;
+        this.numWorkers = numWorkers;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Computes the replicates in the worker processes.
+     * 
+     * @param reads
+     *            The reads of the sample.
+     * @param simulations
+     *            The simulated reads of every genome.
+     * @param numReplicates
+     *            The number of bootstrap replicates.
+     * @param seed
+     *            The seed of all replicates.
+     * @param monitor
+     *            Receives the fraction of finished shards, all workers are
+     *            stopped if it requests cancellation.
+     * @param deadline
+     *            The overall deadline of the workers, in milliseconds since
+     *            the epoch. Every worker computes at least one replicate.
+     * @return The merged result of all shards.
+     * @throws IOException
+     *             If a worker cannot be started or fails.
+     * @throws CancellationException
+     *             If the monitor requested cancellation.
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final MappingMatrix simulations, final int numReplicates,
+            final long seed, final SolverMonitor monitor, final long deadline)
+            throws IOException {
+        return run(reads, simulations, null, numReplicates, seed, monitor,
+                deadline);
+    }
+
+    /**
+     * Computes the replicates in the worker processes with the similarity
+     * information of a model instead of the simulated reads.
+     * 
+     * @param model
+     *            The similarity model of the genomes.
+     * @see #run(MappingMatrix, MappingMatrix, int, long, SolverMonitor, long)
+     */
+    public BootstrapResult run(final MappingMatrix reads,
+            final SimilarityModel model, final int numReplicates,
+            final long seed, final SolverMonitor monitor, final long deadline)
+            throws IOException {
+        return run(reads, null, model, numReplicates, seed, monitor, deadline);
+    }
+
+    private BootstrapResult run(final MappingMatrix reads,
+            final MappingMatrix simulations, final SimilarityModel model,
+            final int numReplicates, final long seed,
+            final SolverMonitor monitor, final long deadline)
+            throws IOException {
+        final int numShards = Math.min(numWorkers, numReplicates);
+        final List<Process> processes = new ArrayList<Process>();
+        ExecutorService shardThreads = Executors.newFixedThreadPool(numShards);
+        try {
+            List<Future<BootstrapResult>> shards = new ArrayList<Future<BootstrapResult>>();
+            for (int s = 0; s < numShards; ++s) {
+                final int shard = s;
+                // contiguous ranges of replicates of (almost) equal size
+                final int first = (int) ((long) s * numReplicates / numShards);
+                final int last = (int) ((long) (s + 1) * numReplicates / numShards);
+                final Process process = launcher.launch();
+                processes.add(process);
+                shards.add(shardThreads.submit(new Callable<BootstrapResult>() {
+                    @Override
+                    public BootstrapResult call() throws IOException,
+                            InterruptedException {
+                        return runShard(process, shard, reads, simulations,
+                                model, first, last - first, seed, deadline);
+                    }
+                }));
+            }
+
+            BootstrapResult[] results = new BootstrapResult[numShards];
+            int numFinished = 0;
+            while (numFinished < numShards) {
+                if (monitor.isCanceled()) {
+                    throw new CancellationException();
+                }
+                for (int s = 0; s < numShards; ++s) {
+                    if (results[s] == null && shards.get(s).isDone()) {
+                        results[s] = getResult(shards.get(s));
+                        ++numFinished;
+                        monitor.setProgress((double) numFinished / numShards,
+                                "Shard " + (s + 1) + " of " + numShards
+                                        + " finished");
+                    }
+                }
+                if (numFinished < numShards) {
+                    try {
+                        Thread.sleep(MONITOR_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException();
+                    }
+                }
+            }
+
+            BootstrapResult result = results[0];
+            for (int s = 1; s < numShards; ++s) {
+                result = result.merge(results[s]);
+            }
+            return result;
+        } finally {
+            // stops the remaining workers after a failure or cancellation
+            for (Process process : processes) {
+                process.destroy();
+            }
+            shardThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends the job to a worker and reads its result.
+     */
+    private BootstrapResult runShard(final Process process, final int shard,
+            final MappingMatrix reads, final MappingMatrix simulations,
+            final SimilarityModel model, final int firstReplicate,
+            final int numReplicates, final long seed, final long deadline)
+            throws IOException, InterruptedException {
+        // the standard error is drained concurrently, a full pipe would block
+        // the worker
+        ErrorCollector errors = new ErrorCollector(process.getErrorStream());
+        errors.start();
+
+        BootstrapResult result = null;
+        IOException failure = null;
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(process.getOutputStream()));
+            try {
+                if (model != null) {
+                    ShardWorker.writeJob(out, correction, reads, model,
+                            firstReplicate, numReplicates, seed, numThreads,
+                            deadline);
+                } else {
+                    ShardWorker.writeJob(out, correction, reads, simulations,
+                            firstReplicate, numReplicates, seed, numThreads,
+                            deadline);
+                }
+            } finally {
+                out.close();
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    process.getInputStream()));
+            try {
+                result = ShardWorker.readResult(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        final int exitCode = process.waitFor();
+        errors.join();
+        if (failure != null || exitCode != 0) {
+            throw new IOException("Worker of shard " + (shard + 1)
+                    + " failed (exit code " + exitCode + "): "
+                    + (errors.getText().length() > 0 ? errors.getText()
+                            : String.valueOf(failure)));
+        }
+        return result;
+    }
+
+    private static BootstrapResult getResult(
+            final Future<BootstrapResult> shard) throws IOException {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Worker failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * Keeps the beginning of the standard error of a worker.
+     */
+    private static final class ErrorCollector extends Thread {
+
+        private final InputStream stream;
+        private final StringBuilder text = new StringBuilder();
+
+        ErrorCollector(final InputStream stream) {
+            this.stream = stream;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Reader reader = new InputStreamReader(stream);
+            char[] buffer = new char[1024];
+            try {
+                for (int n = reader.read(buffer); n >= 0; n = reader
+                        .read(buffer)) {
+                    synchronized (text) {
+                        text.append(buffer, 0,
+                                Math.min(n, MAX_ERROR_LENGTH - text.length()));
+                    }
+                }
+            } catch (IOException e) {
+                // the worker was stopped
+            } finally {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // nothing we can do
+                }
+            }
+        }
+
+        String getText() {
+            synchronized (text) {
+                return text.toString().trim();
+            }
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A similarity model stored on disk, from which the model of any subset of
+ * its genomes can be loaded without reading the rest. A sample usually
+ * touches a small fraction of a large reference collection, so only the rows
+ * and columns of these genomes are needed.
+ * 
+ * The file starts with a header (magic, number of genomes, number of
+ * replicates, seed of the replicates, offset of the dictionary), followed by
+ * one record per genome: the number of simulated reads of the genome and its
+ * sparse row of the similarity counts and of every replicate (number of
+ * non-zero entries, then pairs of column and count). The dictionary at the
+ * end holds the resampling of the replicates and the name and the record
+ * offset of every genome, it is read on opening. The records are
+ * memory mapped in chunks of 1 GB, no record crosses a chunk, so loading a
+ * genome only touches the pages of its record.
+ * 
+ * @author aiche
+ */
+public final class SimilarityIndex implements Closeable {
+
+    /**
+     * Marks the files of this version.
+     */
+    private static final int MAGIC = 0x47534902;
+
+    private static final int HEADER_BYTES = 32;
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int numReplicates;
+    private final long seed;
+    private final ResamplingStrategy resampling;
+    private final long dictionaryOffset;
+    private final String[] names;
+    private final long[] offsets;
+    private final Map<String, Integer> genomes;
+    private final List<IntBuffer> chunks = new ArrayList<IntBuffer>();
+
+    private SimilarityIndex(final File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_BYTES || raf.readInt() != MAGIC) {
+                throw new IOException(file + " is not a GASiC similarity index.");
+            }
+            final int numGenomes = raf.readInt();
+            numReplicates = raf.readInt();
+            raf.readInt();
+            seed = raf.readLong();
+            dictionaryOffset = raf.readLong();
+            if (numGenomes <= 0 || numReplicates < 0
+                    || dictionaryOffset < HEADER_BYTES
+                    || dictionaryOffset > raf.length()) {
+                throw new IOException("Invalid similarity index " + file + ".");
+            }
+
+            names = new String[numGenomes];
+            offsets = new long[numGenomes];
+            genomes = new HashMap<String, Integer>();
+            raf.seek(dictionaryOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(raf.getChannel())));
+            resampling = SimilarityModel.readResampling(in);
+            for (int g = 0; g < numGenomes; ++g) {
+                names[g] = in.readUTF();
+                offsets[g] = in.readLong();
+                if (offsets[g] < HEADER_BYTES || offsets[g] >= dictionaryOffset
+                        || offsets[g] % 4 != 0
+                        || genomes.put(names[g], g) != null) {
+                    throw new IOException("Invalid similarity index " + file
+                            + ".");
+                }
+            }
+            channel = raf.getChannel();
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an index, only its dictionary is read.
+     * 
+     * @param file
+     *            The index file.
+     * @return The index, it must be closed.
+     * @throws IOException
+     *             If the file cannot be read or is not an index.
+     */
+    public static SimilarityIndex open(final File file) throws IOException {
+        return new SimilarityIndex(file);
+    }
+
+    /**
+     * Writes a model as index.
+     * 
+     * @param file
+     *            The index file.
+     * @param model
+     *            The model.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public static void write(final File file, final SimilarityModel model)
+            throws IOException {
+        final String[] names = model.getGenomeNames();
+        final int[] totals = model.getTotals();
+        final int numReplicates = model.getNumReplicates();
+        Writer writer = new Writer(file, names.length, numReplicates,
+                model.getResampling(), model.getSeed());
+        try {
+            int[][] rows = new int[1 + numReplicates][];
+            for (int s = 0; s < names.length; ++s) {
+                rows[0] = model.getCounts()[s];
+                for (int r = 0; r < numReplicates; ++r) {
+                    rows[1 + r] = model.getCounts(r)[s];
+                }
+                writer.addGenome(names[s], totals[s], rows);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return The number of genomes.
+     */
+    public int getNumGenomes() {
+        return names.length;
+    }
+
+    /**
+     * @return The number of pre-drawn bootstrap replicates.
+     */
+    public int getNumReplicates() {
+        return numReplicates;
+    }
+
+    /**
+     * @return How the replicates were drawn.
+     */
+    public ResamplingStrategy getResampling() {
+        return resampling;
+    }
+
+    /**
+     * @return The seed of the replicates.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The names of the genomes.
+     */
+    public String[] getGenomeNames() {
+        return names.clone();
+    }
+
+    /**
+     * @param name
+     *            The name of a genome.
+     * @return True if the genome is part of the index.
+     */
+    public boolean contains(final String name) {
+        return genomes.containsKey(name);
+    }
+
+    /**
+     * Loads the model of some of the genomes. Only the records of these
+     * genomes are read, the result equals
+     * {@link SimilarityModel#select(String[])} of the complete model.
+     * 
+     * @param selected
+     *            The names of the genomes, in the order of the result.
+     * @return The model of the selected genomes.
+     * @throws IllegalArgumentException
+     *             If a genome is not part of the index.
+     * @throws IOException
+     *             If the records cannot be read.
+     */
+    public synchronized SimilarityModel load(final String[] selected)
+            throws IOException {
+        final int numSelected = selected.length;
+        int[] rows = new int[numSelected];
+        // position of every genome of the index in the result, -1 for
+        // genomes that are not selected
+        int[] columns = new int[names.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < numSelected; ++i) {
+            Integer g = genomes.get(selected[i]);
+            if (g == null) {
+                throw new IllegalArgumentException("The genome " + selected[i]
+                        + " is not part of the similarity index.");
+            }
+            rows[i] = g;
+            columns[g] = i;
+        }
+
+        int[] totals = new int[numSelected];
+        int[][] counts = new int[numSelected][];
+        int[][][] replicates = new int[numReplicates][numSelected][];
+        for (int i = 0; i < numSelected; ++i) {
+            int[][] record = new int[1 + numReplicates][numSelected];
+            totals[i] = readRecord(rows[i], columns, record);
+            counts[i] = record[0];
+            for (int r = 0; r < numReplicates; ++r) {
+                replicates[r][i] = record[1 + r];
+            }
+        }
+        return new SimilarityModel(selected.clone(), counts, totals,
+                replicates, resampling, seed);
+    }
+
+    /**
+     * Reads the record of a genome.
+     * 
+     * @param genome
+     *            The genome.
+     * @param columns
+     *            The column of every genome in the rows, -1 to skip it, null
+     *            to only read the number of simulated reads.
+     * @param rows
+     *            Receives the counts and the counts of every replicate.
+     * @return The number of simulated reads of the genome.
+     */
+    private int readRecord(final int genome, final int[] columns,
+            final int[][] rows) throws IOException {
+        final long offset = offsets[genome];
+        IntBuffer chunk = getChunk((int) (offset / CHUNK_BYTES));
+        int position = (int) ((offset % CHUNK_BYTES) / 4);
+        try {
+            final int total = chunk.get(position++);
+            for (int m = 0; columns != null && m <= numReplicates; ++m) {
+                final int nonZeros = chunk.get(position++);
+                for (int e = 0; e < nonZeros; ++e) {
+                    final int g = chunk.get(position++);
+                    final int value = chunk.get(position++);
+                    if (columns[g] >= 0) {
+                        rows[m][columns[g]] = value;
+                    }
+                }
+            }
+            return total;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid similarity index " + file + ".", e);
+        }
+    }
+
+    /**
+     * Writes the index updated as by
+     * {@link SimilarityModel#update(String[], String[], MappingMatrix, Collection)}
+     * to another file. The records are updated one after the other, the
+     * index is never loaded as a whole.
+     * 
+     * @param target
+     *            The file of the updated index.
+     * @param columns
+     *            The genomes the simulated reads were mapped against, the
+     *            columns of the simulations.
+     * @param sources
+     *            The source genomes of the simulations, in the order of their
+     *            reads.
+     * @param simulations
+     *            The simulated reads, null if genomes are only dropped.
+     * @param removed
+     *            The genomes to drop.
+     * @throws IllegalArgumentException
+     *             If the simulated reads do not fit the index.
+     * @throws IOException
+     *             If reading or writing fails.
+     */
+    public synchronized void update(final File target, final String[] columns,
+            final String[] sources, final MappingMatrix simulations,
+            final Collection<String> removed) throws IOException {
+        if (target.getCanonicalFile().equals(file.getCanonicalFile())) {
+            throw new IllegalArgumentException(
+                    "The updated index must be written to another file.");
+        }
+        int[] totals = new int[names.length];
+        for (int g = 0; g < names.length; ++g) {
+            totals[g] = readRecord(g, null, null);
+        }
+        SimilarityUpdate update = new SimilarityUpdate(names, totals,
+                resampling, seed, columns, sources, simulations, removed);
+        final String[] kept = update.getKeptGenomes();
+        final String[] added = update.getAddedGenomes();
+
+        int[] keptColumns = new int[names.length];
+        Arrays.fill(keptColumns, -1);
+        for (int i = 0; i < kept.length; ++i) {
+            keptColumns[genomes.get(kept[i])] = i;
+        }
+        Writer writer = new Writer(target, kept.length + added.length,
+                numReplicates, resampling, seed);
+        try {
+            int[][] rows = new int[1 + numReplicates][];
+            for (int i = 0; i < kept.length; ++i) {
+                int[][] record = new int[1 + numReplicates][kept.length];
+                final int total = readRecord(genomes.get(kept[i]),
+                        keptColumns, record);
+                for (int m = 0; m <= numReplicates; ++m) {
+                    rows[m] = update.getKeptRow(i, m - 1, record[m]);
+                }
+                writer.addGenome(kept[i], total, rows);
+            }
+            for (int a = 0; a < added.length; ++a) {
+                for (int m = 0; m <= numReplicates; ++m) {
+                    rows[m] = update.getAddedRow(a, m - 1);
+                }
+                writer.addGenome(added[a], update.getAddedTotal(a), rows);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private IntBuffer getChunk(final int chunk) throws IOException {
+        while (chunks.size() <= chunk) {
+            final long start = chunks.size() * CHUNK_BYTES;
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(CHUNK_BYTES, dictionaryOffset - start))
+                    .asIntBuffer());
+        }
+        return chunks.get(chunk);
+    }
+
+    /**
+     * Closes the file, the mappings are released by the garbage collector.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        chunks.clear();
+        raf.close();
+    }
+
+    /**
+     * Writes an index genome by genome, so the model of a large reference
+     * collection never has to be held in memory as a whole.
+     */
+    public static final class Writer implements Closeable {
+
+        private final File file;
+        private final int numGenomes;
+        private final int numReplicates;
+        private final ResamplingStrategy resampling;
+        private final long seed;
+        private final DataOutputStream out;
+        private final List<String> names = new ArrayList<String>();
+        private final Map<String, Long> offsets = new HashMap<String, Long>();
+        private long position;
+
+        /**
+         * @param file
+         *            The index file.
+         * @param numGenomes
+         *            The number of genomes, the columns of the rows.
+         * @param numReplicates
+         *            The number of pre-drawn bootstrap replicates.
+         * @param resampling
+         *            How the replicates were drawn, MULTINOMIAL or POISSON.
+         * @param seed
+         *            The seed of the replicates.
+         * @throws IOException
+         *             If the file cannot be created.
+         */
+        public Writer(final File file, final int numGenomes,
+                final int numReplicates, final ResamplingStrategy resampling,
+                final long seed) throws IOException {
+            if (numGenomes <= 0 || numReplicates < 0) {
+                throw new IllegalArgumentException(
+                        "Invalid number of genomes or replicates.");
+            }
+            this.file = file;
+            this.numGenomes = numGenomes;
+            this.numReplicates = numReplicates;
+            this.resampling = resampling;
+            this.seed = seed;
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            // the header is completed on closing
+            out.write(new byte[HEADER_BYTES]);
+            position = HEADER_BYTES;
+        }
+
+        /**
+         * Adds the next genome, the genomes must be added in the order of the
+         * columns.
+         * 
+         * @param name
+         *            The name of the genome.
+         * @param total
+         *            The number of reads simulated from the genome.
+         * @param rows
+         *            The number of simulated reads of the genome mapping to
+         *            every genome, first of all reads, then of every
+         *            replicate.
+         * @throws IOException
+         *             If writing fails.
+         */
+        public void addGenome(final String name, final int total,
+                final int[][] rows) throws IOException {
+            if (names.size() == numGenomes || offsets.containsKey(name)) {
+                throw new IllegalArgumentException("Cannot add genome " + name
+                        + ", it was added before or all genomes were added.");
+            }
+            if (rows.length != 1 + numReplicates) {
+                throw new IllegalArgumentException(
+                        "A row is required for the counts and every replicate.");
+            }
+            long bytes = 4L;
+            for (int[] row : rows) {
+                if (row.length != numGenomes) {
+                    throw new IllegalArgumentException(
+                            "The rows must cover all genomes.");
+                }
+                bytes += 4L + 8L * countNonZeros(row);
+            }
+            if (bytes > CHUNK_BYTES) {
+                throw new IOException("The record of genome " + name
+                        + " is too large.");
+            }
+            // records do not cross the mapped chunks
+            if (position / CHUNK_BYTES != (position + bytes - 1) / CHUNK_BYTES) {
+                final long padding = CHUNK_BYTES - position % CHUNK_BYTES;
+                for (long i = 0; i < padding; ++i) {
+                    out.write(0);
+                }
+                position += padding;
+            }
+
+            names.add(name);
+            offsets.put(name, position);
+            out.writeInt(total);
+            for (int[] row : rows) {
+                out.writeInt(countNonZeros(row));
+                for (int g = 0; g < row.length; ++g) {
+                    if (row[g] != 0) {
+                        out.writeInt(g);
+                        out.writeInt(row[g]);
+                    }
+                }
+            }
+            position += bytes;
+        }
+
+        private static int countNonZeros(final int[] row) {
+            int nonZeros = 0;
+            for (int value : row) {
+                nonZeros += (value != 0 ? 1 : 0);
+            }
+            return nonZeros;
+        }
+
+        /**
+         * Writes the dictionary and completes the header.
+         * 
+         * @throws IOException
+         *             If writing fails or not all genomes were added.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeUTF(resampling.name());
+                for (String name : names) {
+                    out.writeUTF(name);
+                    out.writeLong(offsets.get(name));
+                }
+            } finally {
+                out.close();
+            }
+            if (names.size() != numGenomes) {
+                throw new IOException("Only " + names.size() + " of "
+                        + numGenomes + " genomes were written to " + file
+                        + ".");
+            }
+            RandomAccessFile header = new RandomAccessFile(file, "rw");
+            try {
+                header.writeInt(MAGIC);
+                header.writeInt(numGenomes);
+                header.writeInt(numReplicates);
+                header.writeInt(0);
+                header.writeLong(seed);
+                header.writeLong(position);
+            } finally {
+                header.close();
+            }
+        }
+    }
+}
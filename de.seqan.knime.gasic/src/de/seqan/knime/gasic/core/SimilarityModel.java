@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The similarity information of a set of genomes, computed once from their
+ * simulated reads and reused by every estimation against them: the names of
+ * the genomes, the similarity counts, the number of reads simulated from every
+ * genome and, optionally, the similarity counts of bootstrap replicates of the
+ * simulated reads drawn in advance.
+ * 
+ * An estimation with a model resamples the reads of the sample as usual. The
+ * simulated reads are no longer available, so replicate i uses the pre-drawn
+ * replicate i modulo their number, or the counts of all simulated reads if
+ * the model has no replicates.
+ * 
+ * The simulated reads of every genome are resampled with a seed derived from
+ * the seed of the model, the replicate and the name of the genome. A row of a
+ * replicate therefore only depends on the reads of its genome, which allows
+ * to add genomes to a model later (see
+ * {@link #update(String[], String[], MappingMatrix, Collection)}).
+ * 
+ * @author aiche
+ */
+public final class SimilarityModel {
+
+    /**
+     * Marks the serialized form of this version.
+     */
+    private static final int MAGIC = 0x47534d02;
+
+    private final String[] names;
+    private final int[][] counts;
+    private final int[] totals;
+    private final int[][][] replicates;
+    private final ResamplingStrategy resampling;
+    private final long seed;
+
+    /**
+     * @param names
+     *            The names of the genomes.
+     * @param counts
+     *            counts[s][g] is the number of reads simulated from genome s
+     *            that map to genome g.
+     * @param totals
+     *            The number of reads simulated from every genome.
+     * @param replicates
+     *            The counts of the pre-drawn bootstrap replicates, can be
+     *            empty.
+     * @param resampling
+     *            How the replicates were drawn, MULTINOMIAL or POISSON.
+     * @param seed
+     *            The seed of the replicates.
+     */
+    public SimilarityModel(final String[] names, final int[][] counts,
+            final int[] totals, final int[][][] replicates,
+            final ResamplingStrategy resampling, final long seed) {
+        final int numGenomes = names.length;
+        if (numGenomes == 0 || counts.length != numGenomes
+                || totals.length != numGenomes) {
+            throw new IllegalArgumentException(
+                    "The names, counts and totals must cover the same genomes.");
+        }
+        for (int[][] replicate : replicates) {
+            if (replicate.length != numGenomes) {
+                throw new IllegalArgumentException(
+                        "The replicates must cover the same genomes.");
+            }
+        }
+        this.names = names;
+        this.counts = counts;
+        this.totals = totals;
+        this.replicates = replicates;
+        this.resampling = resampling;
+        this.seed = seed;
+    }
+
+    /**
+     * Counts the simulated reads and draws the bootstrap replicates. Every
+     * replicate of every genome is drawn with its own seed, see
+     * {@link #getSourceCounts(MappingMatrix, int, String, int, ResamplingStrategy, long)}.
+     * 
+     * @param names
+     *            The names of the genomes, in the order of the source genomes.
+     * @param simulations
+     *            The simulated reads of every genome.
+     * @param numReplicates
+     *            The number of replicates to draw, 0 for none.
+     * @param resampling
+     *            MULTINOMIAL or POISSON.
+     * @param seed
+     *            The seed of the replicates.
+     * @return The model.
+     */
+    public static SimilarityModel create(final String[] names,
+            final MappingMatrix simulations, final int numReplicates,
+            final ResamplingStrategy resampling, final long seed) {
+        final int numGenomes = simulations.getNumGenomes();
+        if (names.length != numGenomes || !simulations.hasSources()) {
+            throw new IllegalArgumentException(
+                    "The simulated reads of every genome are required.");
+        }
+        int[] totals = new int[numGenomes];
+        for (int s = 0; s < numGenomes; ++s) {
+            totals[s] = simulations.getSourceEnd(s)
+                    - simulations.getSourceStart(s);
+        }
+        int[][][] replicates = new int[numReplicates][numGenomes][];
+        for (int r = 0; r < numReplicates; ++r) {
+            for (int s = 0; s < numGenomes; ++s) {
+                replicates[r][s] = getSourceCounts(simulations, s, names[s],
+                        r, resampling, seed);
+            }
+        }
+        return new SimilarityModel(names.clone(),
+                simulations.getSourceCounts(null), totals, replicates,
+                resampling, seed);
+    }
+
+    /**
+     * Counts the simulated reads of one genome, or of a bootstrap replicate
+     * of them. The replicate is drawn with a seed derived from the seed of the
+     * model, the replicate and the name of the genome, so the same reads
+     * always give the same replicate, whatever the other genomes are.
+     * 
+     * @param simulations
+     *            The simulated reads.
+     * @param source
+     *            The source genome of the reads.
+     * @param name
+     *            The name of the source genome.
+     * @param replicate
+     *            The replicate, -1 to count all reads once.
+     * @param resampling
+     *            MULTINOMIAL or POISSON.
+     * @param seed
+     *            The seed of the model.
+     * @return The number of reads of the genome mapping to every genome.
+     */
+    static int[] getSourceCounts(final MappingMatrix simulations,
+            final int source, final String name, final int replicate,
+            final ResamplingStrategy resampling, final long seed) {
+        if (replicate < 0) {
+            return simulations.getSourceCounts(source, null);
+        }
+        final long replicateSeed = BootstrapCorrection.getReplicateSeed(
+                BootstrapCorrection.getReplicateSeed(seed, replicate),
+                name.hashCode());
+        return simulations.getSourceCounts(source, Bootstrap.sample(
+                simulations, source, resampling, new Random(replicateSeed)));
+    }
+
+    /**
+     * Adds genomes to the model and drops obsolete ones. Only the rows of the
+     * added genomes and the columns of the added genomes in the rows of the
+     * kept genomes are counted, everything else is taken from this model.
+     * 
+     * The simulated reads of the added genomes must be mapped against all
+     * genomes of the updated model. The simulated reads of a genome of the
+     * model, remapped against the extended reference in their original order,
+     * give its counts for the added genomes; its replicates are drawn exactly
+     * as before, so the result equals a model built from scratch. Genomes of
+     * the model without simulated reads in the update are assumed not to be
+     * similar to the added genomes.
+     * 
+     * @param columns
+     *            The genomes the simulated reads were mapped against, the
+     *            columns of the simulations.
+     * @param sources
+     *            The source genomes of the simulations, in the order of their
+     *            reads.
+     * @param simulations
+     *            The simulated reads, null if genomes are only dropped.
+     * @param removed
+     *            The genomes to drop.
+     * @return The updated model.
+     * @throws IllegalArgumentException
+     *             If the simulated reads do not fit the model.
+     */
+    public SimilarityModel update(final String[] columns,
+            final String[] sources, final MappingMatrix simulations,
+            final Collection<String> removed) {
+        SimilarityUpdate update = new SimilarityUpdate(names, totals,
+                resampling, seed, columns, sources, simulations, removed);
+        final String[] kept = update.getKeptGenomes();
+        final String[] added = update.getAddedGenomes();
+        final int numKept = kept.length;
+        final int numGenomes = numKept + added.length;
+
+        SimilarityModel keptModel = select(kept);
+        String[] updatedNames = new String[numGenomes];
+        int[] updatedTotals = new int[numGenomes];
+        int[][] updatedCounts = new int[numGenomes][];
+        int[][][] updatedReplicates = new int[replicates.length][numGenomes][];
+        for (int i = 0; i < numKept; ++i) {
+            updatedNames[i] = kept[i];
+            updatedTotals[i] = keptModel.totals[i];
+            updatedCounts[i] = update.getKeptRow(i, -1, keptModel.counts[i]);
+            for (int r = 0; r < replicates.length; ++r) {
+                updatedReplicates[r][i] = update.getKeptRow(i, r,
+                        keptModel.replicates[r][i]);
+            }
+        }
+        for (int a = 0; a < added.length; ++a) {
+            updatedNames[numKept + a] = added[a];
+            updatedTotals[numKept + a] = update.getAddedTotal(a);
+            updatedCounts[numKept + a] = update.getAddedRow(a, -1);
+            for (int r = 0; r < replicates.length; ++r) {
+                updatedReplicates[r][numKept + a] = update.getAddedRow(a, r);
+            }
+        }
+        return new SimilarityModel(updatedNames, updatedCounts,
+                updatedTotals, updatedReplicates, resampling, seed);
+    }
+
+    /**
+     * @return The number of genomes.
+     */
+    public int getNumGenomes() {
+        return names.length;
+    }
+
+    /**
+     * @return The names of the genomes.
+     */
+    public String[] getGenomeNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return The number of reads simulated from every genome.
+     */
+    public int[] getTotals() {
+        return totals.clone();
+    }
+
+    /**
+     * @return The number of pre-drawn bootstrap replicates.
+     */
+    public int getNumReplicates() {
+        return replicates.length;
+    }
+
+    /**
+     * @return How the replicates were drawn.
+     */
+    public ResamplingStrategy getResampling() {
+        return resampling;
+    }
+
+    /**
+     * @return The seed of the replicates.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return counts[s][g] is the number of reads simulated from genome s that
+     *         map to genome g. The array must not be modified.
+     */
+    public int[][] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @param replicate
+     *            The index of a bootstrap replicate of the estimation.
+     * @return The counts of the replicate, see the class documentation. The
+     *         array must not be modified.
+     */
+    public int[][] getCounts(final int replicate) {
+        return (replicates.length == 0 ? counts
+                : replicates[replicate % replicates.length]);
+    }
+
+    /**
+     * @param replicate
+     *            The index of a bootstrap replicate of the estimation.
+     * @return The fraction of the simulated reads of every genome that map
+     *         back to it in the replicate.
+     */
+    public double[] getMappability(final int replicate) {
+        final int[][] c = getCounts(replicate);
+        double[] mappability = new double[names.length];
+        for (int j = 0; j < names.length; ++j) {
+            mappability[j] = (double) c[j][j] / (double) totals[j];
+        }
+        return mappability;
+    }
+
+    /**
+     * Restricts the model to some of its genomes. The similarity of two
+     * genomes does not depend on the other genomes, so the result equals the
+     * model of only these genomes.
+     * 
+     * @param selected
+     *            The names of the genomes, in the order of the result.
+     * @return The model of the selected genomes.
+     * @throws IllegalArgumentException
+     *             If a genome is not part of the model.
+     */
+    public SimilarityModel select(final String[] selected) {
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        for (int g = 0; g < names.length; ++g) {
+            index.put(names[g], g);
+        }
+        int[] columns = new int[selected.length];
+        for (int i = 0; i < selected.length; ++i) {
+            Integer g = index.get(selected[i]);
+            if (g == null) {
+                throw new IllegalArgumentException("The genome " + selected[i]
+                        + " is not part of the similarity model.");
+            }
+            columns[i] = g;
+        }
+
+        int[] selectedTotals = new int[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            selectedTotals[i] = totals[columns[i]];
+        }
+        int[][][] selectedReplicates = new int[replicates.length][][];
+        for (int r = 0; r < replicates.length; ++r) {
+            selectedReplicates[r] = select(replicates[r], columns);
+        }
+        return new SimilarityModel(selected.clone(), select(counts, columns),
+                selectedTotals, selectedReplicates, resampling, seed);
+    }
+
+    private static int[][] select(final int[][] matrix, final int[] columns) {
+        int[][] result = new int[columns.length][columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            for (int j = 0; j < columns.length; ++j) {
+                result[i][j] = matrix[columns[i]][columns[j]];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The heap memory used by the counts in bytes.
+     */
+    public long getSizeInBytes() {
+        final long numGenomes = names.length;
+        return 4L * numGenomes * numGenomes * (1 + replicates.length);
+    }
+
+    /**
+     * Writes the model in a compact binary form. Most genomes are unrelated,
+     * so the count matrices are written as sparse rows.
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(resampling.name());
+        out.writeLong(seed);
+        out.writeInt(names.length);
+        for (int g = 0; g < names.length; ++g) {
+            out.writeUTF(names[g]);
+            out.writeInt(totals[g]);
+        }
+        writeCounts(out, counts);
+        out.writeInt(replicates.length);
+        for (int[][] replicate : replicates) {
+            writeCounts(out, replicate);
+        }
+    }
+
+    /**
+     * Reads a model written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The model.
+     * @throws IOException
+     *             If reading fails or the input is not a model.
+     */
+    public static SimilarityModel read(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a GASiC similarity model.");
+        }
+        final ResamplingStrategy resampling = readResampling(in);
+        final long seed = in.readLong();
+        final int numGenomes = in.readInt();
+        if (numGenomes <= 0) {
+            throw new IOException("Invalid similarity model.");
+        }
+        String[] names = new String[numGenomes];
+        int[] totals = new int[numGenomes];
+        for (int g = 0; g < numGenomes; ++g) {
+            names[g] = in.readUTF();
+            totals[g] = in.readInt();
+        }
+        int[][] counts = readCounts(in, numGenomes);
+        final int numReplicates = in.readInt();
+        if (numReplicates < 0) {
+            throw new IOException("Invalid similarity model.");
+        }
+        int[][][] replicates = new int[numReplicates][][];
+        for (int r = 0; r < numReplicates; ++r) {
+            replicates[r] = readCounts(in, numGenomes);
+        }
+        return new SimilarityModel(names, counts, totals, replicates,
+                resampling, seed);
+    }
+
+    /**
+     * Reads the name of the resampling of the replicates.
+     * 
+     * @param in
+     *            The input.
+     * @return The resampling.
+     * @throws IOException
+     *             If reading fails or the resampling is unknown.
+     */
+    static ResamplingStrategy readResampling(final DataInput in)
+            throws IOException {
+        final String name = in.readUTF();
+        if (!ResamplingStrategy.MULTINOMIAL.name().equals(name)
+                && !ResamplingStrategy.POISSON.name().equals(name)) {
+            throw new IOException("Unknown resampling " + name + ".");
+        }
+        return ResamplingStrategy.valueOf(name);
+    }
+
+    private static void writeCounts(final DataOutput out, final int[][] matrix)
+            throws IOException {
+        for (int[] row : matrix) {
+            int nonZeros = 0;
+            for (int value : row) {
+                nonZeros += (value != 0 ? 1 : 0);
+            }
+            out.writeInt(nonZeros);
+            for (int g = 0; g < row.length; ++g) {
+                if (row[g] != 0) {
+                    out.writeInt(g);
+                    out.writeInt(row[g]);
+                }
+            }
+        }
+    }
+
+    private static int[][] readCounts(final DataInput in, final int numGenomes)
+            throws IOException {
+        int[][] matrix = new int[numGenomes][numGenomes];
+        for (int s = 0; s < numGenomes; ++s) {
+            final int nonZeros = in.readInt();
+            if (nonZeros < 0 || nonZeros > numGenomes) {
+                throw new IOException("Invalid similarity model.");
+            }
+            for (int i = 0; i < nonZeros; ++i) {
+                final int g = in.readInt();
+                if (g < 0 || g >= numGenomes) {
+                    throw new IOException("Invalid similarity model.");
+                }
+                matrix[s][g] = in.readInt();
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The rows of an updated similarity model: the genomes of the model that are
+ * kept get the columns of the added genomes, the added genomes get complete
+ * rows. Only these counts are computed from the simulated reads of the
+ * update, the rest of the model is reused.
+ * 
+ * @author aiche
+ */
+final class SimilarityUpdate {
+
+    private final ResamplingStrategy resampling;
+    private final long seed;
+    private final MappingMatrix simulations;
+    private final String[] kept;
+    private final String[] added;
+    private final int[] keptSources;
+    private final int[] keptColumns;
+    private final int[] addedSources;
+    private final int[] addedColumns;
+
+    /**
+     * @param genomes
+     *            The genomes of the model.
+     * @param totals
+     *            The number of simulated reads of every genome of the model.
+     * @param resampling
+     *            How the replicates of the model were drawn.
+     * @param seed
+     *            The seed of the replicates of the model.
+     * @param columns
+     *            The genomes the simulated reads were mapped against.
+     * @param sources
+     *            The source genomes of the simulated reads.
+     * @param simulations
+     *            The simulated reads, null if genomes are only dropped.
+     * @param removed
+     *            The genomes to drop.
+     * @throws IllegalArgumentException
+     *             If the simulated reads do not fit the model.
+     */
+    SimilarityUpdate(final String[] genomes, final int[] totals,
+            final ResamplingStrategy resampling, final long seed,
+            final String[] columns, final String[] sources,
+            final MappingMatrix simulations, final Collection<String> removed) {
+        this.resampling = resampling;
+        this.seed = seed;
+        this.simulations = simulations;
+
+        Map<String, Integer> model = index(genomes, "model");
+        Set<String> dropped = new HashSet<String>(removed);
+        for (String name : dropped) {
+            if (!model.containsKey(name)) {
+                throw new IllegalArgumentException("The genome " + name
+                        + " is not part of the similarity model.");
+            }
+        }
+        // without simulated reads, genomes are only dropped
+        final String[] simulated = (simulations != null ? sources
+                : new String[0]);
+        if (simulations != null
+                && (columns.length != simulations.getNumGenomes() || !simulations
+                        .hasSources())) {
+            throw new IllegalArgumentException(
+                    "The genomes do not match the simulated reads.");
+        }
+        Map<String, Integer> columnIndex = index(
+                (simulations != null ? columns : new String[0]), "columns");
+        Map<String, Integer> sourceIndex = index(simulated, "sources");
+
+        List<String> keptNames = new ArrayList<String>();
+        for (String name : genomes) {
+            if (!dropped.contains(name)) {
+                keptNames.add(name);
+            }
+        }
+        // the added genomes in the order of their reads
+        List<String> addedNames = new ArrayList<String>();
+        for (String name : simulated) {
+            if (dropped.contains(name)) {
+                throw new IllegalArgumentException("The genome " + name
+                        + " is removed, but has simulated reads.");
+            }
+            if (!model.containsKey(name)) {
+                addedNames.add(name);
+            }
+        }
+        kept = keptNames.toArray(new String[keptNames.size()]);
+        added = addedNames.toArray(new String[addedNames.size()]);
+
+        keptSources = new int[kept.length];
+        keptColumns = new int[kept.length];
+        for (int i = 0; i < kept.length; ++i) {
+            keptSources[i] = get(sourceIndex, kept[i]);
+            keptColumns[i] = get(columnIndex, kept[i]);
+            if (added.length > 0 && keptColumns[i] < 0) {
+                throw new IllegalArgumentException(
+                        "The simulated reads are not mapped against genome "
+                                + kept[i] + ".");
+            }
+            final int source = keptSources[i];
+            if (source >= 0) {
+                final int numReads = simulations.getSourceEnd(source)
+                        - simulations.getSourceStart(source);
+                final int total = totals[model.get(kept[i])];
+                if (numReads != total) {
+                    throw new IllegalArgumentException("The update has "
+                            + numReads + " simulated reads of genome "
+                            + kept[i] + ", the model " + total + ".");
+                }
+            }
+        }
+        addedSources = new int[added.length];
+        addedColumns = new int[added.length];
+        for (int a = 0; a < added.length; ++a) {
+            addedSources[a] = sourceIndex.get(added[a]);
+            addedColumns[a] = get(columnIndex, added[a]);
+            if (addedColumns[a] < 0) {
+                throw new IllegalArgumentException(
+                        "The simulated reads are not mapped against genome "
+                                + added[a] + ".");
+            }
+        }
+    }
+
+    private static Map<String, Integer> index(final String[] names,
+            final String what) {
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        for (int i = 0; i < names.length; ++i) {
+            if (index.put(names[i], i) != null) {
+                throw new IllegalArgumentException("The genome " + names[i]
+                        + " appears twice in the " + what + ".");
+            }
+        }
+        return index;
+    }
+
+    private static int get(final Map<String, Integer> index, final String name) {
+        Integer i = index.get(name);
+        return (i == null ? -1 : i);
+    }
+
+    /**
+     * @return The genomes of the model that are kept, in the order of the
+     *         model.
+     */
+    String[] getKeptGenomes() {
+        return kept;
+    }
+
+    /**
+     * @return The added genomes, in the order of their simulated reads.
+     */
+    String[] getAddedGenomes() {
+        return added;
+    }
+
+    /**
+     * @param i
+     *            The index of a kept genome.
+     * @param replicate
+     *            The replicate, -1 for the counts of all simulated reads.
+     * @param row
+     *            The row of the genome in the model, restricted to the kept
+     *            genomes.
+     * @return The row of the genome in the updated model.
+     */
+    int[] getKeptRow(final int i, final int replicate, final int[] row) {
+        int[] updated = Arrays.copyOf(row, kept.length + added.length);
+        if (keptSources[i] >= 0 && added.length > 0) {
+            final int[] counts = SimilarityModel.getSourceCounts(simulations,
+                    keptSources[i], kept[i], replicate, resampling, seed);
+            for (int a = 0; a < added.length; ++a) {
+                updated[kept.length + a] = counts[addedColumns[a]];
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * @param a
+     *            The index of an added genome.
+     * @param replicate
+     *            The replicate, -1 for the counts of all simulated reads.
+     * @return The row of the genome in the updated model.
+     */
+    int[] getAddedRow(final int a, final int replicate) {
+        final int[] counts = SimilarityModel.getSourceCounts(simulations,
+                addedSources[a], added[a], replicate, resampling, seed);
+        int[] row = new int[kept.length + added.length];
+        for (int i = 0; i < kept.length; ++i) {
+            row[i] = counts[keptColumns[i]];
+        }
+        for (int b = 0; b < added.length; ++b) {
+            row[kept.length + b] = counts[addedColumns[b]];
+        }
+        return row;
+    }
+
+    /**
+     * @param a
+     *            The index of an added genome.
+     * @return The number of simulated reads of the genome.
+     */
+    int getAddedTotal(final int a) {
+        return simulations.getSourceEnd(addedSources[a])
+                - simulations.getSourceStart(addedSources[a]);
+    }
+}
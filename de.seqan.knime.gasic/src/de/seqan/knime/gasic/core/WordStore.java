@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable array of 64 bit words holding the bitmaps of a
+ * {@link MappingMatrix}, either on the Java heap or off heap in a memory
+ * mapped temporary file.
+ * 
+ * @author aiche
+ */
+abstract class WordStore implements Closeable {
+
+    /**
+     * @param index
+     *            The word index.
+     * @return The word.
+     */
+    abstract long get(long index);
+
+    /**
+     * Sets the given bits of a word.
+     * 
+     * @param index
+     *            The word index.
+     * @param bits
+     *            The bits to set.
+     */
+    abstract void or(long index, long bits);
+
+    /**
+     * Grows the store, new words are 0.
+     * 
+     * @param size
+     *            The number of words the store must hold.
+     */
+    abstract void ensureCapacity(long size);
+
+    /**
+     * @return The number of heap bytes used by the words.
+     */
+    abstract long getHeapBytes();
+
+    /**
+     * Releases the words, the store must not be used afterwards.
+     */
+    @Override
+    public abstract void close();
+
+    /**
+     * Words in a long array.
+     */
+    static final class Heap extends WordStore {
+
+        private long[] words;
+
+        Heap(final long capacity) {
+            words = new long[toArraySize(Math.max(1, capacity))];
+        }
+
+        @Override
+        long get(final long index) {
+            return words[(int) index];
+        }
+
+        @Override
+        void or(final long index, final long bits) {
+            words[(int) index] |= bits;
+        }
+
+        @Override
+        void ensureCapacity(final long size) {
+            if (size > words.length) {
+                words = Arrays.copyOf(words,
+                        toArraySize(Math.max(size, 2L * words.length)));
+            }
+        }
+
+        @Override
+        long getHeapBytes() {
+            return 8L * words.length;
+        }
+
+        @Override
+        public void close() {
+            words = new long[1];
+        }
+
+        private static int toArraySize(final long size) {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException(
+                        "The mapping information exceeds the largest Java array, use off heap storage.");
+            }
+            return (int) size;
+        }
+    }
+
+    /**
+     * Words in a memory mapped temporary file, mapped in chunks of 1 GB. The
+     * operating system pages the words in and out, so the store can be larger
+     * than the Java heap and the physical memory.
+     */
+    static final class Mapped extends WordStore {
+
+        private static final int CHUNK_BITS = 27;
+        private static final long CHUNK_WORDS = 1L << CHUNK_BITS;
+        private static final long CHUNK_MASK = CHUNK_WORDS - 1;
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final List<LongBuffer> chunks = new ArrayList<LongBuffer>();
+
+        Mapped(final long capacity) throws IOException {
+            file = File.createTempFile("gasic-mappings", ".bin");
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            ensureCapacity(Math.max(1, capacity));
+        }
+
+        @Override
+        long get(final long index) {
+            return chunks.get((int) (index >>> CHUNK_BITS)).get(
+                    (int) (index & CHUNK_MASK));
+        }
+
+        @Override
+        void or(final long index, final long bits) {
+            LongBuffer chunk = chunks.get((int) (index >>> CHUNK_BITS));
+            final int i = (int) (index & CHUNK_MASK);
+            chunk.put(i, chunk.get(i) | bits);
+        }
+
+        @Override
+        void ensureCapacity(final long size) {
+            while ((long) chunks.size() * CHUNK_WORDS < size) {
+                try {
+                    // mapping beyond the end of the file extends it with
+                    // zeros
+                    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                            8L * chunks.size() * CHUNK_WORDS, 8L * CHUNK_WORDS)
+                            .asLongBuffer());
+                } catch (IOException e) {
+                    throw new IllegalStateException(
+                            "Cannot extend the mapping file " + file + ": "
+                                    + e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        long getHeapBytes() {
+            return 0L;
+        }
+
+        @Override
+        public void close() {
+            // the mappings are released by the garbage collector, the file
+            // can already be removed on most platforms
+            chunks.clear();
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // nothing we can do
+            }
+            file.delete();
+        }
+    }
+}
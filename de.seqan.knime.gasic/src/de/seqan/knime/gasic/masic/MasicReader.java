@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.masic;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads masic files, the mapping information of a read set:
+ * 
+ * <pre>
+ * #Genomes\t#Reads
+ * &gt;genome name (once per genome)
+ * read name\tgenome index\tgenome index ...
+ * </pre>
+ * 
+ * The read lines are parsed in place, without splitting them into strings,
+ * into the read name and the indices of the genomes the read maps to. The
+ * indices are only valid until the next call of {@link #next()}.
+ * 
+ * @author aiche
+ */
+public final class MasicReader implements Closeable {
+
+    private static final String GENOME_PREFIX = ">";
+
+    /**
+     * The TSV separator.
+     */
+    private static final char SEPARATOR = '\t';
+
+    private final BufferedReader reader;
+    private final int numGenomes;
+    private final int numReads;
+    private final List<String> genomes;
+
+    /**
+     * The first read line, read together with the header.
+     */
+    private String pendingLine;
+
+    private String readName;
+    private int[] mappings;
+    private int numMappings;
+
+    /**
+     * Reads the header of a masic file.
+     * 
+     * @param reader
+     *            The file, positioned at its beginning. Closed by
+     *            {@link #close()}.
+     * @throws IOException
+     *             If the file cannot be read or the header is invalid.
+     */
+    public MasicReader(final BufferedReader reader) throws IOException {
+        this.reader = reader;
+
+        // 1st line numGenomes\tnumReads
+        String line = reader.readLine();
+        String[] tokens = (line == null ? new String[0] : line.trim().split(
+                String.valueOf(SEPARATOR), -1));
+        if (tokens.length != 2) {
+            throw new IOException(
+                    "Invalid masic file. First line should be #Genomes\t#Reads.");
+        }
+        try {
+            numGenomes = Integer.parseInt(tokens[0]);
+            numReads = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException(
+                    "Invalid masic file. First line should be #Genomes\t#Reads.");
+        }
+
+        // read header
+        List<String> names = new ArrayList<String>();
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith(GENOME_PREFIX)) {
+                break;
+            }
+            names.add(line.substring(1).trim());
+        }
+        if (names.size() != numGenomes) {
+            throw new IOException("Invalid masic file header. " + numGenomes
+                    + " were announced but we found " + names.size());
+        }
+        genomes = Collections.unmodifiableList(names);
+        pendingLine = line;
+        mappings = new int[Math.max(1, Math.min(numGenomes, 16))];
+    }
+
+    /**
+     * @return The number of genomes announced (and named) in the header.
+     */
+    public int getNumGenomes() {
+        return numGenomes;
+    }
+
+    /**
+     * @return The number of reads announced in the header.
+     */
+    public int getNumReads() {
+        return numReads;
+    }
+
+    /**
+     * @return The names of the genomes.
+     */
+    public List<String> getGenomes() {
+        return genomes;
+    }
+
+    /**
+     * Advances to the next read, empty lines are skipped.
+     * 
+     * @return False if there are no more reads.
+     * @throws IOException
+     *             If the file cannot be read or the line is invalid.
+     */
+    public boolean next() throws IOException {
+        String line;
+        do {
+            if (pendingLine != null) {
+                line = pendingLine;
+                pendingLine = null;
+            } else {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                readName = null;
+                numMappings = 0;
+                return false;
+            }
+        } while (!parse(line));
+        return true;
+    }
+
+    /**
+     * Parses a read line, the equivalent of line.trim().split("\t") followed
+     * by parsing the indices.
+     * 
+     * @return False if the line is empty.
+     */
+    private boolean parse(final String line) throws IOException {
+        int begin = 0;
+        int end = line.length();
+        while (begin < end && line.charAt(begin) <= ' ') {
+            ++begin;
+        }
+        while (end > begin && line.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        if (begin == end) {
+            return false;
+        }
+
+        int pos = line.indexOf(SEPARATOR, begin);
+        if (pos < 0 || pos >= end) {
+            pos = end;
+        }
+        readName = line.substring(begin, pos);
+
+        numMappings = 0;
+        while (pos < end) {
+            // skip the separator
+            ++pos;
+            int genome = 0;
+            int digits = 0;
+            while (pos < end && line.charAt(pos) != SEPARATOR) {
+                final int digit = line.charAt(pos) - '0';
+                // also stops indices from overflowing
+                if (digit < 0 || digit > 9 || genome > (numGenomes - digit) / 10) {
+                    throw invalidIndex(line);
+                }
+                genome = 10 * genome + digit;
+                ++digits;
+                ++pos;
+            }
+            if (digits == 0 || genome >= numGenomes) {
+                throw invalidIndex(line);
+            }
+            if (numMappings == mappings.length) {
+                int[] grown = new int[2 * mappings.length];
+                System.arraycopy(mappings, 0, grown, 0, numMappings);
+                mappings = grown;
+            }
+            mappings[numMappings++] = genome;
+        }
+        return true;
+    }
+
+    private IOException invalidIndex(final String line) {
+        return new IOException("Invalid genome index in read line: " + line);
+    }
+
+    /**
+     * @return The name of the current read.
+     */
+    public String getReadName() {
+        return readName;
+    }
+
+    /**
+     * @return The number of genomes the current read maps to.
+     */
+    public int getNumMappings() {
+        return numMappings;
+    }
+
+    /**
+     * @param i
+     *            The mapping, 0 <= i < {@link #getNumMappings()}.
+     * @return The index of the genome.
+     */
+    public int getMapping(final int i) {
+        return mappings[i];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.masic;
+
+import java.util.Arrays;
+
+/**
+ * Turns the reads of a {@link MasicReader} into table rows: an optional
+ * source genome, the read name and one flag per genome. The cells and the
+ * container are provided by the subclass, so the row construction can be
+ * used (and measured) independently of the table implementation.
+ * 
+ * @param <C>
+ *            The type of the cells.
+ * @author aiche
+ */
+public abstract class MasicRowBuilder<C> {
+
+    private final int numGenomes;
+    private final int firstGenomeColumn;
+
+    /**
+     * @param numGenomes
+     *            The number of genomes.
+     * @param withSourceGenome
+     *            True if the rows start with the name of the genome the reads
+     *            were simulated from.
+     */
+    protected MasicRowBuilder(final int numGenomes,
+            final boolean withSourceGenome) {
+        this.numGenomes = numGenomes;
+        this.firstGenomeColumn = (withSourceGenome ? 2 : 1);
+    }
+
+    /**
+     * Adds the current read of the reader as a row.
+     * 
+     * @param rowIdx
+     *            The index of the row, part of the row key.
+     * @param sourceGenome
+     *            The name of the source genome, ignored if the rows have no
+     *            source genome column.
+     * @param reader
+     *            The reader, positioned at a read.
+     */
+    public final void addRow(final int rowIdx, final String sourceGenome,
+            final MasicReader reader) {
+        C[] cells = createCells(firstGenomeColumn + numGenomes);
+
+        int c = 0;
+        if (firstGenomeColumn == 2) {
+            cells[c++] = createStringCell(sourceGenome);
+        }
+        cells[c] = createStringCell(reader.getReadName());
+
+        // initialize the row and update those genomes that were mapped
+        Arrays.fill(cells, firstGenomeColumn, cells.length, getFalse());
+        final C mapped = getTrue();
+        for (int i = 0; i < reader.getNumMappings(); ++i) {
+            cells[firstGenomeColumn + reader.getMapping(i)] = mapped;
+        }
+
+        addRow("Row " + rowIdx, cells);
+    }
+
+    /**
+     * @param length
+     *            The number of cells.
+     * @return A new array of cells.
+     */
+    protected abstract C[] createCells(int length);
+
+    /**
+     * @param value
+     *            The value of the cell.
+     * @return A string cell.
+     */
+    protected abstract C createStringCell(String value);
+
+    /**
+     * @return The cell of a genome the read maps to.
+     */
+    protected abstract C getTrue();
+
+    /**
+     * @return The cell of a genome the read does not map to.
+     */
+    protected abstract C getFalse();
+
+    /**
+     * Adds a complete row to the table.
+     * 
+     * @param key
+     *            The row key.
+     * @param cells
+     *            The cells of the row.
+     */
+    protected abstract void addRow(String key, C[] cells);
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.gasic;
+
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.NodeLogger;
+
+import de.seqan.knime.gasic.core.BootstrapMonitor;
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+import de.seqan.knime.gasic.similarity_correction.SolverMonitor;
+import de.seqan.knime.gasic.similarity_correction.SolverRecorder;
+
+/**
+ * Adapts the execution context of the GASiC node to the
+ * {@link BootstrapMonitor} of the estimation: every replicate reports to its
+ * share of the progress and its solver statistics go to the statistics table.
+ * 
+ * @author Stephan Aiche
+ */
+final class ExecutionBootstrapMonitor implements BootstrapMonitor {
+
+    private static final NodeLogger logger = NodeLogger
+            .getLogger(GASiCNodeModel.class);
+
+    private final ExecutionContext exec;
+    private final SolverStatisticsTable statistics;
+    private ExecutionMonitor replicateProgress = null;
+
+    /**
+     * @param exec
+     *            The execution context of the node.
+     * @param statistics
+     *            Receives the solver statistics, null if they are not
+     *            collected.
+     */
+    ExecutionBootstrapMonitor(final ExecutionContext exec,
+            final SolverStatisticsTable statistics) {
+        this.exec = exec;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public SolverMonitor startReplicate(int replicate, int numReplicates) {
+        exec.setMessage("Bootstrap sample " + (replicate + 1) + " of "
+                + numReplicates);
+        // progress of the replicate is reported per start point
+        replicateProgress = exec.createSubProgress(1.0 / numReplicates);
+        return new ExecutionSolverMonitor(replicateProgress);
+    }
+
+    @Override
+    public SolverRecorder getRecorder(int replicate) {
+        return (statistics == null ? SolverRecorder.NONE : statistics
+                .getRecorder(replicate));
+    }
+
+    @Override
+    public void finishReplicate(int replicate, LassoResult result) {
+        logger.debug(String.format(
+                "Bootstrap sample %d: objective=%g, evaluations=%d, time=%dms",
+                replicate, result.getObjective(), result.getEvaluations(),
+                result.getTime()));
+        if (result.isBudgetExceeded()) {
+            logger.info("Bootstrap sample " + replicate
+                    + " exceeded the time budget, using the best solution found so far");
+        }
+        replicateProgress.setProgress(1.0);
+    }
+}
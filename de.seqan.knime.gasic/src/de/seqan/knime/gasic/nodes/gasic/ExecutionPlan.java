@@ -0,0 +1,464 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.gasic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.knime.core.node.InvalidSettingsException;
+
+import de.seqan.knime.gasic.core.CorrectionEngine;
+import de.seqan.knime.gasic.core.ResamplingStrategy;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
+
+/**
+ * Decides how the GASiC node processes its input before anything is counted
+ * or solved. The memory and the time of every candidate plan are estimated
+ * from the table sizes and the settings, and the first plan that fits into
+ * the available memory is chosen. Candidates are tried in the order of
+ * preference: the requested (or LASSO before EM) engine, multinomial before
+ * Poisson resampling and, for LASSO, compressed reads before recounting all
+ * reads. Only if none of them fits, the candidates are tried again with the
+ * mapping matrices stored off heap in memory mapped files.
+ * 
+ * The estimates are deliberately simple: they count the large arrays of a
+ * plan and assume a fixed cost per table cell and per floating point
+ * operation. They are meant to refuse hopeless executions early, not to
+ * predict the run time precisely.
+ * 
+ * @author Stephan Aiche
+ */
+final class ExecutionPlan {
+
+    /**
+     * How the mapping information of a table is counted.
+     */
+    enum Counting {
+        /**
+         * Dense per-genome counts (a vector for the reads, a matrix for the
+         * simulated reads) recomputed from the mapping matrix for every
+         * replicate.
+         */
+        DENSE,
+        /**
+         * Only the simulated reads mapping back to their own genome (the
+         * diagonal of the similarity counts) are counted.
+         */
+        SPARSE,
+        /**
+         * The reads are compressed once into their mapping patterns (see
+         * MappingPatterns), replicates only recount the patterns.
+         */
+        BITMAP
+    }
+
+    /**
+     * Fraction of the free heap a plan may use, the rest is left to KNIME.
+     */
+    static final double MEMORY_FRACTION = 0.8;
+
+    /**
+     * The weight of a read in a bootstrap sample.
+     */
+    private static final long WEIGHT_BYTES = 4;
+
+    /**
+     * Genomes per word of the bitmaps of the mapping matrices.
+     */
+    private static final double GENOMES_PER_WORD = 64.0;
+
+    /**
+     * A mapping pattern without its genome bitmap and list: hash map entry,
+     * BitSet and array headers.
+     */
+    private static final long PATTERN_BYTES = 128;
+
+    /**
+     * Assumed average number of genomes per mapping pattern.
+     */
+    private static final int GENOMES_PER_PATTERN = 4;
+
+    /**
+     * Assumed number of distinct mapping patterns per genome: reads of a
+     * genome only map to few combinations of its relatives.
+     */
+    private static final int PATTERNS_PER_GENOME = 32;
+
+    /**
+     * Cost of reading a single cell of a KNIME table.
+     */
+    private static final double CELL_SECONDS = 20.0e-9;
+
+    /**
+     * Cost of a floating point operation in the solvers.
+     */
+    private static final double FLOP_SECONDS = 1.0e-9;
+
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    private final CorrectionEngine engine;
+    private final ResamplingStrategy resampling;
+    private final Counting reads;
+    private final Counting similarities;
+    private final boolean offHeap;
+    private final long estimatedBytes;
+    private final long workerBytes;
+    private final double estimatedSeconds;
+    private final long availableBytes;
+
+    private ExecutionPlan(final CorrectionEngine engine,
+            final ResamplingStrategy resampling, final Counting reads,
+            final Counting similarities, final boolean offHeap,
+            final Problem problem) {
+        this.engine = engine;
+        this.resampling = resampling;
+        this.reads = reads;
+        this.similarities = similarities;
+        this.offHeap = offHeap;
+        this.availableBytes = problem.availableBytes;
+
+        final double g = problem.numGenomes;
+        final double b = problem.numBootstrap;
+        final double n = problem.numReads;
+        final double numPatterns = Math.min(n, PATTERNS_PER_GENOME * g);
+        final int threads = Math.max(1, problem.numThreads);
+
+        final double m = problem.numSimRows;
+        // words of the bitmap of a read plus its genomes
+        final double readCost = Math.ceil(g / GENOMES_PER_WORD)
+                + GENOMES_PER_PATTERN;
+
+        double bytes = 8.0 * b * g; // the solutions of all replicates
+
+        // both tables are read once into mapping matrices, off heap matrices
+        // are paged by the operating system
+        final double matrixBytes = 8.0 * Math.ceil(g / GENOMES_PER_WORD)
+                * (n + m);
+        if (!offHeap) {
+            bytes += matrixBytes;
+        }
+        double seconds = (n + m) * g * CELL_SECONDS;
+
+        // the weights of the reads and simulated reads of a replicate
+        bytes += WEIGHT_BYTES * (n + m);
+        seconds += b * (n + m) * FLOP_SECONDS;
+
+        if (reads == Counting.BITMAP) {
+            // the bitmap of a pattern extends to its largest genome
+            bytes += 4.0 * n + numPatterns
+                    * (PATTERN_BYTES + g / 16.0 + 4.0 * GENOMES_PER_PATTERN);
+            seconds += (n * readCost + b
+                    * (n + numPatterns * GENOMES_PER_PATTERN))
+                    * FLOP_SECONDS;
+        } else {
+            seconds += b * n * readCost * FLOP_SECONDS;
+        }
+
+        // single precision solves without screening build the similarity
+        // matrix from the counts directly as float
+        final boolean singleMatrix = (problem.singlePrecision
+                && !problem.screening);
+        if (similarities == Counting.DENSE) {
+            // counts and normalized similarity matrix
+            bytes += (singleMatrix ? 8.0 : 12.0) * g * g;
+            seconds += b * m * readCost * FLOP_SECONDS;
+        } else {
+            bytes += 4.0 * g;
+            seconds += b * m * FLOP_SECONDS;
+        }
+
+        if (engine == CorrectionEngine.LASSO) {
+            final double starts = problem.numStartPoints;
+            final double concurrent = Math.min(threads, starts);
+            // start points and the workspace of the concurrent COBYLA runs
+            // (four (n+2)x(n+2) matrices each)
+            bytes += 8.0 * starts * g + concurrent * 32.0 * (g + 2) * (g + 2);
+            // single precision copy of the matrix of a screening solve, Gram
+            // matrix of the screening and the pseudo inverse (and the
+            // temporary double matrix) of the data driven start points
+            bytes += (problem.singlePrecision && problem.screening ? 4.0 : 0.0)
+                    * g * g;
+            bytes += (problem.screening ? (problem.singlePrecision ? 4.0
+                    : 8.0) * g * g : 0.0);
+            if (problem.strategy == StartPointStrategy.DATA_DRIVEN) {
+                bytes += (singleMatrix ? 28.0 : 24.0) * g * g;
+            }
+            // every evaluation costs O(n^2) in the objective and in COBYLA
+            seconds += (b + problem.numPathPoints) * starts
+                    * problem.maxIterations * 4.0 * g * g * FLOP_SECONDS
+                    / threads;
+        } else {
+            // per-pattern counts of a replicate and the E-step buffers
+            bytes += 4.0 * numPatterns + 8.0 * threads * g;
+            seconds += b * problem.maxIterations * numPatterns
+                    * GENOMES_PER_PATTERN * FLOP_SECONDS / threads;
+        }
+
+        this.estimatedBytes = (long) Math.min(Long.MAX_VALUE, bytes);
+        // workers always read the mapping matrices onto their heap
+        this.workerBytes = (long) Math.min(Long.MAX_VALUE, (offHeap ? bytes
+                + matrixBytes : bytes)
+                / MEMORY_FRACTION);
+        this.estimatedSeconds = seconds;
+    }
+
+    /**
+     * The sizes and settings a plan is made for.
+     */
+    static final class Problem {
+        private final int numReads;
+        private final long numSimRows;
+        private final int numGenomes;
+        private final int numBootstrap;
+        private final int numThreads;
+        private final StartPointStrategy strategy;
+        private final int numStartPoints;
+        private final int maxIterations;
+        private final int numPathPoints;
+        private final boolean screening;
+        private final boolean singlePrecision;
+        private final long availableBytes;
+
+        /**
+         * @param numReads
+         *            The number of rows of the read table.
+         * @param numSimRows
+         *            The number of rows of the simulated read table.
+         * @param numGenomes
+         *            The number of genomes.
+         * @param numBootstrap
+         *            The number of bootstrap replicates.
+         * @param numThreads
+         *            The number of solver threads.
+         * @param strategy
+         *            The start point strategy of the LASSO engine.
+         * @param numStarts
+         *            The number of start points of the data driven strategy.
+         * @param maxIterations
+         *            The maximal number of iterations of the solvers.
+         * @param numPathPoints
+         *            The number of points of the regularization path.
+         * @param screening
+         *            True if absent genomes are screened.
+         * @param singlePrecision
+         *            True if the solver stores the similarities in single
+         *            precision.
+         * @param availableBytes
+         *            The memory that can be used.
+         */
+        Problem(final int numReads, final long numSimRows,
+                final int numGenomes, final int numBootstrap,
+                final int numThreads, final StartPointStrategy strategy,
+                final int numStarts, final int maxIterations,
+                final int numPathPoints, final boolean screening,
+                final boolean singlePrecision, final long availableBytes) {
+            this.numReads = numReads;
+            this.numSimRows = numSimRows;
+            this.numGenomes = numGenomes;
+            this.numBootstrap = numBootstrap;
+            this.numThreads = numThreads;
+            this.strategy = strategy;
+            this.numStartPoints = (strategy == StartPointStrategy.HEURISTIC ? 3
+                    * numGenomes + 1 + (numGenomes == 1 ? 10 : 0) : Math.max(
+                    1, numStarts));
+            this.maxIterations = maxIterations;
+            this.numPathPoints = numPathPoints;
+            this.screening = screening;
+            this.singlePrecision = singlePrecision;
+            this.availableBytes = availableBytes;
+        }
+    }
+
+    /**
+     * Chooses the preferred plan that fits into the available memory.
+     * 
+     * @param problem
+     *            The sizes and settings of the execution.
+     * @param engine
+     *            The requested engine, AUTO to let the plan decide.
+     * @param resampling
+     *            The requested resampling, AUTO to let the plan decide.
+     * @param offHeapOnly
+     *            True if the mapping matrices are already stored off heap,
+     *            e.g., because they were counted before their size was known.
+     * @return The plan.
+     * @throws InvalidSettingsException
+     *             If no plan fits into the available memory. The message
+     *             names the estimate and what could be changed.
+     */
+    static ExecutionPlan create(final Problem problem,
+            final CorrectionEngine engine,
+            final ResamplingStrategy resampling, final boolean offHeapOnly)
+            throws InvalidSettingsException {
+        final long budget = (long) (MEMORY_FRACTION * problem.availableBytes);
+
+        List<ExecutionPlan> candidates = getCandidates(problem, engine,
+                resampling, offHeapOnly);
+        ExecutionPlan cheapest = null;
+        for (ExecutionPlan candidate : candidates) {
+            if (candidate.estimatedBytes <= budget) {
+                return candidate;
+            }
+            if (cheapest == null
+                    || candidate.estimatedBytes < cheapest.estimatedBytes) {
+                cheapest = candidate;
+            }
+        }
+
+        StringBuilder message = new StringBuilder();
+        message.append(String.format(
+                "Not enough memory for %d reads and %d genomes: "
+                        + "the %s engine needs about %s, but only %s "
+                        + "are available.", problem.numReads,
+                problem.numGenomes, cheapest.engine,
+                formatBytes(cheapest.estimatedBytes), formatBytes(budget)));
+        if (engine == CorrectionEngine.LASSO) {
+            ExecutionPlan em = getCandidates(problem, CorrectionEngine.EM,
+                    ResamplingStrategy.POISSON, offHeapOnly).get(0);
+            if (em.estimatedBytes <= budget) {
+                message.append(" The EM engine would need about "
+                        + formatBytes(em.estimatedBytes) + ".");
+            } else {
+                message.append(" Reduce the number of threads or start points.");
+            }
+        }
+        message.append(" Otherwise increase the Java heap (-Xmx in knime.ini).");
+        throw new InvalidSettingsException(message.toString());
+    }
+
+    private static List<ExecutionPlan> getCandidates(final Problem problem,
+            final CorrectionEngine engine,
+            final ResamplingStrategy resampling, final boolean offHeapOnly) {
+        CorrectionEngine[] engines = (engine == CorrectionEngine.AUTO ? new CorrectionEngine[] {
+                CorrectionEngine.LASSO, CorrectionEngine.EM }
+                : new CorrectionEngine[] { engine });
+        ResamplingStrategy[] samplings = (resampling == ResamplingStrategy.AUTO ? new ResamplingStrategy[] {
+                ResamplingStrategy.MULTINOMIAL, ResamplingStrategy.POISSON }
+                : new ResamplingStrategy[] { resampling });
+
+        List<ExecutionPlan> candidates = new ArrayList<ExecutionPlan>();
+        for (boolean offHeap : (offHeapOnly ? new boolean[] { true }
+                : new boolean[] { false, true })) {
+            for (CorrectionEngine e : engines) {
+                for (ResamplingStrategy r : samplings) {
+                    if (e == CorrectionEngine.EM) {
+                        // EM only needs the diagonal of the similarity counts
+                        candidates.add(new ExecutionPlan(e, r,
+                                Counting.BITMAP, Counting.SPARSE, offHeap,
+                                problem));
+                    } else {
+                        // compressing the reads only pays off if the reads
+                        // would be counted more than once
+                        if (problem.numBootstrap > 1) {
+                            candidates.add(new ExecutionPlan(e, r,
+                                    Counting.BITMAP, Counting.DENSE, offHeap,
+                                    problem));
+                        }
+                        candidates.add(new ExecutionPlan(e, r,
+                                Counting.DENSE, Counting.DENSE, offHeap,
+                                problem));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return The engine, never AUTO.
+     */
+    CorrectionEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return The resampling strategy, never AUTO.
+     */
+    ResamplingStrategy getResampling() {
+        return resampling;
+    }
+
+    /**
+     * @return How the reads are counted, DENSE or BITMAP.
+     */
+    Counting getReads() {
+        return reads;
+    }
+
+    /**
+     * @return How the simulated reads are counted, DENSE or SPARSE.
+     */
+    Counting getSimilarities() {
+        return similarities;
+    }
+
+    /**
+     * @return True if the mapping matrices are stored off heap.
+     */
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return The estimated peak memory in bytes.
+     */
+    long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return The maximum heap of a worker JVM in bytes: a worker holds the
+     *         same data and runs the same threads as this plan, on heap.
+     */
+    long getWorkerBytes() {
+        return workerBytes;
+    }
+
+    /**
+     * @return The estimated run time in seconds, an upper bound assuming that
+     *         the solvers use all iterations.
+     */
+    double getEstimatedSeconds() {
+        return estimatedSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("engine=%s, resampling=%s, reads=%s, "
+                + "similarities=%s, matrices=%s, memory=%s (of %s available), "
+                + "time<=%.0fs", engine, resampling, reads, similarities,
+                (offHeap ? "off heap" : "heap"), formatBytes(estimatedBytes),
+                formatBytes(availableBytes), estimatedSeconds);
+    }
+
+    private static String formatBytes(final long bytes) {
+        return String.format("%.1f MB", (double) bytes / BYTES_PER_MB);
+    }
+}
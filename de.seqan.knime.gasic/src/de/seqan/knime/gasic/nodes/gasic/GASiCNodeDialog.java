@@ -29,12 +29,25 @@
  */
 package de.seqan.knime.gasic.nodes.gasic;
 
+import javax.swing.JFileChooser;
+
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelDouble;
 import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+import de.seqan.knime.gasic.core.CorrectionEngine;
+import de.seqan.knime.gasic.core.ResamplingStrategy;
+import de.seqan.knime.gasic.similarity_correction.SketchType;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
 
 /**
  * <code>NodeDialog</code> for the "GASiC" Node. Implements the GASiC approach.
@@ -53,8 +66,41 @@ public class GASiCNodeDialog extends DefaultNodeSettingsPane {
      * demonstrate possible default dialog components.
      */
     protected GASiCNodeDialog() {
+        this(false);
+    }
+
+    /**
+     * New pane for configuring GASiC node dialog.
+     * 
+     * @param useModel
+     *            If true, the node estimates with a similarity model, which
+     *            can also be read from a similarity index file.
+     */
+    protected GASiCNodeDialog(final boolean useModel) {
         super();
 
+        if (useModel) {
+            createNewGroup("Similarity index (replaces the model input):");
+            addDialogComponent(new DialogComponentFileChooser(
+                    new SettingsModelString(GASiCNodeModel.CFG_INDEX_FILE,
+                            GASiCNodeModel.DEFAULT_INDEX_FILE),
+                    "gasic_similarity_index", JFileChooser.OPEN_DIALOG,
+                    false, ".gsi"));
+        }
+
+        createNewGroup("Engine:");
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(GASiCNodeModel.CFG_ENGINE,
+                        GASiCNodeModel.DEFAULT_ENGINE), "Engine:",
+                CorrectionEngine.LASSO.name(), CorrectionEngine.EM.name(),
+                CorrectionEngine.AUTO.name()));
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(GASiCNodeModel.CFG_RESAMPLING,
+                        GASiCNodeModel.DEFAULT_RESAMPLING), "Resampling:",
+                ResamplingStrategy.AUTO.name(),
+                ResamplingStrategy.MULTINOMIAL.name(),
+                ResamplingStrategy.POISSON.name()));
+
         createNewGroup("Cobyla Options:");
         addDialogComponent(new DialogComponentNumber(
                 new SettingsModelDoubleBounded(GASiCNodeModel.CFG_RHO_BEG,
@@ -75,18 +121,128 @@ public class GASiCNodeDialog extends DefaultNodeSettingsPane {
                         Integer.MAX_VALUE), "Max. Iterations:", /* step */1, /* componentwidth */
                 5));
 
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_WARM_START,
+                GASiCNodeModel.DEFAULT_WARM_START),
+                "Warm start from previous bootstrap sample"));
+
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_RACING, GASiCNodeModel.DEFAULT_RACING),
+                "Abandon dominated runs (racing)"));
+
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_SCREENING,
+                GASiCNodeModel.DEFAULT_SCREENING),
+                "Remove absent genomes before optimization (screening)"));
+
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_SINGLE_PRECISION,
+                GASiCNodeModel.DEFAULT_SINGLE_PRECISION),
+                "Store similarities in single precision"));
+
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(GASiCNodeModel.CFG_START_STRATEGY,
+                        GASiCNodeModel.DEFAULT_START_STRATEGY),
+                "Start points:", StartPointStrategy.DATA_DRIVEN.name(),
+                StartPointStrategy.HEURISTIC.name()));
+
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(GASiCNodeModel.CFG_NUM_STARTS,
+                        GASiCNodeModel.DEFAULT_NUM_STARTS, 1,
+                        Integer.MAX_VALUE),
+                "Number of start points (data driven):", /* step */1, /* componentwidth */
+                5));
+
+        createNewGroup("Approximate mode:");
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(GASiCNodeModel.CFG_SKETCH_SIZE,
+                        GASiCNodeModel.DEFAULT_SKETCH_SIZE, 0,
+                        Integer.MAX_VALUE), "Sketch size (0 = exact):", /* step */
+                10, /* componentwidth */5));
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(GASiCNodeModel.CFG_SKETCH_TYPE,
+                        GASiCNodeModel.DEFAULT_SKETCH_TYPE), "Sketch:",
+                SketchType.SPARSE_SIGN.name(), SketchType.GAUSSIAN.name()));
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_SKETCH_REFINE,
+                GASiCNodeModel.DEFAULT_SKETCH_REFINE),
+                "Refine on the exact problem"));
+
+        createNewGroup("Regularization path:");
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(GASiCNodeModel.CFG_PATH_STEPS,
+                        GASiCNodeModel.DEFAULT_PATH_STEPS, 0,
+                        Integer.MAX_VALUE), "Number of path points:", /* step */
+                1, /* componentwidth */5));
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelDoubleBounded(
+                        GASiCNodeModel.CFG_PATH_MIN_BOUND,
+                        GASiCNodeModel.DEFAULT_PATH_MIN_BOUND,
+                        Double.MIN_VALUE, 1.0), "Smallest total abundance:", /* step */
+                0.05, /* componentwidth */5));
+
         createNewGroup("Bootstrapping Options:");
         addDialogComponent(new DialogComponentNumber(new SettingsModelInteger(
                 GASiCNodeModel.CFG_NUM_BOOSTRAP,
                 GASiCNodeModel.DEFAULT_NUM_BOOSTRAP),
                 "Number of bootstrap samples:", 100));
 
+        setHorizontalPlacement(true);
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_USE_SEED, GASiCNodeModel.DEFAULT_USE_SEED),
+                "Use fixed seed"));
+        addDialogComponent(new DialogComponentNumber(new SettingsModelInteger(
+                GASiCNodeModel.CFG_SEED, GASiCNodeModel.DEFAULT_SEED),
+                "Seed:", 1));
+        setHorizontalPlacement(false);
+
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(GASiCNodeModel.CFG_NUM_WORKERS,
+                        GASiCNodeModel.DEFAULT_NUM_WORKERS, 0,
+                        Integer.MAX_VALUE),
+                "Worker processes (0 = in KNIME):", /* step */1, /* componentwidth */
+                5));
+        addDialogComponent(new DialogComponentString(new SettingsModelString(
+                GASiCNodeModel.CFG_WORKER_JVM_ARGS,
+                GASiCNodeModel.DEFAULT_WORKER_JVM_ARGS),
+                "Worker JVM arguments:"));
+
         createNewGroup("p-Value options:");
         addDialogComponent(new DialogComponentNumber(new SettingsModelDouble(
                 GASiCNodeModel.CFG_TEST_LEVEL,
                 GASiCNodeModel.DEFAULT_TEST_LEVEL),
                 "Min. abundance to count species as present", 0.01));
 
+        createNewGroup("Solver statistics:");
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_SOLVER_STATISTICS,
+                GASiCNodeModel.DEFAULT_SOLVER_STATISTICS),
+                "Collect solver statistics"));
+
+        createNewGroup("Time budget:");
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(
+                        GASiCNodeModel.CFG_REPLICATE_BUDGET,
+                        GASiCNodeModel.DEFAULT_REPLICATE_BUDGET, 0,
+                        Integer.MAX_VALUE),
+                "Per bootstrap sample [s] (0 = unlimited):", /* step */1, /* componentwidth */
+                5));
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(GASiCNodeModel.CFG_TOTAL_BUDGET,
+                        GASiCNodeModel.DEFAULT_TOTAL_BUDGET, 0,
+                        Integer.MAX_VALUE),
+                "Overall [s] (0 = unlimited):", /* step */1, /* componentwidth */
+                5));
+
+        createNewGroup("Result cache:");
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                GASiCNodeModel.CFG_USE_CACHE, GASiCNodeModel.DEFAULT_USE_CACHE),
+                "Reuse results of identical problems"));
+        addDialogComponent(new DialogComponentFileChooser(
+                new SettingsModelString(GASiCNodeModel.CFG_CACHE_DIR,
+                        GASiCNodeModel.DEFAULT_CACHE_DIR),
+                "gasic_cache_dir", JFileChooser.OPEN_DIALOG, true));
+
         createNewGroup("Mutlithreading Options:");
         addDialogComponent(new DialogComponentNumber(
                 new SettingsModelIntegerBounded(GASiCNodeModel.CFG_NUM_THREADS,
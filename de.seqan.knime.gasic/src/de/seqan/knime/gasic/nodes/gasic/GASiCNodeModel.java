@@ -33,9 +33,13 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import org.ejml.simple.SimpleMatrix;
 import org.knime.core.data.DataCell;
@@ -44,7 +48,6 @@ import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.RowKey;
-import org.knime.core.data.def.BooleanCell;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
@@ -59,12 +62,48 @@ import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelDouble;
 import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
-
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+
+import de.seqan.knime.gasic.Activator;
+import de.seqan.knime.gasic.core.BootstrapCorrection;
+import de.seqan.knime.gasic.core.BootstrapMonitor;
+import de.seqan.knime.gasic.core.BootstrapResult;
+import de.seqan.knime.gasic.core.BootstrapSummary;
+import de.seqan.knime.gasic.core.CorrectionEngine;
+import de.seqan.knime.gasic.core.LocalWorkerLauncher;
+import de.seqan.knime.gasic.core.MappingMatrix;
+import de.seqan.knime.gasic.core.ResamplingStrategy;
+import de.seqan.knime.gasic.core.ShardedBootstrap;
+import de.seqan.knime.gasic.core.SimilarityIndex;
+import de.seqan.knime.gasic.core.SimilarityModel;
+import de.seqan.knime.gasic.port.SimilarityModelPortObject;
+import de.seqan.knime.gasic.port.SimilarityModelPortObjectSpec;
+import de.seqan.knime.gasic.similarity_correction.CorrectionCache;
+import de.seqan.knime.gasic.similarity_correction.EMCorrection;
 import de.seqan.knime.gasic.similarity_correction.LassoCorrection;
+import de.seqan.knime.gasic.similarity_correction.LassoSettings;
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+import de.seqan.knime.gasic.similarity_correction.SketchType;
+import de.seqan.knime.gasic.similarity_correction.SolverExecutor;
+import de.seqan.knime.gasic.similarity_correction.StartPointStrategy;
 
 /**
  * This is the model implementation of GASiC. Implements the GASiC approach.
@@ -92,6 +131,116 @@ public class GASiCNodeModel extends NodeModel {
     private final SettingsModelIntegerBounded m_max_iter = new SettingsModelIntegerBounded(
             CFG_MAX_ITERATIONS, DEFAULT_MAX_ITERATIONS, 1, Integer.MAX_VALUE);
 
+    // //////////
+    static final String CFG_ENGINE = "engine";
+    static final String DEFAULT_ENGINE = CorrectionEngine.LASSO.name();
+
+    private final SettingsModelString m_engine = new SettingsModelString(
+            CFG_ENGINE, DEFAULT_ENGINE);
+
+    // //////////
+    static final String CFG_RESAMPLING = "resampling";
+    static final String DEFAULT_RESAMPLING = ResamplingStrategy.AUTO.name();
+
+    private final SettingsModelString m_resampling = new SettingsModelString(
+            CFG_RESAMPLING, DEFAULT_RESAMPLING);
+
+    // //////////
+    static final String CFG_WARM_START = "warm_start";
+    static final boolean DEFAULT_WARM_START = true;
+
+    private final SettingsModelBoolean m_warm_start = new SettingsModelBoolean(
+            CFG_WARM_START, DEFAULT_WARM_START);
+
+    // //////////
+    static final String CFG_RACING = "racing";
+    static final boolean DEFAULT_RACING = false;
+
+    private final SettingsModelBoolean m_racing = new SettingsModelBoolean(
+            CFG_RACING, DEFAULT_RACING);
+
+    // //////////
+    static final String CFG_SCREENING = "screening";
+    static final boolean DEFAULT_SCREENING = false;
+
+    private final SettingsModelBoolean m_screening = new SettingsModelBoolean(
+            CFG_SCREENING, DEFAULT_SCREENING);
+
+    // //////////
+    static final String CFG_SINGLE_PRECISION = "single_precision";
+    static final boolean DEFAULT_SINGLE_PRECISION = false;
+
+    private final SettingsModelBoolean m_single_precision = new SettingsModelBoolean(
+            CFG_SINGLE_PRECISION, DEFAULT_SINGLE_PRECISION);
+
+    // //////////
+    static final String CFG_START_STRATEGY = "start_strategy";
+    static final String DEFAULT_START_STRATEGY = StartPointStrategy.DATA_DRIVEN
+            .name();
+
+    private final SettingsModelString m_start_strategy = new SettingsModelString(
+            CFG_START_STRATEGY, DEFAULT_START_STRATEGY);
+
+    // //////////
+    static final String CFG_NUM_STARTS = "num_starts";
+    static final int DEFAULT_NUM_STARTS = 4;
+
+    private final SettingsModelIntegerBounded m_num_starts = new SettingsModelIntegerBounded(
+            CFG_NUM_STARTS, DEFAULT_NUM_STARTS, 1, Integer.MAX_VALUE);
+
+    // //////////
+    static final String CFG_SOLVER_STATISTICS = "solver_statistics";
+    static final boolean DEFAULT_SOLVER_STATISTICS = false;
+
+    private final SettingsModelBoolean m_solver_statistics = new SettingsModelBoolean(
+            CFG_SOLVER_STATISTICS, DEFAULT_SOLVER_STATISTICS);
+
+    // //////////
+    static final String CFG_SKETCH_SIZE = "sketch_size";
+    static final int DEFAULT_SKETCH_SIZE = 0;
+
+    private final SettingsModelIntegerBounded m_sketch_size = new SettingsModelIntegerBounded(
+            CFG_SKETCH_SIZE, DEFAULT_SKETCH_SIZE, 0, Integer.MAX_VALUE);
+
+    static final String CFG_SKETCH_TYPE = "sketch_type";
+    static final String DEFAULT_SKETCH_TYPE = SketchType.SPARSE_SIGN.name();
+
+    private final SettingsModelString m_sketch_type = new SettingsModelString(
+            CFG_SKETCH_TYPE, DEFAULT_SKETCH_TYPE);
+
+    static final String CFG_SKETCH_REFINE = "sketch_refine";
+    static final boolean DEFAULT_SKETCH_REFINE = true;
+
+    private final SettingsModelBoolean m_sketch_refine = new SettingsModelBoolean(
+            CFG_SKETCH_REFINE, DEFAULT_SKETCH_REFINE);
+
+    // //////////
+    static final String CFG_REPLICATE_BUDGET = "replicate_budget";
+    static final int DEFAULT_REPLICATE_BUDGET = 0;
+
+    private final SettingsModelIntegerBounded m_replicate_budget = new SettingsModelIntegerBounded(
+            CFG_REPLICATE_BUDGET, DEFAULT_REPLICATE_BUDGET, 0,
+            Integer.MAX_VALUE);
+
+    static final String CFG_TOTAL_BUDGET = "total_budget";
+    static final int DEFAULT_TOTAL_BUDGET = 0;
+
+    private final SettingsModelIntegerBounded m_total_budget = new SettingsModelIntegerBounded(
+            CFG_TOTAL_BUDGET, DEFAULT_TOTAL_BUDGET, 0, Integer.MAX_VALUE);
+
+    // //////////
+    static final String CFG_PATH_STEPS = "path_steps";
+    static final int DEFAULT_PATH_STEPS = 0;
+
+    private final SettingsModelIntegerBounded m_path_steps = new SettingsModelIntegerBounded(
+            CFG_PATH_STEPS, DEFAULT_PATH_STEPS, 0, Integer.MAX_VALUE);
+
+    static final String CFG_PATH_MIN_BOUND = "path_min_bound";
+    static final double DEFAULT_PATH_MIN_BOUND = 0.05;
+
+    private final SettingsModelDoubleBounded m_path_min_bound = new SettingsModelDoubleBounded(
+            CFG_PATH_MIN_BOUND, DEFAULT_PATH_MIN_BOUND, Double.MIN_VALUE, 1.0);
+
     // //////////
     static String CFG_NUM_THREADS = "num_threads";
     // we want at least two threads (except when we have only one at max)
@@ -102,6 +251,20 @@ public class GASiCNodeModel extends NodeModel {
             CFG_NUM_THREADS, DEFAULT_NUM_THREADS, 1, Runtime.getRuntime()
                     .availableProcessors());
 
+    // //////////
+    static final String CFG_NUM_WORKERS = "num_workers";
+    static final int DEFAULT_NUM_WORKERS = 0;
+
+    private final SettingsModelIntegerBounded m_num_workers = new SettingsModelIntegerBounded(
+            CFG_NUM_WORKERS, DEFAULT_NUM_WORKERS, 0, Integer.MAX_VALUE);
+
+    // //////////
+    static final String CFG_WORKER_JVM_ARGS = "worker_jvm_args";
+    static final String DEFAULT_WORKER_JVM_ARGS = "";
+
+    private final SettingsModelString m_worker_jvm_args = new SettingsModelString(
+            CFG_WORKER_JVM_ARGS, DEFAULT_WORKER_JVM_ARGS);
+
     // //////////
     static final int DEFAULT_NUM_BOOSTRAP = 5;
     static final String CFG_NUM_BOOSTRAP = "num_boostrap";
@@ -109,6 +272,55 @@ public class GASiCNodeModel extends NodeModel {
     private final SettingsModelInteger m_num_boostrap = new SettingsModelInteger(
             CFG_NUM_BOOSTRAP, DEFAULT_NUM_BOOSTRAP);
 
+    // //////////
+    static final String CFG_USE_SEED = "use_seed";
+    static final boolean DEFAULT_USE_SEED = false;
+
+    private final SettingsModelBoolean m_use_seed = new SettingsModelBoolean(
+            CFG_USE_SEED, DEFAULT_USE_SEED);
+
+    static final String CFG_SEED = "seed";
+    static final int DEFAULT_SEED = 42;
+
+    private final SettingsModelInteger m_seed = new SettingsModelInteger(
+            CFG_SEED, DEFAULT_SEED);
+
+    // //////////
+    static final String CFG_USE_CACHE = "use_cache";
+    static final boolean DEFAULT_USE_CACHE = false;
+
+    private final SettingsModelBoolean m_use_cache = new SettingsModelBoolean(
+            CFG_USE_CACHE, DEFAULT_USE_CACHE);
+
+    static final String CFG_CACHE_DIR = "cache_dir";
+    static final String DEFAULT_CACHE_DIR = "";
+
+    private final SettingsModelString m_cache_dir = new SettingsModelString(
+            CFG_CACHE_DIR, DEFAULT_CACHE_DIR);
+
+    // //////////
+    static final String CFG_INDEX_FILE = "similarity_index";
+    static final String DEFAULT_INDEX_FILE = "";
+
+    private final SettingsModelString m_index_file = new SettingsModelString(
+            CFG_INDEX_FILE, DEFAULT_INDEX_FILE);
+
+    /**
+     * Number of results kept in memory by each result cache.
+     */
+    private static final int CACHE_CAPACITY = 1024;
+
+    /**
+     * Lower bound of the maximum heap of a worker JVM in MB.
+     */
+    private static final long MIN_WORKER_HEAP_MB = 64;
+
+    /**
+     * Result caches shared by all GASiC nodes, one per disk directory ("" for
+     * the memory only cache).
+     */
+    private static final Map<String, CorrectionCache> CACHES = new HashMap<String, CorrectionCache>();
+
     // //////////
     static final double DEFAULT_TEST_LEVEL = 0.01;
     static final String CFG_TEST_LEVEL = "test_level";
@@ -116,6 +328,12 @@ public class GASiCNodeModel extends NodeModel {
     private final SettingsModelDouble m_test_level = new SettingsModelDouble(
             CFG_TEST_LEVEL, DEFAULT_TEST_LEVEL);
 
+    // the second input is a similarity model instead of the simulated reads
+    private final boolean m_useModel;
+
+    // shared by all executions of this node, see getSolverExecutor()
+    private SolverExecutor m_solverExecutor = null;
+
     // the logger instance
     private static final NodeLogger logger = NodeLogger
             .getLogger(GASiCNodeModel.class);
@@ -124,52 +342,507 @@ public class GASiCNodeModel extends NodeModel {
      * Constructor for the node model.
      */
     protected GASiCNodeModel() {
-        super(2, 1);
+        this(false);
+    }
+
+    /**
+     * Constructor for the node model.
+     * 
+     * @param useModel
+     *            If true, the second input is an (optional) similarity model
+     *            instead of the simulated mapping information.
+     */
+    protected GASiCNodeModel(final boolean useModel) {
+        super(getIncomingPorts(useModel), getOutgoingPorts());
+        m_useModel = useModel;
+    }
+
+    /**
+     * Static method that provides the incoming {@link PortType}s.
+     * 
+     * @param useModel
+     *            If true, the second input is an optional similarity model.
+     * @return The incoming {@link PortType}s of this node.
+     */
+    private static PortType[] getIncomingPorts(final boolean useModel) {
+        return new PortType[] {
+                BufferedDataTable.TYPE,
+                (useModel ? SimilarityModelPortObject.TYPE_OPTIONAL
+                        : BufferedDataTable.TYPE) };
+    }
+
+    /**
+     * Static method that provides the outgoing {@link PortType}s.
+     * 
+     * @return The outgoing {@link PortType}s of this node.
+     */
+    private static PortType[] getOutgoingPorts() {
+        return new PortType[] { BufferedDataTable.TYPE,
+                BufferedDataTable.TYPE, BufferedDataTable.TYPE };
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+    protected PortObject[] execute(final PortObject[] inObjects,
             final ExecutionContext exec) throws Exception {
 
-        final int numGenomes = getNumberOfGenomes(new DataTableSpec[] {
-                inData[0].getDataTableSpec(), inData[1].getDataTableSpec() });
+        // time budgets are given in seconds, 0 means unlimited
+        final long totalDeadline = BootstrapCorrection.getDeadline(
+                System.currentTimeMillis(), m_total_budget.getIntValue(),
+                LassoCorrection.NO_DEADLINE);
+
+        final BufferedDataTable readTable = (BufferedDataTable) inObjects[0];
+        if (m_useModel) {
+            final int numGenomes = MappingTables.numberOfBoolCols(readTable
+                    .getDataTableSpec());
+            final String[] names = MappingTables.getGenomeNames(
+                    readTable.getDataTableSpec(), numGenomes);
+
+            // the similarity information is computed in advance, only the
+            // reads are counted
+            ExecutionPlan plan = createPlan(readTable.getRowCount(), 0L,
+                    numGenomes, false);
+            exec.setMessage("Reading mapping information");
+            MappingMatrix reads = MappingTables.getReadMatrix(
+                    new DataTableRowInput(readTable), numGenomes,
+                    readTable.getRowCount(), plan.isOffHeap());
+            try {
+                exec.checkCanceled();
+                return estimate(plan, reads, inObjects[1], names,
+                        totalDeadline, exec);
+            } finally {
+                reads.close();
+            }
+        }
 
-        final int numReads = inData[0].getRowCount();
-        final int numSimReads = inData[1].getRowCount() / numGenomes;
+        final BufferedDataTable simTable = (BufferedDataTable) inObjects[1];
+        final int numGenomes = getNumberOfGenomes(new DataTableSpec[] {
+                readTable.getDataTableSpec(), simTable.getDataTableSpec() });
+
+        // decide how to count, resample and solve before allocating anything
+        ExecutionPlan plan = createPlan(readTable.getRowCount(),
+                simTable.getRowCount(), numGenomes, false);
+
+        // the tables are read once, all counting works on the matrices
+        exec.setMessage("Reading mapping information");
+        MappingMatrix reads = null;
+        MappingMatrix simulations = null;
+        try {
+            reads = MappingTables.getReadMatrix(new DataTableRowInput(
+                    readTable), numGenomes, readTable.getRowCount(),
+                    plan.isOffHeap());
+            simulations = MappingTables.getSimulationMatrix(
+                    new DataTableRowInput(simTable), numGenomes,
+                    simTable.getRowCount(), plan.isOffHeap());
+            exec.checkCanceled();
 
-        String[] names = getGenomeNames(inData[0].getDataTableSpec(),
-                numGenomes);
+            return estimate(plan, reads, simulations, null,
+                    MappingTables.getGenomeNames(readTable.getDataTableSpec(),
+                            numGenomes), null, totalDeadline, exec);
+        } finally {
+            // removes the files of off heap matrices
+            if (reads != null) {
+                reads.close();
+            }
+            if (simulations != null) {
+                simulations.close();
+            }
+        }
+    }
 
-        double[][] correct = new double[m_num_boostrap.getIntValue()][numGenomes];
-        double[][] fail = new double[m_num_boostrap.getIntValue()][numGenomes];
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+        // only the reads are counted as they arrive; the simulated reads or
+        // the similarity model are needed as a whole
+        return new InputPortRole[] {
+                InputPortRole.NONDISTRIBUTED_STREAMABLE,
+                InputPortRole.NONDISTRIBUTED_NONSTREAMABLE };
+    }
 
-        LassoCorrection lc = new LassoCorrection(0,
-                m_num_threads.getIntValue(), m_rhobeg.getDoubleValue(),
-                m_rhoend.getDoubleValue(), m_max_iter.getIntValue());
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputPortRole[] getOutputPortRoles() {
+        return new OutputPortRole[] { OutputPortRole.NONDISTRIBUTED,
+                OutputPortRole.NONDISTRIBUTED, OutputPortRole.NONDISTRIBUTED };
+    }
 
-        for (int i = 0; i < m_num_boostrap.getIntValue(); ++i) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamableOperator createStreamableOperator(
+            final PartitionInfo partitionInfo, final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        final int numGenomes = (m_useModel ? MappingTables
+                .numberOfBoolCols((DataTableSpec) inSpecs[0])
+                : getNumberOfGenomes(new DataTableSpec[] {
+                        (DataTableSpec) inSpecs[0], (DataTableSpec) inSpecs[1] }));
+        final String[] names = MappingTables.getGenomeNames(
+                (DataTableSpec) inSpecs[0], numGenomes);
+
+        return new StreamableOperator() {
+            @Override
+            public void runFinal(final PortInput[] inputs,
+                    final PortOutput[] outputs, final ExecutionContext exec)
+                    throws Exception {
+                final long totalDeadline = BootstrapCorrection.getDeadline(
+                        System.currentTimeMillis(),
+                        m_total_budget.getIntValue(),
+                        LassoCorrection.NO_DEADLINE);
+
+                // the reads are counted as they arrive, no intermediate
+                // table is written; their number is unknown until the input
+                // is complete, so both matrices are stored off heap and the
+                // plan is made from the actual sizes before any heap memory
+                // is allocated for the estimation
+                exec.setMessage("Reading mapping information");
+                MappingMatrix reads = null;
+                MappingMatrix simulations = null;
+                BufferedDataTable[] tables;
+                try {
+                    reads = MappingTables.getReadMatrix((RowInput) inputs[0],
+                            numGenomes, 0, true);
+                    if (!m_useModel) {
+                        final BufferedDataTable simTable = (BufferedDataTable) ((PortObjectInput) inputs[1])
+                                .getPortObject();
+                        simulations = MappingTables.getSimulationMatrix(
+                                new DataTableRowInput(simTable), numGenomes,
+                                simTable.getRowCount(), true);
+                    }
+                    exec.checkCanceled();
+
+                    ExecutionPlan plan = createPlan(reads.getNumReads(),
+                            (simulations != null ? simulations.getNumReads()
+                                    : 0L), numGenomes, true);
+
+                    // an unconnected optional port has no input
+                    tables = (m_useModel ? estimate(plan, reads,
+                            (inputs[1] != null ? ((PortObjectInput) inputs[1])
+                                    .getPortObject() : null), names,
+                            totalDeadline, exec) : estimate(plan, reads,
+                            simulations, null, names, null, totalDeadline,
+                            exec));
+                } finally {
+                    // removes the files of the off heap matrices
+                    if (reads != null) {
+                        reads.close();
+                    }
+                    if (simulations != null) {
+                        simulations.close();
+                    }
+                }
+                for (int i = 0; i < tables.length; ++i) {
+                    ((RowOutput) outputs[i]).setFully(tables[i]);
+                }
+            }
+        };
+    }
 
-            SimpleMatrix reads = sampleNormalizedReadVector(inData[0],
-                    numReads, numGenomes);
-            SimpleMatrix sm = sampleSimilarityMatrix(inData[1], numSimReads,
-                    numGenomes);
-            // sm.transpose();
+    /**
+     * Decides how to count, resample and solve.
+     * 
+     * @param numReads
+     *            The number of reads.
+     * @param numSimRows
+     *            The number of simulated reads.
+     * @param numGenomes
+     *            The number of genomes.
+     * @param offHeapOnly
+     *            True if the mapping information is already stored off heap.
+     * @return The plan.
+     * @throws InvalidSettingsException
+     *             If the estimated memory exceeds the available memory.
+     */
+    private ExecutionPlan createPlan(final int numReads,
+            final long numSimRows, final int numGenomes,
+            final boolean offHeapOnly)
+            throws InvalidSettingsException {
+        final Runtime runtime = Runtime.getRuntime();
+        ExecutionPlan plan = ExecutionPlan.create(
+                new ExecutionPlan.Problem(numReads, numSimRows, numGenomes,
+                        m_num_boostrap.getIntValue(),
+                        m_num_threads.getIntValue(),
+                        StartPointStrategy.valueOf(m_start_strategy
+                                .getStringValue()),
+                        m_num_starts.getIntValue(), m_max_iter.getIntValue(),
+                        m_path_steps.getIntValue(),
+                        m_screening.getBooleanValue(),
+                        m_single_precision.getBooleanValue(),
+                        runtime.maxMemory()
+                                - (runtime.totalMemory() - runtime.freeMemory())),
+                CorrectionEngine.valueOf(m_engine.getStringValue()),
+                ResamplingStrategy.valueOf(m_resampling.getStringValue()),
+                offHeapOnly);
+        logger.info("Execution plan: " + plan);
+        if (m_total_budget.getIntValue() > 0
+                && plan.getEstimatedSeconds() > m_total_budget.getIntValue()) {
+            logger.info("The estimated run time exceeds the overall time budget.");
+        }
+        return plan;
+    }
 
-            logger.info("Similartiy matrix in iteration " + i + ": "
-                    + sm.toString());
+    /**
+     * Estimates the abundances with a similarity model. Genomes without reads
+     * have no abundance, so only the similarities of the genomes that
+     * received reads are loaded and estimated; the others are reported with
+     * abundance 0.
+     * 
+     * Unlike the estimation from the simulated reads, this also drops the
+     * rows of these genomes from the LASSO problem, i.e., it ignores that
+     * simulated reads of a genome with reads may map to a genome without
+     * reads. The results only agree if no such reads exist; EM is not
+     * affected.
+     * 
+     * @param plan
+     *            The execution plan.
+     * @param reads
+     *            The reads of the sample.
+     * @param modelPort
+     *            The similarity model input, null if it is not connected.
+     * @param names
+     *            The names of the genomes.
+     * @param totalDeadline
+     *            The deadline of the overall time budget.
+     * @param exec
+     *            The execution context.
+     * @return The result table, the solver statistics and the regularization
+     *         path.
+     * @throws Exception
+     *             If the estimation fails or is canceled.
+     */
+    private BufferedDataTable[] estimate(final ExecutionPlan plan,
+            final MappingMatrix reads, final PortObject modelPort,
+            final String[] names, final long totalDeadline,
+            final ExecutionContext exec) throws Exception {
+        final int[] counts = reads.getGenomeCounts(null);
+        int numMapped = 0;
+        for (int count : counts) {
+            numMapped += (count > 0 ? 1 : 0);
+        }
+        if (numMapped == 0) {
+            throw new Exception("No read maps to any genome.");
+        }
+        int[] genomes = new int[numMapped];
+        String[] mappedNames = new String[numMapped];
+        for (int g = 0, i = 0; g < counts.length; ++g) {
+            if (counts[g] > 0) {
+                genomes[i] = g;
+                mappedNames[i++] = names[g];
+            }
+        }
+        logger.info(numMapped + " of " + names.length
+                + " genomes received reads.");
+
+        exec.setMessage("Loading similarity model");
+        SimilarityModel model = loadModel(modelPort, mappedNames);
+        exec.checkCanceled();
+        if (numMapped == names.length) {
+            return estimate(plan, reads, null, model, names, null,
+                    totalDeadline, exec);
+        }
+        MappingMatrix mappedReads = reads.selectGenomes(genomes);
+        try {
+            return estimate(plan, mappedReads, null, model, names, genomes,
+                    totalDeadline, exec);
+        } finally {
+            mappedReads.close();
+        }
+    }
 
-            correct[i] = lc.similarityCorrection(sm, reads);
-            fail[i] = new double[numGenomes];
-            for (int f = 0; f < numGenomes; ++f) {
-                fail[i][f] = (correct[i][f] < m_test_level.getDoubleValue() ? 1
-                        : 0);
+    /**
+     * Loads the similarity model of some genomes, from the similarity index
+     * file if one is selected and from the model input otherwise.
+     * 
+     * @param modelPort
+     *            The similarity model input, null if it is not connected.
+     * @param names
+     *            The names of the genomes.
+     * @return The model of these genomes.
+     * @throws InvalidSettingsException
+     *             If there is no model or it misses a genome.
+     * @throws IOException
+     *             If the index cannot be read.
+     */
+    private SimilarityModel loadModel(final PortObject modelPort,
+            final String[] names) throws InvalidSettingsException, IOException {
+        final String indexFile = m_index_file.getStringValue().trim();
+        if (!indexFile.isEmpty()) {
+            // only the dictionary and the records of the genomes are read
+            SimilarityIndex index = SimilarityIndex.open(new File(indexFile));
+            try {
+                checkGenomes(index.getGenomeNames(), names);
+                return index.load(names);
+            } finally {
+                index.close();
             }
+        }
+        if (modelPort == null) {
+            throw new InvalidSettingsException(
+                    "Connect a similarity model or select a similarity index file.");
+        }
+        return getModel(((SimilarityModelPortObject) modelPort).getModel(),
+                names);
+    }
 
-            exec.setProgress((double) i / m_num_boostrap.getIntValue());
+    /**
+     * Estimates the abundances and creates the output tables.
+     * 
+     * @param plan
+     *            The execution plan.
+     * @param reads
+     *            The reads of the sample.
+     * @param simulations
+     *            The simulated reads of every genome, null if the similarity
+     *            model is given.
+     * @param model
+     *            The similarity model of the genomes, null if the simulated
+     *            reads are given.
+     * @param names
+     *            The names of the genomes.
+     * @param genomes
+     *            The positions of the estimated genomes (the columns of the
+     *            reads) in the names, null if all genomes are estimated.
+     * @param totalDeadline
+     *            The deadline of the overall time budget.
+     * @param exec
+     *            The execution context.
+     * @return The result table, the solver statistics and the regularization
+     *         path.
+     * @throws Exception
+     *             If the estimation fails or is canceled.
+     */
+    private BufferedDataTable[] estimate(final ExecutionPlan plan,
+            final MappingMatrix reads, final MappingMatrix simulations,
+            final SimilarityModel model, final String[] names,
+            final int[] genomes, final long totalDeadline,
+            final ExecutionContext exec) throws Exception {
+        List<String> warnings = new ArrayList<String>();
+
+        // source of randomness for the bootstrap samples of this execution
+        final Random random = (m_use_seed.getBooleanValue() ? new Random(
+                m_seed.getIntValue()) : new Random());
+        CorrectionCache cache = (m_use_cache.getBooleanValue() ? getCache(m_cache_dir
+                .getStringValue()) : null);
+
+        final int numGenomes = names.length;
+        final int numReads = reads.getNumReads();
+        final StartPointStrategy strategy = StartPointStrategy
+                .valueOf(m_start_strategy.getStringValue());
+        final CorrectionEngine engine = plan.getEngine();
+
+        LassoCorrection lc = new LassoCorrection(new LassoSettings.Builder()
+                .threads(m_num_threads.getIntValue())
+                .trustRegion(m_rhobeg.getDoubleValue(),
+                        m_rhoend.getDoubleValue())
+                .maxIterations(m_max_iter.getIntValue())
+                .racing(m_racing.getBooleanValue())
+                .startPoints(strategy, m_num_starts.getIntValue())
+                .screening(m_screening.getBooleanValue())
+                .sketch(SketchType.valueOf(m_sketch_type.getStringValue()),
+                        m_sketch_size.getIntValue(),
+                        m_sketch_refine.getBooleanValue())
+                .singlePrecision(m_single_precision.getBooleanValue())
+                .build());
+        EMCorrection em = new EMCorrection(m_max_iter.getIntValue(),
+                m_rhoend.getDoubleValue());
+        BootstrapCorrection correction = new BootstrapCorrection(engine,
+                plan.getResampling(), lc, em,
+                plan.getReads() == ExecutionPlan.Counting.BITMAP);
+        correction.setWarmStart(m_warm_start.getBooleanValue());
+        correction.setCache(cache);
+        correction.setReplicateBudget(m_replicate_budget.getIntValue());
+        correction.setTestLevel(m_test_level.getDoubleValue());
+        SolverExecutor executor = getSolverExecutor();
+
+        // statistics are only collected if requested
+        SolverStatisticsTable statistics = (m_solver_statistics
+                .getBooleanValue() ? new SolverStatisticsTable() : null);
+
+        BootstrapResult result;
+        try {
+            if (m_num_workers.getIntValue() > 0) {
+                // shards of the replicates are computed by worker JVMs, they
+                // neither share the cache nor report solver statistics
+                exec.setMessage("Bootstrapping in "
+                        + m_num_workers.getIntValue() + " worker processes");
+                ShardedBootstrap sharded = new ShardedBootstrap(correction,
+                        new LocalWorkerLauncher(
+                                LocalWorkerLauncher.getDefaultJavaCommand(),
+                                getWorkerClassPath(),
+                                getWorkerJvmArguments(plan)),
+                        m_num_workers.getIntValue(),
+                        m_num_threads.getIntValue());
+                result = (model != null ? sharded.run(reads, model,
+                        m_num_boostrap.getIntValue(), random.nextLong(),
+                        new ExecutionSolverMonitor(exec), totalDeadline)
+                        : sharded.run(reads, simulations,
+                                m_num_boostrap.getIntValue(),
+                                random.nextLong(), new ExecutionSolverMonitor(
+                                        exec), totalDeadline));
+            } else {
+                BootstrapMonitor monitor = new ExecutionBootstrapMonitor(exec,
+                        statistics);
+                result = (model != null ? correction.run(reads, model,
+                        m_num_boostrap.getIntValue(), random, executor,
+                        monitor, totalDeadline) : correction.run(reads,
+                        simulations, m_num_boostrap.getIntValue(), random,
+                        executor, monitor, totalDeadline));
+            }
+        } catch (CancellationException e) {
+            // turns the cancellation into the exception KNIME expects
             exec.checkCanceled();
+            throw e;
+        }
+        final int numCompleted = result.getNumCompleted();
+
+        if (model != null
+                && model.getNumReplicates() < m_num_boostrap.getIntValue()) {
+            warnings.add(model.getNumReplicates() == 0 ? "The similarity model has no bootstrap replicates, the error does not include the uncertainty of the similarities."
+                    : "The similarity model has only "
+                            + model.getNumReplicates()
+                            + " bootstrap replicates, they are reused for "
+                            + m_num_boostrap.getIntValue()
+                            + " bootstrap samples.");
+        }
+        final int budgetHits = result.getBudgetHits();
+
+        if (numCompleted < m_num_boostrap.getIntValue()) {
+            warnings.add("Overall time budget exhausted after " + numCompleted
+                    + " of " + m_num_boostrap.getIntValue()
+                    + " bootstrap samples.");
+        }
+        if (budgetHits > 0) {
+            warnings.add(budgetHits + " of " + numCompleted
+                    + " bootstrap samples exceeded the time budget"
+                    + " and use the best solution found so far.");
+        }
+        if (m_replicate_budget.getIntValue() > 0
+                || m_total_budget.getIntValue() > 0) {
+            pushFlowVariableInt("gasic_budget_hits", budgetHits);
+            pushFlowVariableInt("gasic_bootstrap_samples", numCompleted);
+        }
+
+        if (cache != null) {
+            logger.info(String.format(
+                    "Result cache: %d of %d bootstrap samples reused "
+                            + "(total: %d memory hits, %d disk hits, %d misses)",
+                    result.getCacheHits(), m_num_boostrap.getIntValue(),
+                    cache.getHits(), cache.getDiskHits(), cache.getMisses()));
+            pushFlowVariableInt("gasic_cache_hits", (int) result.getCacheHits());
+        }
+
+        if (engine == CorrectionEngine.LASSO && m_sketch_size.getIntValue() > 0) {
+            logger.info("Approximate mode: largest objective gap of all bootstrap samples: "
+                    + result.getObjectiveGap());
+            pushFlowVariableDouble("gasic_objective_gap",
+                    result.getObjectiveGap());
         }
 
         // write to output table
@@ -177,10 +850,19 @@ public class GASiCNodeModel extends NodeModel {
                 .createDataContainer(createOutputSpec());
         exec.setMessage("Creating output");
 
-        int[] mapped_reads = getMappedReads(inData[0], numGenomes);
-        double[] avg_correct = mean(correct);
-        double[] avg_fails = mean(fail);
-        double[] var_correct = var(correct);
+        int[] mapped_reads = reads.getGenomeCounts(null);
+        BootstrapSummary summary = result.getSummary();
+        // genomes that were not estimated have no reads and no abundance
+        double[] avg_correct = expand(summary.getMean(), genomes, numGenomes,
+                0.0);
+        double[] avg_fails = expand(summary.getFailRate(), genomes,
+                numGenomes, 1.0);
+        double[] var_correct = expand(summary.getVariance(), genomes,
+                numGenomes, 0.0);
+        int[] genome_reads = new int[numGenomes];
+        for (int i = 0; i < mapped_reads.length; ++i) {
+            genome_reads[genomes == null ? i : genomes[i]] = mapped_reads[i];
+        }
 
         logger.info("Correction values: " + Arrays.toString(avg_correct));
 
@@ -190,7 +872,7 @@ public class GASiCNodeModel extends NodeModel {
             // name
             cells[0] = new StringCell(names[i]);
             // mapped reads
-            cells[1] = new IntCell(mapped_reads[i]);
+            cells[1] = new IntCell(genome_reads[i]);
             // corrected
             cells[2] = new DoubleCell(avg_correct[i] * numReads);
             // error
@@ -211,27 +893,155 @@ public class GASiCNodeModel extends NodeModel {
         container.close();
         BufferedDataTable out = container.getTable();
 
-        return new BufferedDataTable[] { out };
+        // regularization path of the complete (not resampled) data
+        LassoResult[] path = null;
+        double[] bounds = RegularizationPathTable.createBounds(
+                m_path_steps.getIntValue(), m_path_min_bound.getDoubleValue());
+        if (engine == CorrectionEngine.EM && bounds.length > 0) {
+            warnings.add("The regularization path is only available for the LASSO engine.");
+            bounds = new double[0];
+        }
+        if (bounds.length > 0) {
+            exec.setMessage("Computing regularization path");
+            SimpleMatrix readVector = BootstrapCorrection.getReadVector(
+                    mapped_reads, numReads);
+            SimpleMatrix sm = BootstrapCorrection
+                    .getSimilarityMatrix(model != null ? model.getCounts()
+                            : simulations.getSourceCounts(null));
+            try {
+                path = lc.solvePath(sm, readVector, bounds, executor,
+                        new ExecutionSolverMonitor(exec), totalDeadline);
+            } catch (CancellationException e) {
+                exec.checkCanceled();
+                throw e;
+            }
+            int pathBudgetHits = 0;
+            for (int p = 0; p < path.length; ++p) {
+                pathBudgetHits += (path[p].isBudgetExceeded() ? 1 : 0);
+                if (genomes != null) {
+                    path[p] = new LassoResult(expand(path[p].getSolution(),
+                            genomes, numGenomes, 0.0), path[p].getObjective(),
+                            path[p].getEvaluations(), path[p].getTime(),
+                            path[p].getObjectiveGap(),
+                            path[p].isBudgetExceeded());
+                }
+            }
+            if (pathBudgetHits > 0) {
+                warnings.add(pathBudgetHits + " of " + path.length
+                        + " path points exceeded the overall time budget.");
+            }
+        }
+        BufferedDataTable pathTable = RegularizationPathTable.createTable(exec,
+                names, bounds, path, m_test_level.getDoubleValue());
+
+        BufferedDataTable statisticsTable;
+        if (statistics != null) {
+            statisticsTable = statistics.createTable(exec);
+        } else {
+            BufferedDataContainer empty = exec
+                    .createDataContainer(SolverStatisticsTable.createSpec());
+            empty.close();
+            statisticsTable = empty.getTable();
+        }
+
+        if (!warnings.isEmpty()) {
+            StringBuilder message = new StringBuilder();
+            for (String warning : warnings) {
+                message.append(message.length() > 0 ? " " : "").append(warning);
+            }
+            setWarningMessage(message.toString());
+        }
+
+        return new BufferedDataTable[] { out, statisticsTable, pathTable };
     }
 
-    private String[] getGenomeNames(DataTableSpec dataTableSpec,
-            final int numGenomes) {
-        String[] names = new String[numGenomes];
+    /**
+     * Places the values of the estimated genomes at their positions among all
+     * genomes.
+     * 
+     * @param values
+     *            The values of the estimated genomes, can be null.
+     * @param genomes
+     *            The positions of the estimated genomes, null if all genomes
+     *            were estimated.
+     * @param numGenomes
+     *            The number of all genomes.
+     * @param missing
+     *            The value of the genomes that were not estimated.
+     * @return The values of all genomes.
+     */
+    private static double[] expand(final double[] values, final int[] genomes,
+            final int numGenomes, final double missing) {
+        if (values == null || genomes == null) {
+            return values;
+        }
+        double[] expanded = new double[numGenomes];
+        Arrays.fill(expanded, missing);
+        for (int i = 0; i < genomes.length; ++i) {
+            expanded[genomes[i]] = values[i];
+        }
+        return expanded;
+    }
 
-        int[] indices = getMappingCols(dataTableSpec, numGenomes);
+    /**
+     * Returns the executor for the COBYLA runs of this node. The executor is
+     * kept alive between executions and only recreated if the number of
+     * threads changed.
+     * 
+     * @return The solver executor.
+     */
+    private synchronized SolverExecutor getSolverExecutor() {
+        if (m_solverExecutor == null
+                || m_solverExecutor.isShutdown()
+                || m_solverExecutor.getNumThreads() != m_num_threads
+                        .getIntValue()) {
+            if (m_solverExecutor != null) {
+                m_solverExecutor.shutdown();
+            }
+            m_solverExecutor = new SolverExecutor(m_num_threads.getIntValue());
+        }
+        return m_solverExecutor;
+    }
 
-        for (int i = 0; i < numGenomes; ++i) {
-            names[i] = dataTableSpec.getColumnSpec(indices[i]).getName();
+    /**
+     * Returns the result cache shared by all nodes using the given disk
+     * directory.
+     * 
+     * @param directory
+     *            The directory of the on-disk tier, empty for a memory only
+     *            cache.
+     * @return The shared cache.
+     */
+    private static CorrectionCache getCache(final String directory) {
+        synchronized (CACHES) {
+            String key = directory.trim();
+            CorrectionCache cache = CACHES.get(key);
+            if (cache == null) {
+                cache = new CorrectionCache(CACHE_CAPACITY,
+                        (key.isEmpty() ? null : new File(key)));
+                CACHES.put(key, cache);
+            }
+            return cache;
         }
+    }
 
-        return names;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected synchronized void onDispose() {
+        if (m_solverExecutor != null) {
+            m_solverExecutor.shutdown();
+            m_solverExecutor = null;
+        }
+        super.onDispose();
     }
 
     private int getNumberOfGenomes(DataTableSpec[] inData)
             throws InvalidSettingsException {
 
-        int num1Genomes = numberOfBoolCols(inData[0]);
-        int num2Genomes = numberOfBoolCols(inData[1]);
+        int num1Genomes = MappingTables.numberOfBoolCols(inData[0]);
+        int num2Genomes = MappingTables.numberOfBoolCols(inData[1]);
 
         if (num1Genomes != num2Genomes) {
             throw new InvalidSettingsException(
@@ -242,13 +1052,7 @@ public class GASiCNodeModel extends NodeModel {
     }
 
     public int numberOfBoolCols(DataTableSpec spec) {
-        int numBoolCols = 0;
-        for (DataColumnSpec colSpec : spec) {
-            if (colSpec.getType() == BooleanCell.TYPE) {
-                numBoolCols++;
-            }
-        }
-        return numBoolCols;
+        return MappingTables.numberOfBoolCols(spec);
     }
 
     /**
@@ -262,11 +1066,64 @@ public class GASiCNodeModel extends NodeModel {
      * {@inheritDoc}
      */
     @Override
-    protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
             throws InvalidSettingsException {
-        // checks if the number of genomes is correct
-        getNumberOfGenomes(inSpecs);
-        return new DataTableSpec[] { createOutputSpec() };
+        final DataTableSpec readSpec = (DataTableSpec) inSpecs[0];
+        final int numGenomes;
+        if (m_useModel) {
+            numGenomes = MappingTables.numberOfBoolCols(readSpec);
+            final String indexFile = m_index_file.getStringValue().trim();
+            if (!indexFile.isEmpty()) {
+                if (!new File(indexFile).isFile()) {
+                    throw new InvalidSettingsException(
+                            "The similarity index file " + indexFile
+                                    + " does not exist.");
+                }
+            } else if (inSpecs[1] != null) {
+                // the genomes of a model are only known once it was built
+                checkGenomes(((SimilarityModelPortObjectSpec) inSpecs[1])
+                        .getGenomeNames(), MappingTables.getGenomeNames(
+                        readSpec, numGenomes));
+            }
+        } else {
+            // checks if the number of genomes is correct
+            numGenomes = getNumberOfGenomes(new DataTableSpec[] { readSpec,
+                    (DataTableSpec) inSpecs[1] });
+        }
+        return new DataTableSpec[] {
+                createOutputSpec(),
+                SolverStatisticsTable.createSpec(),
+                RegularizationPathTable.createSpec(MappingTables
+                        .getGenomeNames(readSpec, numGenomes)) };
+    }
+
+    /**
+     * Restricts the similarity model to the genomes of the read table, in the
+     * order of its columns.
+     * 
+     * @param model
+     *            The similarity model.
+     * @param names
+     *            The genomes of the read table.
+     * @return The model of these genomes.
+     * @throws InvalidSettingsException
+     *             If a genome of the read table is not part of the model.
+     */
+    private static SimilarityModel getModel(final SimilarityModel model,
+            final String[] names) throws InvalidSettingsException {
+        checkGenomes(model.getGenomeNames(), names);
+        return model.select(names);
+    }
+
+    private static void checkGenomes(final String[] modelGenomes,
+            final String[] names) throws InvalidSettingsException {
+        Set<String> known = new HashSet<String>(Arrays.asList(modelGenomes));
+        for (String name : names) {
+            if (!known.contains(name)) {
+                throw new InvalidSettingsException("The genome " + name
+                        + " of the read table is not part of the similarity model.");
+            }
+        }
     }
 
     private DataTableSpec createOutputSpec() {
@@ -290,208 +1147,40 @@ public class GASiCNodeModel extends NodeModel {
     }
 
     /**
-     * 
-     * @param source
-     * @param numReads
-     * @return
+     * @param plan
+     *            The plan of the execution.
+     * @return The JVM arguments of the workers: the configured ones plus, if
+     *         they do not set the maximum heap, -Xmx from the estimate of the
+     *         plan.
      */
-    private SimpleMatrix sampleNormalizedReadVector(
-            final BufferedDataTable source, final int numReads,
-            final int numGenomes) {
-
-        int[] counts = getMappedReads(source, numGenomes, true);
-
-        SimpleMatrix normalizedReads = new SimpleMatrix(numGenomes, 1);
-
-        for (int i = 0; i < numGenomes; ++i) {
-            normalizedReads.set(i, 0, (double) counts[i] / (double) numReads);
-        }
-
-        return normalizedReads;
-    }
-
-    public int[] getMappedReads(final BufferedDataTable source,
-            final int numGenomes, boolean bootstrap) {
-        int[] boolCols = getMappingCols(source.getDataTableSpec(), numGenomes);
-        int[] counts = new int[numGenomes];
-        Arrays.fill(counts, 0);
-
-        List<Integer> sampleSubset = getRandomSampleList(source.getRowCount());
-        int s = 0; // current sample
-        int r = 0; // current row in the data set
-        for (DataRow row : source) {
-            if (!bootstrap) {
-                addRowToCountVector(numGenomes, boolCols, counts, row);
-            } else {
-                while (s < sampleSubset.size() && r == sampleSubset.get(s)) {
-                    addRowToCountVector(numGenomes, boolCols, counts, row);
-                    ++s;
-                }
+    private List<String> getWorkerJvmArguments(final ExecutionPlan plan) {
+        List<String> arguments = new ArrayList<String>();
+        boolean hasMaxHeap = false;
+        for (String argument : m_worker_jvm_args.getStringValue().trim()
+                .split("\\s+")) {
+            if (!argument.isEmpty()) {
+                arguments.add(argument);
+                hasMaxHeap |= argument.startsWith("-Xmx");
             }
-            ++r;
         }
-        return counts;
-    }
-
-    public void addRowToCountVector(final int numGenomes, int[] boolCols,
-            int[] counts, DataRow row) {
-        for (int i = 0; i < numGenomes; ++i) {
-            counts[i] += ((BooleanCell) row.getCell(boolCols[i])).getIntValue();
-        }
-    }
-
-    public int[] getMappedReads(final BufferedDataTable source,
-            final int numGenomes) {
-        return getMappedReads(source, numGenomes, false);
-    }
-
-    private int[] getMappingCols(DataTableSpec dataTableSpec,
-            final int numGenomes) {
-        int[] boolCols = new int[numGenomes];
-        int c = 0;
-        for (int i = 0; i < dataTableSpec.getNumColumns(); ++i) {
-            if (dataTableSpec.getColumnSpec(i).getType() == BooleanCell.TYPE) {
-                boolCols[c++] = i;
-            }
-        }
-        return boolCols;
-    }
-
-    /**
-     * Creates a new, random, sorted list of size N with elements in the
-     * interval [0, N).
-     * 
-     * @param N
-     *            Size of the generated list and the domain of the generated
-     *            numbers.
-     * @return A new, random, sorted list of size N.
-     */
-    private List<Integer> getRandomSampleList(final int N) {
-        logger.debug(String.format(
-                "Generating random set of size N=%d in the interval [0,%d)", N,
-                N));
-        List<Integer> rndList = new ArrayList<Integer>();
-        Random rndGen = new Random();
-        for (int i = 0; i < N; ++i) {
-            rndList.add(rndGen.nextInt(N));
+        if (!hasMaxHeap) {
+            final long megabytes = Math.max(MIN_WORKER_HEAP_MB,
+                    (plan.getWorkerBytes() >> 20) + 1);
+            arguments.add("-Xmx" + megabytes + "m");
         }
-
-        // sort the list for easier iteration
-        Collections.sort(rndList);
-
-        return rndList;
+        return arguments;
     }
 
     /**
-     * 
-     * @param source
-     * @param numReads
-     * @return
-     * @throws Exception
+     * @return The class path of the worker JVMs: the jars of this plug-in or,
+     *         outside of KNIME, the class path of this JVM.
+     * @throws IOException
+     *             If the jars of the plug-in cannot be located.
      */
-    private SimpleMatrix sampleSimilarityMatrix(final BufferedDataTable source,
-            final int numReads, final int numGenomes) throws Exception {
-        int[] boolCols = getMappingCols(source.getDataTableSpec(), numGenomes);
-
-        int[][] counts = getSimilartiyCountMatrix(source, numGenomes, boolCols);
-
-        // normalize
-        SimpleMatrix sm = new SimpleMatrix(numGenomes, numGenomes);
-
-        for (int i = 0; i < numGenomes; ++i) {
-            for (int j = 0; j < numGenomes; ++j) {
-                sm.set(i, j, (double) counts[i][j] / (double) counts[i][i]);
-            }
-        }
-
-        return sm;
-    }
-
-    public int[][] getSimilartiyCountMatrix(final BufferedDataTable source,
-            final int numGenomes, int[] boolCols) throws Exception {
-        String currentGenome = "";
-        int[][] counts = new int[numGenomes][numGenomes];
-        int currentGenomeIdx = -1;
-
-        int numReadsPerGenome = source.getRowCount() / numGenomes;
-        List<Integer> bootstrapSample = new ArrayList<Integer>();
-        int r = 0; // current row in the data set
-        int s = 0; // current element in the sample
-
-        for (DataRow row : source) {
-
-            // reset counters etc as we have a new genome
-            if (!currentGenome.equals(((StringCell) row.getCell(0))
-                    .getStringValue())) {
-                // .. check if the previous run got all the data
-                if (s != bootstrapSample.size()) {
-                    throw new Exception(
-                            "Bootstrap sampling of similarity matrix failed.");
-                }
-
-                // .. the row selection
-                bootstrapSample = getRandomSampleList(numReadsPerGenome);
-                s = 0;
-                r = 0;
-
-                // .. the genome
-                ++currentGenomeIdx;
-                currentGenome = ((StringCell) row.getCell(0)).getStringValue();
-
-                if (currentGenomeIdx >= numGenomes) {
-                    throw new Exception(
-                            "Invalid input data: The input data contains more genomes in its rows then in its columns.");
-                }
-            }
-
-            // add the current row 0/1/multiple times depending on how often it
-            // is in the bootstrapSample
-            while (s < bootstrapSample.size() && r == bootstrapSample.get(s)) {
-                for (int g = 0; g < numGenomes; ++g) {
-                    counts[currentGenomeIdx][g] += ((BooleanCell) row
-                            .getCell(boolCols[g])).getIntValue();
-                }
-                ++s;
-            }
-
-            // advance row counter
-            ++r;
-        }
-
-        return counts;
-    }
-
-    private double[] mean(double[][] input) {
-        double[] mean = new double[input[0].length];
-
-        for (int i = 0; i < input.length; ++i) {
-            for (int j = 0; j < mean.length; ++j) {
-                mean[j] += input[i][j];
-            }
-        }
-
-        for (int j = 0; j < mean.length; ++j) {
-            mean[j] /= input.length;
-        }
-
-        return mean;
-    }
-
-    private double[] var(double[][] input) {
-        double[] mean = mean(input);
-        double[] var = new double[mean.length];
-
-        for (int i = 0; i < input.length; ++i) {
-            for (int j = 0; j < var.length; ++j) {
-                var[j] += Math.pow((input[i][j] - mean[j]), 2);
-            }
-        }
-
-        for (int j = 0; j < var.length; ++j) {
-            var[j] /= (input.length - 1);
-        }
-
-        return var;
+    private static String getWorkerClassPath() throws IOException {
+        Activator activator = Activator.getDefault();
+        return (activator != null ? activator.getWorkerClassPath()
+                : LocalWorkerLauncher.getDefaultClassPath());
     }
 
     /**
@@ -505,6 +1194,29 @@ public class GASiCNodeModel extends NodeModel {
         m_rhobeg.saveSettingsTo(settings);
         m_rhoend.saveSettingsTo(settings);
         m_test_level.saveSettingsTo(settings);
+        m_warm_start.saveSettingsTo(settings);
+        m_racing.saveSettingsTo(settings);
+        m_engine.saveSettingsTo(settings);
+        m_resampling.saveSettingsTo(settings);
+        m_screening.saveSettingsTo(settings);
+        m_single_precision.saveSettingsTo(settings);
+        m_start_strategy.saveSettingsTo(settings);
+        m_num_starts.saveSettingsTo(settings);
+        m_solver_statistics.saveSettingsTo(settings);
+        m_use_seed.saveSettingsTo(settings);
+        m_seed.saveSettingsTo(settings);
+        m_use_cache.saveSettingsTo(settings);
+        m_cache_dir.saveSettingsTo(settings);
+        m_index_file.saveSettingsTo(settings);
+        m_sketch_size.saveSettingsTo(settings);
+        m_sketch_type.saveSettingsTo(settings);
+        m_sketch_refine.saveSettingsTo(settings);
+        m_replicate_budget.saveSettingsTo(settings);
+        m_total_budget.saveSettingsTo(settings);
+        m_path_steps.saveSettingsTo(settings);
+        m_path_min_bound.saveSettingsTo(settings);
+        m_num_workers.saveSettingsTo(settings);
+        m_worker_jvm_args.saveSettingsTo(settings);
     }
 
     /**
@@ -519,6 +1231,69 @@ public class GASiCNodeModel extends NodeModel {
         m_rhobeg.loadSettingsFrom(settings);
         m_rhoend.loadSettingsFrom(settings);
         m_test_level.loadSettingsFrom(settings);
+        // added later, keep the default for older workflows
+        if (settings.containsKey(CFG_WARM_START)) {
+            m_warm_start.loadSettingsFrom(settings);
+        } else {
+            // older workflows solved every replicate from scratch
+            m_warm_start.setBooleanValue(false);
+        }
+        if (settings.containsKey(CFG_RACING)) {
+            m_racing.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_SCREENING)) {
+            m_screening.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_SINGLE_PRECISION)) {
+            m_single_precision.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_ENGINE)) {
+            m_engine.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_RESAMPLING)) {
+            m_resampling.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_START_STRATEGY)) {
+            m_start_strategy.loadSettingsFrom(settings);
+            m_num_starts.loadSettingsFrom(settings);
+        } else {
+            // older workflows used the heuristic start points
+            m_start_strategy.setStringValue(StartPointStrategy.HEURISTIC
+                    .name());
+        }
+        if (settings.containsKey(CFG_SOLVER_STATISTICS)) {
+            m_solver_statistics.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_USE_SEED)) {
+            m_use_seed.loadSettingsFrom(settings);
+            m_seed.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_USE_CACHE)) {
+            m_use_cache.loadSettingsFrom(settings);
+            m_cache_dir.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_SKETCH_SIZE)) {
+            m_sketch_size.loadSettingsFrom(settings);
+            m_sketch_type.loadSettingsFrom(settings);
+            m_sketch_refine.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_REPLICATE_BUDGET)) {
+            m_replicate_budget.loadSettingsFrom(settings);
+            m_total_budget.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_PATH_STEPS)) {
+            m_path_steps.loadSettingsFrom(settings);
+            m_path_min_bound.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_NUM_WORKERS)) {
+            m_num_workers.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_WORKER_JVM_ARGS)) {
+            m_worker_jvm_args.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(CFG_INDEX_FILE)) {
+            m_index_file.loadSettingsFrom(settings);
+        }
     }
 
     /**
@@ -533,6 +1308,92 @@ public class GASiCNodeModel extends NodeModel {
         m_rhobeg.validateSettings(settings);
         m_rhoend.validateSettings(settings);
         m_test_level.validateSettings(settings);
+        if (settings.containsKey(CFG_WARM_START)) {
+            m_warm_start.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_RACING)) {
+            m_racing.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_SCREENING)) {
+            m_screening.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_SINGLE_PRECISION)) {
+            m_single_precision.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_ENGINE)) {
+            m_engine.validateSettings(settings);
+
+            String engine = settings.getString(CFG_ENGINE);
+            try {
+                CorrectionEngine.valueOf(engine);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSettingsException("Unknown engine: " + engine);
+            }
+        }
+        if (settings.containsKey(CFG_RESAMPLING)) {
+            m_resampling.validateSettings(settings);
+
+            String resampling = settings.getString(CFG_RESAMPLING);
+            try {
+                ResamplingStrategy.valueOf(resampling);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSettingsException("Unknown resampling: "
+                        + resampling);
+            }
+        }
+        if (settings.containsKey(CFG_START_STRATEGY)) {
+            m_start_strategy.validateSettings(settings);
+            m_num_starts.validateSettings(settings);
+
+            String strategy = settings.getString(CFG_START_STRATEGY);
+            try {
+                StartPointStrategy.valueOf(strategy);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSettingsException(
+                        "Unknown start point strategy: " + strategy);
+            }
+        }
+        if (settings.containsKey(CFG_SOLVER_STATISTICS)) {
+            m_solver_statistics.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_USE_SEED)) {
+            m_use_seed.validateSettings(settings);
+            m_seed.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_USE_CACHE)) {
+            m_use_cache.validateSettings(settings);
+            m_cache_dir.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_SKETCH_SIZE)) {
+            m_sketch_size.validateSettings(settings);
+            m_sketch_type.validateSettings(settings);
+            m_sketch_refine.validateSettings(settings);
+
+            String sketchType = settings.getString(CFG_SKETCH_TYPE);
+            try {
+                SketchType.valueOf(sketchType);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSettingsException("Unknown sketch type: "
+                        + sketchType);
+            }
+        }
+        if (settings.containsKey(CFG_REPLICATE_BUDGET)) {
+            m_replicate_budget.validateSettings(settings);
+            m_total_budget.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_PATH_STEPS)) {
+            m_path_steps.validateSettings(settings);
+            m_path_min_bound.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_NUM_WORKERS)) {
+            m_num_workers.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_WORKER_JVM_ARGS)) {
+            m_worker_jvm_args.validateSettings(settings);
+        }
+        if (settings.containsKey(CFG_INDEX_FILE)) {
+            m_index_file.validateSettings(settings);
+        }
     }
 
     /**
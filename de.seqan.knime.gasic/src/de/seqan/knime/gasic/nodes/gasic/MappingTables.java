@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.gasic;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.streamable.RowInput;
+
+import de.seqan.knime.gasic.core.MappingMatrix;
+
+/**
+ * Converts the mapping tables of the reader nodes into mapping matrices. Every
+ * boolean column of a table is a genome, the simulated mapping information
+ * additionally has the source genome of every read in its first column.
+ * 
+ * @author Stephan Aiche
+ */
+public final class MappingTables {
+
+    private MappingTables() {
+    }
+
+    /**
+     * @param dataTableSpec
+     *            The spec of a mapping table.
+     * @param numGenomes
+     *            The number of genomes.
+     * @return The names of the genomes, i.e., of the boolean columns.
+     */
+    public static String[] getGenomeNames(DataTableSpec dataTableSpec,
+            final int numGenomes) {
+        String[] names = new String[numGenomes];
+
+        int[] indices = getMappingCols(dataTableSpec, numGenomes);
+
+        for (int i = 0; i < numGenomes; ++i) {
+            names[i] = dataTableSpec.getColumnSpec(indices[i]).getName();
+        }
+
+        return names;
+    }
+
+    /**
+     * @param spec
+     *            The spec of a mapping table.
+     * @return The number of genomes, i.e., of the boolean columns.
+     */
+    public static int numberOfBoolCols(DataTableSpec spec) {
+        int numBoolCols = 0;
+        for (DataColumnSpec colSpec : spec) {
+            if (colSpec.getType() == BooleanCell.TYPE) {
+                numBoolCols++;
+            }
+        }
+        return numBoolCols;
+    }
+
+    /**
+     * Converts the read table into a mapping matrix.
+     * 
+     * @param source
+     *            The rows of the mapping information of the reads, either of
+     *            a table or streamed from the upstream node.
+     * @param numGenomes
+     *            The number of genomes.
+     * @param expectedReads
+     *            The expected number of reads, 0 if unknown.
+     * @param offHeap
+     *            If true, the matrix is stored in a memory mapped file.
+     * @return The mapping matrix of the reads.
+     * @throws InterruptedException
+     *             If waiting for a streamed row is interrupted.
+     * @throws IOException
+     *             If the file of an off heap matrix cannot be created.
+     */
+    public static MappingMatrix getReadMatrix(final RowInput source,
+            final int numGenomes, final int expectedReads,
+            final boolean offHeap) throws InterruptedException, IOException {
+        int[] boolCols = getMappingCols(source.getDataTableSpec(), numGenomes);
+        MappingMatrix matrix = (offHeap ? MappingMatrix.createMapped(
+                numGenomes, expectedReads) : new MappingMatrix(numGenomes,
+                expectedReads));
+        for (DataRow row = source.poll(); row != null; row = source.poll()) {
+            addMappings(matrix, matrix.addRead(), boolCols, row);
+        }
+        source.close();
+        return matrix;
+    }
+
+    /**
+     * Converts the simulated read table into a mapping matrix. The reads of a
+     * genome are consecutive rows with the same source genome, the genomes
+     * are in the order of the columns.
+     * 
+     * @param source
+     *            The rows of the simulated mapping information.
+     * @param numGenomes
+     *            The number of genomes.
+     * @param expectedReads
+     *            The expected number of simulated reads, 0 if unknown.
+     * @param offHeap
+     *            If true, the matrix is stored in a memory mapped file.
+     * @return The mapping matrix of the simulated reads.
+     * @throws Exception
+     *             If the input data is invalid.
+     */
+    public static MappingMatrix getSimulationMatrix(final RowInput source,
+            final int numGenomes, final int expectedReads,
+            final boolean offHeap) throws Exception {
+        return getSimulationMatrix(source, numGenomes, expectedReads, offHeap,
+                null);
+    }
+
+    /**
+     * Converts the simulated read table into a mapping matrix and collects
+     * the names of the source genomes, e.g., if the table only has simulated
+     * reads of some of its genomes.
+     * 
+     * @param sources
+     *            Receives the name of every source genome, in the order of
+     *            the reads, can be null.
+     * @see #getSimulationMatrix(RowInput, int, int, boolean)
+     */
+    public static MappingMatrix getSimulationMatrix(final RowInput source,
+            final int numGenomes, final int expectedReads,
+            final boolean offHeap, final List<String> sources) throws Exception {
+        int[] boolCols = getMappingCols(source.getDataTableSpec(), numGenomes);
+        MappingMatrix matrix = (offHeap ? MappingMatrix.createMapped(
+                numGenomes, expectedReads) : new MappingMatrix(numGenomes,
+                expectedReads));
+
+        String currentGenome = null;
+        int currentGenomeIdx = -1;
+        for (DataRow row = source.poll(); row != null; row = source.poll()) {
+            String genome = ((StringCell) row.getCell(0)).getStringValue();
+            if (!genome.equals(currentGenome)) {
+                ++currentGenomeIdx;
+                currentGenome = genome;
+
+                if (currentGenomeIdx >= numGenomes) {
+                    throw new Exception(
+                            "Invalid input data: The input data contains more genomes in its rows then in its columns.");
+                }
+                if (sources != null) {
+                    sources.add(genome);
+                }
+            }
+            addMappings(matrix, matrix.addRead(currentGenomeIdx), boolCols,
+                    row);
+        }
+        source.close();
+        return matrix;
+    }
+
+    private static void addMappings(final MappingMatrix matrix,
+            final int read, final int[] boolCols, final DataRow row) {
+        for (int g = 0; g < boolCols.length; ++g) {
+            if (((BooleanCell) row.getCell(boolCols[g])).getBooleanValue()) {
+                matrix.setMapped(read, g);
+            }
+        }
+    }
+
+    private static int[] getMappingCols(DataTableSpec dataTableSpec,
+            final int numGenomes) {
+        int[] boolCols = new int[numGenomes];
+        int c = 0;
+        for (int i = 0; i < dataTableSpec.getNumColumns(); ++i) {
+            if (dataTableSpec.getColumnSpec(i).getType() == BooleanCell.TYPE) {
+                boolCols[c++] = i;
+            }
+        }
+        return boolCols;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.gasic;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+
+import de.seqan.knime.gasic.similarity_correction.LassoResult;
+
+/**
+ * Creates the regularization path output table of the GASiC node: one row
+ * per bound of the total abundance with the objective value, the number of
+ * present genomes and the abundance of every genome.
+ * 
+ * @author Stephan Aiche
+ */
+final class RegularizationPathTable {
+
+    private static final int NUM_FIXED_COLUMNS = 4;
+
+    private RegularizationPathTable() {
+    }
+
+    /**
+     * Creates the bounds of the path: steps bounds linearly spaced between
+     * minBound and 1.
+     * 
+     * @param steps
+     *            The number of points on the path.
+     * @param minBound
+     *            The smallest bound.
+     * @return The increasing bounds.
+     */
+    static double[] createBounds(final int steps, final double minBound) {
+        double[] bounds = new double[steps];
+        for (int p = 0; p < steps; ++p) {
+            bounds[p] = (steps == 1 ? 1.0 : minBound + (1.0 - minBound) * p
+                    / (steps - 1));
+        }
+        return bounds;
+    }
+
+    /**
+     * @param names
+     *            The genome names.
+     * @return The spec of the path table.
+     */
+    static DataTableSpec createSpec(final String[] names) {
+        DataColumnSpec[] allColSpecs = new DataColumnSpec[NUM_FIXED_COLUMNS
+                + names.length];
+        allColSpecs[0] = new DataColumnSpecCreator("sum bound",
+                DoubleCell.TYPE).createSpec();
+        allColSpecs[1] = new DataColumnSpecCreator("objective",
+                DoubleCell.TYPE).createSpec();
+        allColSpecs[2] = new DataColumnSpecCreator("total abundance",
+                DoubleCell.TYPE).createSpec();
+        allColSpecs[3] = new DataColumnSpecCreator("present genomes",
+                IntCell.TYPE).createSpec();
+        for (int g = 0; g < names.length; ++g) {
+            allColSpecs[NUM_FIXED_COLUMNS + g] = new DataColumnSpecCreator(
+                    names[g], DoubleCell.TYPE).createSpec();
+        }
+        return new DataTableSpec(allColSpecs);
+    }
+
+    /**
+     * @param exec
+     *            The context to create the table.
+     * @param names
+     *            The genome names.
+     * @param bounds
+     *            The bounds of the path.
+     * @param path
+     *            The solutions for the bounds, may be null for an empty table.
+     * @param testLevel
+     *            Genomes with an abundance below this level are not counted
+     *            as present.
+     * @return The path table.
+     */
+    static BufferedDataTable createTable(final ExecutionContext exec,
+            final String[] names, final double[] bounds,
+            final LassoResult[] path, final double testLevel) {
+        BufferedDataContainer container = exec
+                .createDataContainer(createSpec(names));
+        for (int p = 0; path != null && p < path.length; ++p) {
+            double[] solution = path[p].getSolution();
+            DataCell[] cells = new DataCell[NUM_FIXED_COLUMNS + names.length];
+
+            double total = 0.0;
+            int present = 0;
+            for (int g = 0; g < names.length; ++g) {
+                total += solution[g];
+                present += (solution[g] < testLevel ? 0 : 1);
+                cells[NUM_FIXED_COLUMNS + g] = new DoubleCell(solution[g]);
+            }
+            cells[0] = new DoubleCell(bounds[p]);
+            cells[1] = new DoubleCell(path[p].getObjective());
+            cells[2] = new DoubleCell(total);
+            cells[3] = new IntCell(present);
+
+            container.addRowToTable(new DefaultRow(new RowKey("Row " + p),
+                    cells));
+        }
+        container.close();
+        return container.getTable();
+    }
+}
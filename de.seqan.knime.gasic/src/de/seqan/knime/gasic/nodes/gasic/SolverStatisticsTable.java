@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.gasic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+
+import de.seqan.knime.gasic.similarity_correction.RunStatistics;
+import de.seqan.knime.gasic.similarity_correction.SolverRecorder;
+
+/**
+ * Collects the statistics of all COBYLA runs of a GASiC execution and turns
+ * them into the solver statistics output table (one row per bootstrap sample
+ * and start point).
+ * 
+ * @author Stephan Aiche
+ */
+final class SolverStatisticsTable {
+
+    private final List<Integer> replicates;
+    private final List<RunStatistics> statistics;
+
+    SolverStatisticsTable() {
+        replicates = new ArrayList<Integer>();
+        statistics = new ArrayList<RunStatistics>();
+    }
+
+    /**
+     * @param replicate
+     *            Index of the bootstrap sample.
+     * @return A recorder that adds the runs of the given bootstrap sample to
+     *         this table.
+     */
+    SolverRecorder getRecorder(final int replicate) {
+        return new SolverRecorder() {
+            @Override
+            public void record(RunStatistics runStatistics) {
+                add(replicate, runStatistics);
+            }
+        };
+    }
+
+    private synchronized void add(int replicate, RunStatistics runStatistics) {
+        replicates.add(replicate);
+        statistics.add(runStatistics);
+    }
+
+    /**
+     * @return The spec of the solver statistics table.
+     */
+    static DataTableSpec createSpec() {
+        DataColumnSpec[] allColSpecs = new DataColumnSpec[8];
+        allColSpecs[0] = new DataColumnSpecCreator("bootstrap sample",
+                IntCell.TYPE).createSpec();
+        allColSpecs[1] = new DataColumnSpecCreator("start point", IntCell.TYPE)
+                .createSpec();
+        allColSpecs[2] = new DataColumnSpecCreator("objective",
+                DoubleCell.TYPE).createSpec();
+        allColSpecs[3] = new DataColumnSpecCreator("evaluations", IntCell.TYPE)
+                .createSpec();
+        allColSpecs[4] = new DataColumnSpecCreator("wall time [ms]",
+                LongCell.TYPE).createSpec();
+        allColSpecs[5] = new DataColumnSpecCreator("thread", StringCell.TYPE)
+                .createSpec();
+        allColSpecs[6] = new DataColumnSpecCreator("converged",
+                BooleanCell.TYPE).createSpec();
+        allColSpecs[7] = new DataColumnSpecCreator("status", StringCell.TYPE)
+                .createSpec();
+
+        return new DataTableSpec(allColSpecs);
+    }
+
+    /**
+     * Writes the collected statistics into a new table.
+     * 
+     * @param exec
+     *            The context to create the table.
+     * @return The solver statistics table.
+     */
+    synchronized BufferedDataTable createTable(final ExecutionContext exec) {
+        BufferedDataContainer container = exec.createDataContainer(createSpec());
+        for (int i = 0; i < statistics.size(); ++i) {
+            RunStatistics s = statistics.get(i);
+            DataCell[] cells = new DataCell[8];
+            cells[0] = new IntCell(replicates.get(i));
+            cells[1] = new IntCell(s.getStartPoint());
+            cells[2] = new DoubleCell(s.getObjective());
+            cells[3] = new IntCell(s.getEvaluations());
+            cells[4] = new LongCell(s.getTime());
+            cells[5] = new StringCell(s.getThread());
+            cells[6] = BooleanCell.get(s.isConverged());
+            cells[7] = new StringCell(s.getStatus().name());
+            container.addRowToTable(new DefaultRow(new RowKey("Row " + i),
+                    cells));
+        }
+        container.close();
+        return container.getTable();
+    }
+}
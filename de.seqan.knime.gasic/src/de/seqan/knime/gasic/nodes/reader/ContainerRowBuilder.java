@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.reader;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+
+import de.seqan.knime.gasic.masic.MasicRowBuilder;
+
+/**
+ * Adds the reads of a masic file to a KNIME table.
+ * 
+ * @author Stephan Aiche
+ */
+public final class ContainerRowBuilder extends MasicRowBuilder<DataCell> {
+
+    private final BufferedDataContainer container;
+
+    /**
+     * @param numGenomes
+     *            The number of genomes.
+     * @param withSourceGenome
+     *            True if the rows start with the source genome.
+     * @param container
+     *            The container receiving the rows.
+     */
+    public ContainerRowBuilder(final int numGenomes,
+            final boolean withSourceGenome,
+            final BufferedDataContainer container) {
+        super(numGenomes, withSourceGenome);
+        this.container = container;
+    }
+
+    @Override
+    protected DataCell[] createCells(final int length) {
+        return new DataCell[length];
+    }
+
+    @Override
+    protected DataCell createStringCell(final String value) {
+        return new StringCell(value);
+    }
+
+    @Override
+    protected DataCell getTrue() {
+        return BooleanCell.TRUE;
+    }
+
+    @Override
+    protected DataCell getFalse() {
+        return BooleanCell.FALSE;
+    }
+
+    @Override
+    protected void addRow(final String key, final DataCell[] cells) {
+        container.addRowToTable(new DefaultRow(new RowKey(key), cells));
+    }
+}
@@ -34,17 +34,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.List;
 
-import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
-import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
-import org.knime.core.data.RowKey;
 import org.knime.core.data.def.BooleanCell;
-import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.data.uri.IURIPortObject;
 import org.knime.core.node.BufferedDataContainer;
@@ -61,6 +56,8 @@ import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
 
+import de.seqan.knime.gasic.masic.MasicReader;
+
 /**
  * This is the model implementation of GASiCReader. Reads abbundance values from
  * data files into a read abbundance table.
@@ -69,17 +66,10 @@ import org.knime.core.node.port.PortType;
  */
 public class GASiCReaderNodeModel extends NodeModel {
 
-    private static final String GENOME_PREFIX = ">";
-
     // the logger instance
     private static final NodeLogger logger = NodeLogger
             .getLogger(GASiCReaderNodeModel.class);
 
-    /**
-     * The TSV separator.
-     */
-    private static final String SEPARATOR = "\t";
-
     /**
      * Static method that provides the incoming {@link PortType}s.
      * 
@@ -115,48 +105,26 @@ public class GASiCReaderNodeModel extends NodeModel {
         File masicFile = new File(((IURIPortObject) inData[0]).getURIContents()
                 .get(0).getURI());
 
-        BufferedReader brReader = null;
-        List<String> genomes = new ArrayList<String>();
+        MasicReader reader = null;
         BufferedDataContainer container = null;
         try {
-            // read the data and fill the table
-            brReader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(masicFile)));
-
-            // 1st line numGenomes\tnumReads
-            String line = brReader.readLine();
-            String[] tokens = line.trim().split(SEPARATOR, -1);
-            if (tokens.length != 2)
-                throw new Exception(
-                        "Invalid masic file. First line should be #Genomes\t#Reads.");
-
-            int numGenomes = Integer.parseInt(tokens[0]);
-            int numReads = Integer.parseInt(tokens[1]);
-
-            // read header
-            while ((line = brReader.readLine()) != null) {
-                if (!line.startsWith(GENOME_PREFIX))
-                    break;
-                genomes.add(line.substring(1).trim());
-            }
-
-            if (genomes.size() != numGenomes)
-                throw new Exception("Invalid masic file header. " + numGenomes
-                        + " were announced but we found " + genomes.size());
+            // read the header, the data is parsed line by line
+            reader = new MasicReader(new BufferedReader(new InputStreamReader(
+                    new FileInputStream(masicFile))));
+            final int numReads = reader.getNumReads();
 
             // create table spec and container
             DataTableSpec outputSpec = new DataTableSpec(
-                    createTableSpec(genomes));
+                    createTableSpec(reader.getGenomes()));
             container = exec.createDataContainer(outputSpec);
+            ContainerRowBuilder rows = new ContainerRowBuilder(
+                    reader.getNumGenomes(), false, container);
 
             int rowIdx = 1;
 
-            // put first line into container
-            fillRowFromLine(rowIdx++, line, numGenomes, container);
-
             // fill container
-            while ((line = brReader.readLine()) != null) {
-                fillRowFromLine(rowIdx++, line, numGenomes, container);
+            while (reader.next()) {
+                rows.addRow(rowIdx++, null, reader);
 
                 // we update only every 100th read
                 if (rowIdx % 100 == 0) {
@@ -170,8 +138,8 @@ public class GASiCReaderNodeModel extends NodeModel {
             logger.error(ex.getMessage());
             throw ex;
         } finally {
-            if (brReader != null)
-                brReader.close();
+            if (reader != null)
+                reader.close();
             if (container != null)
                 container.close();
         }
@@ -180,34 +148,6 @@ public class GASiCReaderNodeModel extends NodeModel {
         return new BufferedDataTable[] { out };
     }
 
-    private void fillRowFromLine(int rowIdx, String line, int numGenomes,
-            BufferedDataContainer container) {
-        String[] tokens = line.trim().split(SEPARATOR, -1);
-        // we skip empty lines
-        if (tokens.length == 0)
-            return;
-
-        RowKey key = new RowKey("Row " + rowIdx);
-
-        DataCell[] cells = new DataCell[1 + numGenomes];
-
-        // the first is always the read name
-        cells[0] = new StringCell(tokens[0]);
-
-        // initialize the row
-        for (int i = 0; i < numGenomes; ++i) {
-            cells[i + 1] = BooleanCell.FALSE;
-        }
-
-        // update those genomes that were mapped
-        for (int i = 1; i < tokens.length; ++i) {
-            cells[Integer.parseInt(tokens[i]) + 1] = BooleanCell.TRUE;
-        }
-
-        DataRow row = new DefaultRow(key, cells);
-        container.addRowToTable(row);
-    }
-
     private DataColumnSpec[] createTableSpec(List<String> genomes) {
         DataColumnSpec[] columnsSpecs = new DataColumnSpec[1 + genomes.size()];
 
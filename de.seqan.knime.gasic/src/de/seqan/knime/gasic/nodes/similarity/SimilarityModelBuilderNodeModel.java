@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.similarity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.DataTableRowInput;
+
+import de.seqan.knime.gasic.core.MappingMatrix;
+import de.seqan.knime.gasic.core.ResamplingStrategy;
+import de.seqan.knime.gasic.core.SimilarityIndex;
+import de.seqan.knime.gasic.core.SimilarityModel;
+import de.seqan.knime.gasic.nodes.gasic.MappingTables;
+import de.seqan.knime.gasic.port.SimilarityModelPortObject;
+import de.seqan.knime.gasic.port.SimilarityModelPortObjectSpec;
+
+/**
+ * This is the model implementation of the similarity model builder. Counts
+ * the simulated mapping information once into a similarity model that is
+ * reused by the GASiC (Similarity Model) node.
+ * 
+ * @author Stephan Aiche
+ */
+public class SimilarityModelBuilderNodeModel extends NodeModel {
+
+    static final String CFG_NUM_REPLICATES = "num_replicates";
+    static final int DEFAULT_NUM_REPLICATES = 100;
+
+    private final SettingsModelIntegerBounded m_num_replicates = new SettingsModelIntegerBounded(
+            CFG_NUM_REPLICATES, DEFAULT_NUM_REPLICATES, 0, Integer.MAX_VALUE);
+
+    // //////////
+    static final String CFG_RESAMPLING = "resampling";
+    static final String DEFAULT_RESAMPLING = ResamplingStrategy.MULTINOMIAL
+            .name();
+
+    private final SettingsModelString m_resampling = new SettingsModelString(
+            CFG_RESAMPLING, DEFAULT_RESAMPLING);
+
+    // //////////
+    static final String CFG_USE_SEED = "use_seed";
+    static final boolean DEFAULT_USE_SEED = false;
+
+    private final SettingsModelBoolean m_use_seed = new SettingsModelBoolean(
+            CFG_USE_SEED, DEFAULT_USE_SEED);
+
+    static final String CFG_SEED = "seed";
+    static final int DEFAULT_SEED = 42;
+
+    private final SettingsModelInteger m_seed = new SettingsModelInteger(
+            CFG_SEED, DEFAULT_SEED);
+
+    // //////////
+    static final String CFG_INDEX_FILE = "similarity_index";
+    static final String DEFAULT_INDEX_FILE = "";
+
+    private final SettingsModelString m_index_file = new SettingsModelString(
+            CFG_INDEX_FILE, DEFAULT_INDEX_FILE);
+
+    // the logger instance
+    private static final NodeLogger logger = NodeLogger
+            .getLogger(SimilarityModelBuilderNodeModel.class);
+
+    /**
+     * Static method that provides the incoming {@link PortType}s.
+     * 
+     * @return The incoming {@link PortType}s of this node.
+     */
+    private static PortType[] getIncomingPorts() {
+        return new PortType[] { BufferedDataTable.TYPE };
+    }
+
+    /**
+     * Static method that provides the outgoing {@link PortType}s.
+     * 
+     * @return The outgoing {@link PortType}s of this node.
+     */
+    private static PortType[] getOutgoingPorts() {
+        return new PortType[] { SimilarityModelPortObject.TYPE };
+    }
+
+    /**
+     * Constructor for the node model.
+     */
+    protected SimilarityModelBuilderNodeModel() {
+        super(getIncomingPorts(), getOutgoingPorts());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObject[] execute(final PortObject[] inData,
+            final ExecutionContext exec) throws Exception {
+        final BufferedDataTable table = (BufferedDataTable) inData[0];
+        final DataTableSpec spec = table.getDataTableSpec();
+        final int numGenomes = MappingTables.numberOfBoolCols(spec);
+
+        exec.setMessage("Reading simulated mapping information");
+        MappingMatrix simulations = MappingTables.getSimulationMatrix(
+                new DataTableRowInput(table), numGenomes,
+                table.getRowCount(), false);
+        SimilarityModel model;
+        try {
+            exec.checkCanceled();
+            exec.setMessage("Drawing " + m_num_replicates.getIntValue()
+                    + " bootstrap replicates");
+            final long seed = (m_use_seed.getBooleanValue() ? new Random(
+                    m_seed.getIntValue()) : new Random()).nextLong();
+            model = SimilarityModel.create(
+                    MappingTables.getGenomeNames(spec, numGenomes),
+                    simulations, m_num_replicates.getIntValue(),
+                    ResamplingStrategy.valueOf(m_resampling.getStringValue()),
+                    seed);
+        } finally {
+            simulations.close();
+        }
+        logger.info("Similarity model of " + model.getNumGenomes()
+                + " genomes with " + model.getNumReplicates()
+                + " bootstrap replicates (" + model.getSizeInBytes()
+                + " bytes)");
+
+        final String indexFile = m_index_file.getStringValue().trim();
+        if (!indexFile.isEmpty()) {
+            exec.setMessage("Writing similarity index");
+            SimilarityIndex.write(new File(indexFile), model);
+        }
+
+        return new PortObject[] { new SimilarityModelPortObject(model) };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        // the reader nodes only know their columns after the execution
+        final DataTableSpec spec = (DataTableSpec) inSpecs[0];
+        if (spec == null) {
+            return new PortObjectSpec[] { null };
+        }
+        return new PortObjectSpec[] { new SimilarityModelPortObjectSpec(
+                MappingTables.getGenomeNames(spec,
+                        MappingTables.numberOfBoolCols(spec))) };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        m_num_replicates.saveSettingsTo(settings);
+        m_resampling.saveSettingsTo(settings);
+        m_use_seed.saveSettingsTo(settings);
+        m_seed.saveSettingsTo(settings);
+        m_index_file.saveSettingsTo(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_num_replicates.loadSettingsFrom(settings);
+        m_resampling.loadSettingsFrom(settings);
+        m_use_seed.loadSettingsFrom(settings);
+        m_seed.loadSettingsFrom(settings);
+        if (settings.containsKey(CFG_INDEX_FILE)) {
+            m_index_file.loadSettingsFrom(settings);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_num_replicates.validateSettings(settings);
+        m_resampling.validateSettings(settings);
+        m_use_seed.validateSettings(settings);
+        m_seed.validateSettings(settings);
+        if (settings.containsKey(CFG_INDEX_FILE)) {
+            m_index_file.validateSettings(settings);
+        }
+
+        String resampling = settings.getString(CFG_RESAMPLING);
+        if (!ResamplingStrategy.MULTINOMIAL.name().equals(resampling)
+                && !ResamplingStrategy.POISSON.name().equals(resampling)) {
+            throw new InvalidSettingsException("Unknown resampling: "
+                    + resampling);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.similarity;
+
+import javax.swing.JFileChooser;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+/**
+ * <code>NodeDialog</code> for the "GASiC Similarity Model Updater" Node.
+ * 
+ * @author Stephan Aiche
+ */
+public class SimilarityModelUpdaterNodeDialog extends DefaultNodeSettingsPane {
+
+    /**
+     * New pane for configuring the similarity model updater.
+     */
+    protected SimilarityModelUpdaterNodeDialog() {
+        super();
+
+        createNewGroup("Obsolete genomes:");
+        addDialogComponent(new DialogComponentString(new SettingsModelString(
+                SimilarityModelUpdaterNodeModel.CFG_REMOVED_GENOMES,
+                SimilarityModelUpdaterNodeModel.DEFAULT_REMOVED_GENOMES),
+                "Genomes to remove (comma separated):"));
+
+        createNewGroup("Similarity index (optional):");
+        addDialogComponent(new DialogComponentFileChooser(
+                new SettingsModelString(
+                        SimilarityModelUpdaterNodeModel.CFG_INDEX_FILE,
+                        SimilarityModelUpdaterNodeModel.DEFAULT_INDEX_FILE),
+                "gasic_similarity_index", JFileChooser.SAVE_DIALOG, false,
+                ".gsi"));
+    }
+}
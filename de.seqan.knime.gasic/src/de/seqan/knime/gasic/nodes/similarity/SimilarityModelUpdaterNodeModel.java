@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.nodes.similarity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.DataTableRowInput;
+
+import de.seqan.knime.gasic.core.MappingMatrix;
+import de.seqan.knime.gasic.core.SimilarityIndex;
+import de.seqan.knime.gasic.core.SimilarityModel;
+import de.seqan.knime.gasic.nodes.gasic.MappingTables;
+import de.seqan.knime.gasic.port.SimilarityModelPortObject;
+import de.seqan.knime.gasic.port.SimilarityModelPortObjectSpec;
+
+/**
+ * This is the model implementation of the similarity model updater. Adds the
+ * genomes of a simulated mapping table to a similarity model and drops
+ * obsolete genomes, without counting the simulated reads of the genomes the
+ * model already knows again.
+ * 
+ * @author Stephan Aiche
+ */
+public class SimilarityModelUpdaterNodeModel extends NodeModel {
+
+    static final String CFG_REMOVED_GENOMES = "removed_genomes";
+    static final String DEFAULT_REMOVED_GENOMES = "";
+
+    private final SettingsModelString m_removed_genomes = new SettingsModelString(
+            CFG_REMOVED_GENOMES, DEFAULT_REMOVED_GENOMES);
+
+    // //////////
+    static final String CFG_INDEX_FILE = "similarity_index";
+    static final String DEFAULT_INDEX_FILE = "";
+
+    private final SettingsModelString m_index_file = new SettingsModelString(
+            CFG_INDEX_FILE, DEFAULT_INDEX_FILE);
+
+    // the logger instance
+    private static final NodeLogger logger = NodeLogger
+            .getLogger(SimilarityModelUpdaterNodeModel.class);
+
+    /**
+     * Static method that provides the incoming {@link PortType}s.
+     * 
+     * @return The incoming {@link PortType}s of this node.
+     */
+    private static PortType[] getIncomingPorts() {
+        return new PortType[] { SimilarityModelPortObject.TYPE,
+                BufferedDataTable.TYPE_OPTIONAL };
+    }
+
+    /**
+     * Static method that provides the outgoing {@link PortType}s.
+     * 
+     * @return The outgoing {@link PortType}s of this node.
+     */
+    private static PortType[] getOutgoingPorts() {
+        return new PortType[] { SimilarityModelPortObject.TYPE };
+    }
+
+    /**
+     * Constructor for the node model.
+     */
+    protected SimilarityModelUpdaterNodeModel() {
+        super(getIncomingPorts(), getOutgoingPorts());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObject[] execute(final PortObject[] inData,
+            final ExecutionContext exec) throws Exception {
+        final SimilarityModel model = ((SimilarityModelPortObject) inData[0])
+                .getModel();
+        final Set<String> removed = getRemovedGenomes();
+
+        SimilarityModel updated;
+        final BufferedDataTable table = (BufferedDataTable) inData[1];
+        if (table == null) {
+            updated = model.update(null, null, null, removed);
+        } else {
+            final DataTableSpec spec = table.getDataTableSpec();
+            final int numGenomes = MappingTables.numberOfBoolCols(spec);
+
+            exec.setMessage("Reading simulated mapping information");
+            List<String> sources = new ArrayList<String>();
+            MappingMatrix simulations = MappingTables.getSimulationMatrix(
+                    new DataTableRowInput(table), numGenomes,
+                    table.getRowCount(), false, sources);
+            try {
+                exec.checkCanceled();
+                exec.setMessage("Counting the added genomes");
+                updated = model.update(
+                        MappingTables.getGenomeNames(spec, numGenomes),
+                        sources.toArray(new String[sources.size()]),
+                        simulations, removed);
+            } finally {
+                simulations.close();
+            }
+
+            // genomes of the model without simulated reads in the table keep
+            // their rows, their reads are assumed to miss the added genomes
+            final int numAdded = updated.getNumGenomes()
+                    - (model.getNumGenomes() - removed.size());
+            int numUnmapped = 0;
+            for (String name : model.getGenomeNames()) {
+                numUnmapped += (!removed.contains(name)
+                        && !sources.contains(name) ? 1 : 0);
+            }
+            if (numAdded > 0 && numUnmapped > 0) {
+                setWarningMessage(numUnmapped
+                        + " genomes of the model have no simulated reads in the table, "
+                        + "their similarity to the added genomes is assumed to be 0.");
+            }
+        }
+        logger.info("Similarity model updated from " + model.getNumGenomes()
+                + " to " + updated.getNumGenomes() + " genomes ("
+                + removed.size() + " removed)");
+
+        final String indexFile = m_index_file.getStringValue().trim();
+        if (!indexFile.isEmpty()) {
+            exec.setMessage("Writing similarity index");
+            SimilarityIndex.write(new File(indexFile), updated);
+        }
+
+        return new PortObject[] { new SimilarityModelPortObject(updated) };
+    }
+
+    /**
+     * @return The names of the genomes to remove.
+     */
+    private Set<String> getRemovedGenomes() {
+        Set<String> removed = new LinkedHashSet<String>();
+        for (String name : m_removed_genomes.getStringValue().split(",")) {
+            if (!name.trim().isEmpty()) {
+                removed.add(name.trim());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        final SimilarityModelPortObjectSpec spec = (SimilarityModelPortObjectSpec) inSpecs[0];
+        if (spec == null) {
+            return new PortObjectSpec[] { null };
+        }
+        List<String> kept = new ArrayList<String>(Arrays.asList(spec
+                .getGenomeNames()));
+        for (String name : getRemovedGenomes()) {
+            if (!kept.remove(name)) {
+                throw new InvalidSettingsException("The genome " + name
+                        + " is not part of the similarity model.");
+            }
+        }
+        // the added genomes are only known once the simulated reads are read
+        if (inSpecs[1] != null) {
+            return new PortObjectSpec[] { null };
+        }
+        return new PortObjectSpec[] { new SimilarityModelPortObjectSpec(
+                kept.toArray(new String[kept.size()])) };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        m_removed_genomes.saveSettingsTo(settings);
+        m_index_file.saveSettingsTo(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_removed_genomes.loadSettingsFrom(settings);
+        m_index_file.loadSettingsFrom(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_removed_genomes.validateSettings(settings);
+        m_index_file.validateSettings(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+}
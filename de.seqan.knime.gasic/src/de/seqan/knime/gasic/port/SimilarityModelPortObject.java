@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.port;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+
+import javax.swing.JComponent;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortObjectZipInputStream;
+import org.knime.core.node.port.PortObjectZipOutputStream;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.port.PortTypeRegistry;
+
+import de.seqan.knime.gasic.core.SimilarityModel;
+
+/**
+ * Port object of a {@link SimilarityModel}, so the similarity information of
+ * a reference set is computed once and reused by every GASiC node estimating
+ * against it. The model is saved in its compact binary form.
+ * 
+ * @author Stephan Aiche
+ */
+public class SimilarityModelPortObject implements PortObject {
+
+    /**
+     * The type of this port.
+     */
+    public static final PortType TYPE = PortTypeRegistry.getInstance()
+            .getPortType(SimilarityModelPortObject.class);
+
+    /**
+     * The type of an optional port.
+     */
+    public static final PortType TYPE_OPTIONAL = PortTypeRegistry
+            .getInstance().getPortType(SimilarityModelPortObject.class, true);
+
+    /**
+     * Serializer of the port object.
+     */
+    public static final class Serializer extends
+            PortObjectSerializer<SimilarityModelPortObject> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void savePortObject(final SimilarityModelPortObject portObject,
+                final PortObjectZipOutputStream out, final ExecutionMonitor exec)
+                throws IOException, CanceledExecutionException {
+            out.putNextEntry(new ZipEntry(ENTRY_NAME));
+            // the zip stream is closed by the caller
+            DataOutputStream data = new DataOutputStream(
+                    new BufferedOutputStream(out));
+            portObject.m_model.write(data);
+            data.flush();
+            out.closeEntry();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public SimilarityModelPortObject loadPortObject(
+                final PortObjectZipInputStream in, final PortObjectSpec spec,
+                final ExecutionMonitor exec) throws IOException,
+                CanceledExecutionException {
+            ZipEntry entry = in.getNextEntry();
+            if (entry == null || !ENTRY_NAME.equals(entry.getName())) {
+                throw new IOException("Expected zip entry " + ENTRY_NAME
+                        + ", got " + (entry == null ? "none" : entry.getName()));
+            }
+            return new SimilarityModelPortObject(
+                    SimilarityModel.read(new DataInputStream(
+                            new BufferedInputStream(in))));
+        }
+    }
+
+    private static final String ENTRY_NAME = "similarity_model.bin";
+
+    private final SimilarityModel m_model;
+
+    /**
+     * @param model
+     *            The similarity model.
+     */
+    public SimilarityModelPortObject(final SimilarityModel model) {
+        m_model = model;
+    }
+
+    /**
+     * @return The similarity model.
+     */
+    public SimilarityModel getModel() {
+        return m_model;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSummary() {
+        return m_model.getNumGenomes() + " genomes, "
+                + m_model.getNumReplicates() + " bootstrap replicates";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SimilarityModelPortObjectSpec getSpec() {
+        return new SimilarityModelPortObjectSpec(m_model.getGenomeNames());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JComponent[] getViews() {
+        return new JComponent[0];
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.port;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContentRO;
+import org.knime.core.node.ModelContentWO;
+import org.knime.core.node.port.AbstractSimplePortObjectSpec;
+
+/**
+ * Spec of a {@link SimilarityModelPortObject}: the names of the genomes of
+ * the model.
+ * 
+ * @author Stephan Aiche
+ */
+public class SimilarityModelPortObjectSpec extends AbstractSimplePortObjectSpec {
+
+    /**
+     * Serializer of the spec.
+     */
+    public static final class Serializer extends
+            AbstractSimplePortObjectSpecSerializer<SimilarityModelPortObjectSpec> {
+    }
+
+    private static final String CFG_GENOMES = "genomes";
+
+    private String[] m_genomes;
+
+    /**
+     * Empty constructor, required for loading the spec.
+     */
+    public SimilarityModelPortObjectSpec() {
+        m_genomes = new String[0];
+    }
+
+    /**
+     * @param genomes
+     *            The names of the genomes of the model.
+     */
+    public SimilarityModelPortObjectSpec(final String[] genomes) {
+        m_genomes = genomes.clone();
+    }
+
+    /**
+     * @return The names of the genomes of the model.
+     */
+    public String[] getGenomeNames() {
+        return m_genomes.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void save(final ModelContentWO model) {
+        model.addStringArray(CFG_GENOMES, m_genomes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void load(final ModelContentRO model)
+            throws InvalidSettingsException {
+        m_genomes = model.getStringArray(CFG_GENOMES);
+    }
+}
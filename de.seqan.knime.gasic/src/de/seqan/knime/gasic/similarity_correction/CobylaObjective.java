@@ -41,14 +41,48 @@ import com.cureos.numerics.Calcfc;
  */
 public final class CobylaObjective implements Calcfc {
     /**
-     * The similarity matrix
+     * The similarity matrix (row-major), either in double or in single
+     * precision
      */
-    private final SimpleMatrix similarityMatrix;
-    private final SimpleMatrix reads;
+    private final double[] similarityMatrix;
+    private final float[] singleSimilarityMatrix;
+    private final int numRows;
+    private final int numCols;
+    private final double[] reads;
+    /**
+     * Upper bound of the sum of all abundances.
+     */
+    private final double sumBound;
 
     public CobylaObjective(SimpleMatrix sm, SimpleMatrix reads) {
-        similarityMatrix = sm;
-        this.reads = reads;
+        this(sm, reads, 1.0);
+    }
+
+    public CobylaObjective(SimpleMatrix sm, SimpleMatrix reads,
+            double sumBound) {
+        similarityMatrix = sm.getMatrix().getData();
+        singleSimilarityMatrix = null;
+        numRows = sm.numRows();
+        numCols = sm.numCols();
+        this.reads = reads.getMatrix().getData();
+        this.sumBound = sumBound;
+    }
+
+    /**
+     * Objective on a similarity matrix stored in single precision, which can
+     * be shared by several objectives.
+     * 
+     * @param sm
+     *            The row-major similarity matrix.
+     */
+    CobylaObjective(float[] sm, int numRows, int numCols, SimpleMatrix reads,
+            double sumBound) {
+        similarityMatrix = null;
+        singleSimilarityMatrix = sm;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.reads = reads.getMatrix().getData();
+        this.sumBound = sumBound;
     }
 
     @Override
@@ -60,8 +94,8 @@ public final class CobylaObjective implements Calcfc {
             con[i] = x[i];
         }
 
-        // sum <= 1 constraint
-        con[numVariables] = 1.0 - sum(x);
+        // sum <= sumBound constraint
+        con[numVariables] = sumBound - sum(x);
 
         return computeObjectiveValue(x);
     }
@@ -73,22 +107,19 @@ public final class CobylaObjective implements Calcfc {
      * @return
      */
     public double computeObjectiveValue(double[] x) {
-        // convert x to SimpleMatrix
-        SimpleMatrix smX = new SimpleMatrix(similarityMatrix.numRows(), 1,
-                true, x);
-
-        // compute norm
-        return norm(similarityMatrix.mult(smX).minus(reads));
+        if (singleSimilarityMatrix != null) {
+            return DenseKernels.residual(singleSimilarityMatrix, numRows,
+                    numCols, x, reads, null);
+        }
+        return DenseKernels.residual(similarityMatrix, numRows, numCols, x,
+                reads, null);
     }
 
-    private double norm(final SimpleMatrix sm) {
-        // we assume that this is a vector
-        double n = 0.0;
-
-        for (int i = 0; i < sm.numRows(); ++i) {
-            n += sm.get(i, 0) * sm.get(i, 0);
-        }
-        return n;
+    /**
+     * @return True if the similarity matrix is stored in single precision.
+     */
+    boolean isSinglePrecision() {
+        return singleSimilarityMatrix != null;
     }
 
     private double sum(double[] x) {
@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Bounded LRU cache for {@link LassoResult}s keyed by a fingerprint of the
+ * problem (similarity matrix, read vector, warm start and solver settings).
+ * Optionally, results are also stored in a directory on disk, so they survive
+ * the current process.
+ * 
+ * @author aiche
+ */
+public final class CorrectionCache {
+
+    private static final String FILE_SUFFIX = ".gasic-result";
+    private static final int FILE_VERSION = 2;
+
+    private final Map<String, LassoResult> memory;
+    private final File directory;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong diskHits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * @param capacity
+     *            Maximal number of results kept in memory.
+     * @param directory
+     *            Directory for the on-disk tier or null to keep results only
+     *            in memory.
+     */
+    public CorrectionCache(final int capacity, final File directory) {
+        this.directory = directory;
+        memory = new LinkedHashMap<String, LassoResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, LassoResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Computes the key of a problem.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param warmStart
+     *            The warm start or null.
+     * @param settings
+     *            Description of all solver settings that influence the
+     *            result, see {@link LassoCorrection#getSettingsFingerprint()}.
+     * @return The hex encoded SHA-256 fingerprint of the problem.
+     */
+    public static String fingerprint(final SimpleMatrix sm,
+            final SimpleMatrix reads, final double[] warmStart,
+            final String settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(settings.getBytes());
+        update(digest, sm.numRows(), sm.numCols(), sm.getMatrix().getData());
+        update(digest, reads.numRows(), reads.numCols(), reads.getMatrix()
+                .getData());
+        if (warmStart != null) {
+            update(digest, warmStart.length, 1, warmStart);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, int rows, int cols,
+            double[] data) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 * rows * cols);
+        buffer.putInt(rows).putInt(cols);
+        for (int i = 0; i < rows * cols; ++i) {
+            buffer.putDouble(data[i]);
+        }
+        digest.update(buffer.array());
+    }
+
+    /**
+     * Looks up a result, first in memory then on disk.
+     * 
+     * @param key
+     *            The fingerprint of the problem.
+     * @return The cached result or null.
+     */
+    public LassoResult get(final String key) {
+        LassoResult result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        result = readFromDisk(key);
+        if (result != null) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                memory.put(key, result);
+            }
+            return result;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a result in memory and, if configured, on disk.
+     * 
+     * @param key
+     *            The fingerprint of the problem.
+     * @param result
+     *            The result.
+     * @throws IOException
+     *             If writing the result to disk fails.
+     */
+    public void put(final String key, final LassoResult result)
+            throws IOException {
+        synchronized (memory) {
+            memory.put(key, result);
+        }
+        writeToDisk(key, result);
+    }
+
+    private LassoResult readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, key + FILE_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            // version 1 entries have no objective gap
+            final int version = in.readInt();
+            if (version < 1 || version > FILE_VERSION) {
+                return null;
+            }
+            double objective = in.readDouble();
+            int evaluations = in.readInt();
+            long time = in.readLong();
+            double[] solution = new double[in.readInt()];
+            for (int i = 0; i < solution.length; ++i) {
+                solution[i] = in.readDouble();
+            }
+            double objectiveGap = (version >= 2 ? in.readDouble()
+                    : Double.NaN);
+            return new LassoResult(solution, objective, evaluations, time,
+                    objectiveGap);
+        } catch (IOException e) {
+            // a broken entry is treated like a missing one
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeToDisk(String key, LassoResult result)
+            throws IOException {
+        if (directory == null || result.getSolution() == null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory "
+                    + directory.getAbsolutePath());
+        }
+
+        // write to a temporary file first, so concurrent readers never see a
+        // partial entry
+        File tmp = File.createTempFile(key, ".tmp", directory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            double[] solution = result.getSolution();
+            out.writeInt(FILE_VERSION);
+            out.writeDouble(result.getObjective());
+            out.writeInt(result.getEvaluations());
+            out.writeLong(result.getTime());
+            out.writeInt(solution.length);
+            for (double d : solution) {
+                out.writeDouble(d);
+            }
+            out.writeDouble(result.getObjectiveGap());
+        } finally {
+            out.close();
+        }
+
+        File file = new File(directory, key + FILE_SUFFIX);
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    private static void closeQuietly(DataInputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing we can do
+            }
+        }
+    }
+
+    /**
+     * @return Number of lookups answered from memory.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of lookups answered from disk.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return Number of lookups that were not answered.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all results from memory (the on-disk tier is kept).
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+}
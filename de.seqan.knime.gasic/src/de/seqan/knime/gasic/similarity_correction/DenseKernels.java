@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.Arrays;
+
+/**
+ * Dense kernels used in the inner loops of the solvers. All matrices are
+ * stored row-major in a plain array, as used by EJML, and all kernels work on
+ * caller provided buffers, so no memory is allocated per objective
+ * evaluation. The loops are unrolled by four with independent accumulators,
+ * which lets the JIT overlap the floating point operations.
+ * 
+ * The single precision variants read matrices stored as float, which halves
+ * memory and memory bandwidth, but accumulate in double precision.
+ * 
+ * @author aiche
+ */
+final class DenseKernels {
+
+    private DenseKernels() {
+    }
+
+    /**
+     * Computes the dot product of <code>x</code> with the
+     * <code>length</code> entries of <code>a</code> starting at
+     * <code>offset</code>, e.g., a row of a row-major matrix.
+     */
+    static double dot(final double[] a, final int offset, final double[] x,
+            final int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int j = 0;
+        for (final int end = length - 3; j < end; j += 4) {
+            s0 += a[offset + j] * x[j];
+            s1 += a[offset + j + 1] * x[j + 1];
+            s2 += a[offset + j + 2] * x[j + 2];
+            s3 += a[offset + j + 3] * x[j + 3];
+        }
+        for (; j < length; ++j) {
+            s0 += a[offset + j] * x[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Computes <code>out = A x</code>.
+     * 
+     * @param a
+     *            The rows x cols matrix A (row-major).
+     */
+    static void matvec(final double[] a, final int rows, final int cols,
+            final double[] x, final double[] out) {
+        for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+            out[i] = dot(a, offset, x, cols);
+        }
+    }
+
+    /**
+     * Computes <code>out = A^T v</code> without transposing A, i.e., by
+     * accumulating scaled rows.
+     * 
+     * @param a
+     *            The rows x cols matrix A (row-major).
+     */
+    static void transposeMatvec(final double[] a, final int rows,
+            final int cols, final double[] v, final double[] out) {
+        Arrays.fill(out, 0, cols, 0.0);
+        for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+            final double vi = v[i];
+            if (vi == 0.0) {
+                continue;
+            }
+            int j = 0;
+            for (final int end = cols - 3; j < end; j += 4) {
+                out[j] += a[offset + j] * vi;
+                out[j + 1] += a[offset + j + 1] * vi;
+                out[j + 2] += a[offset + j + 2] * vi;
+                out[j + 3] += a[offset + j + 3] * vi;
+            }
+            for (; j < cols; ++j) {
+                out[j] += a[offset + j] * vi;
+            }
+        }
+    }
+
+    /**
+     * Computes the residual <code>out = A x - b</code> and returns its squared
+     * norm.
+     * 
+     * @param out
+     *            Buffer for the residual, may be null if only the norm is
+     *            needed.
+     */
+    static double residual(final double[] a, final int rows, final int cols,
+            final double[] x, final double[] b, final double[] out) {
+        double norm = 0.0;
+        for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+            final double r = dot(a, offset, x, cols) - b[i];
+            if (out != null) {
+                out[i] = r;
+            }
+            norm += r * r;
+        }
+        return norm;
+    }
+
+    /**
+     * Computes the Gram matrix <code>A^T A</code> (cols x cols, row-major).
+     */
+    static double[] gram(final double[] a, final int rows, final int cols) {
+        double[] g = new double[cols * cols];
+        for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+            for (int j = 0; j < cols; ++j) {
+                final double aij = a[offset + j];
+                if (aij == 0.0) {
+                    continue;
+                }
+                // upper triangle only, mirrored below
+                final int gOffset = j * cols;
+                for (int k = j; k < cols; ++k) {
+                    g[gOffset + k] += aij * a[offset + k];
+                }
+            }
+        }
+        for (int j = 0; j < cols; ++j) {
+            for (int k = j + 1; k < cols; ++k) {
+                g[k * cols + j] = g[j * cols + k];
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Computes the gradient <code>out = G x - c</code> of
+     * <code>1/2 ||A x - b||^2</code> from the Gram matrix
+     * <code>G = A^T A</code> and <code>c = A^T b</code>. Costs O(n^2)
+     * independent of the number of rows of A.
+     */
+    static void gramUpdate(final double[] g, final int n, final double[] x,
+            final double[] c, final double[] out) {
+        for (int j = 0, offset = 0; j < n; ++j, offset += n) {
+            out[j] = dot(g, offset, x, n) - c[j];
+        }
+    }
+
+    /**
+     * Converts the first length entries of a to single precision.
+     */
+    static float[] toFloat(final double[] a, final int length) {
+        float[] f = new float[length];
+        for (int i = 0; i < length; ++i) {
+            f[i] = (float) a[i];
+        }
+        return f;
+    }
+
+    /**
+     * Single precision variant of {@link #dot(double[], int, double[], int)}.
+     */
+    static double dot(final float[] a, final int offset, final double[] x,
+            final int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int j = 0;
+        for (final int end = length - 3; j < end; j += 4) {
+            s0 += a[offset + j] * x[j];
+            s1 += a[offset + j + 1] * x[j + 1];
+            s2 += a[offset + j + 2] * x[j + 2];
+            s3 += a[offset + j + 3] * x[j + 3];
+        }
+        for (; j < length; ++j) {
+            s0 += a[offset + j] * x[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Single precision variant of
+     * {@link #residual(double[], int, int, double[], double[], double[])}.
+     */
+    static double residual(final float[] a, final int rows, final int cols,
+            final double[] x, final double[] b, final double[] out) {
+        double norm = 0.0;
+        for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+            final double r = dot(a, offset, x, cols) - b[i];
+            if (out != null) {
+                out[i] = r;
+            }
+            norm += r * r;
+        }
+        return norm;
+    }
+
+    /**
+     * Computes the Gram matrix <code>A^T A</code> (cols x cols, row-major) in
+     * single precision. Every row of the Gram matrix is accumulated in double
+     * precision before it is stored.
+     */
+    static float[] gramSingle(final double[] a, final int rows,
+            final int cols) {
+        float[] g = new float[cols * cols];
+        double[] row = new double[cols];
+        for (int j = 0; j < cols; ++j) {
+            Arrays.fill(row, j, cols, 0.0);
+            for (int i = 0, offset = 0; i < rows; ++i, offset += cols) {
+                final double aij = a[offset + j];
+                if (aij == 0.0) {
+                    continue;
+                }
+                for (int k = j; k < cols; ++k) {
+                    row[k] += aij * a[offset + k];
+                }
+            }
+            // upper triangle, mirrored below
+            for (int k = j; k < cols; ++k) {
+                g[j * cols + k] = (float) row[k];
+                g[k * cols + j] = (float) row[k];
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Single precision variant of
+     * {@link #gramUpdate(double[], int, double[], double[], double[])}.
+     */
+    static void gramUpdate(final float[] g, final int n, final double[] x,
+            final double[] c, final double[] out) {
+        for (int j = 0, offset = 0; j < n; ++j, offset += n) {
+            out[j] = dot(g, offset, x, n) - c[j];
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Expectation-maximization estimator of the abundances, as an alternative to
+ * the {@link LassoCorrection}. Every read is distributed across the genomes of
+ * its mapping pattern in proportion to the current abundance and mappability
+ * of the genomes. The mappability of a genome is the fraction of its
+ * simulated reads that map back to it; it corrects for genomes that only
+ * produce few mappable reads.
+ * 
+ * <pre>
+ * E-step: z_Pj = a_j m_j / sum_{k in P} a_k m_k          for j in P
+ * M-step: a_j  = (sum_P n_P z_Pj) / m_j
+ * </pre>
+ * 
+ * The E- and M-step are computed in parallel over chunks of the mapping
+ * patterns.
+ * 
+ * @author aiche
+ */
+public final class EMCorrection {
+
+    /**
+     * Lower bound of the mappability, genomes that never map back to
+     * themselves would otherwise receive infinite abundance.
+     */
+    private static final double MIN_MAPPABILITY = 1.0e-6;
+
+    /**
+     * Minimal number of patterns per parallel chunk, smaller pattern sets are
+     * processed by the calling thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 4096;
+
+    private final int maxIterations;
+    private final double tolerance;
+
+    /**
+     * Creates an estimator with at most 10000 iterations and a tolerance of
+     * 1e-10.
+     */
+    public EMCorrection() {
+        this(10000, 1.0e-10);
+    }
+
+    /**
+     * @param maxIterations
+     *            Maximal number of EM iterations.
+     * @param tolerance
+     *            The estimation stops once no abundance changes by more than
+     *            this.
+     */
+    public EMCorrection(final int maxIterations, final double tolerance) {
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @param out
+     *            Receives the estimator settings.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(maxIterations);
+        out.writeDouble(tolerance);
+    }
+
+    /**
+     * @param in
+     *            The settings written by {@link #write(DataOutput)}.
+     * @return The estimator.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public static EMCorrection read(final DataInput in) throws IOException {
+        return new EMCorrection(in.readInt(), in.readDouble());
+    }
+
+    /**
+     * Computes the mappability of every genome from the simulated reads.
+     * 
+     * @param simCounts
+     *            simCounts[i][j] is the number of simulated reads of genome i
+     *            that map to genome j.
+     * @param numSimReads
+     *            The number of simulated reads per genome.
+     * @return The fraction of simulated reads of every genome that map back
+     *         to it.
+     */
+    public static double[] getMappability(final int[][] simCounts,
+            final int numSimReads) {
+        double[] mappability = new double[simCounts.length];
+        for (int j = 0; j < simCounts.length; ++j) {
+            mappability[j] = (double) simCounts[j][j] / (double) numSimReads;
+        }
+        return mappability;
+    }
+
+    /**
+     * Computes the mappability of every genome from the number of simulated
+     * reads mapping back to their own genome, i.e., the diagonal of the
+     * similarity counts. This is all the EM needs from the simulated reads.
+     * 
+     * @param selfCounts
+     *            selfCounts[j] is the number of simulated reads of genome j
+     *            that map to genome j.
+     * @param numSimReads
+     *            The number of simulated reads per genome.
+     * @return The fraction of simulated reads of every genome that map back
+     *         to it.
+     */
+    public static double[] getMappability(final int[] selfCounts,
+            final int numSimReads) {
+        double[] mappability = new double[selfCounts.length];
+        for (int j = 0; j < selfCounts.length; ++j) {
+            mappability[j] = (double) selfCounts[j] / (double) numSimReads;
+        }
+        return mappability;
+    }
+
+    /**
+     * Estimates the abundances.
+     * 
+     * @param patterns
+     *            The compressed mapping patterns of the reads.
+     * @param mappability
+     *            The mappability of every genome.
+     * @param numReads
+     *            The total number of reads, including unmapped reads.
+     * @param warmStart
+     *            Abundances to start from, e.g., of a related problem. Can be
+     *            null.
+     * @param executor
+     *            Executor computing the chunks of patterns.
+     * @param monitor
+     *            Receives progress information and is polled for
+     *            cancellation.
+     * @param recorder
+     *            Receives the statistics of the estimation.
+     * @return The estimated abundances (fractions of all reads, the sum is at
+     *         most 1), the negative log-likelihood of the mapped reads as
+     *         objective and the number of iterations as evaluations.
+     * @throws CancellationException
+     *             If the monitor requested cancellation.
+     */
+    public LassoResult estimate(final MappingPatterns patterns,
+            final double[] mappability, final int numReads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder) {
+        return estimate(patterns, mappability, numReads, warmStart, executor,
+                monitor, recorder, LassoCorrection.NO_DEADLINE);
+    }
+
+    /**
+     * Like
+     * {@link #estimate(MappingPatterns, double[], int, double[], SolverExecutor, SolverMonitor, SolverRecorder)}
+     * but stops after the iteration during which the deadline passed. The
+     * result is flagged with {@link LassoResult#isBudgetExceeded()}.
+     * 
+     * @param deadline
+     *            The deadline in milliseconds since the epoch,
+     *            {@link LassoCorrection#NO_DEADLINE} for none.
+     */
+    public LassoResult estimate(final MappingPatterns patterns,
+            final double[] mappability, final int numReads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder,
+            final long deadline) {
+
+        final long startTime = System.currentTimeMillis();
+        final int numGenomes = patterns.getNumGenomes();
+
+        final double[] m = new double[numGenomes];
+        for (int j = 0; j < numGenomes; ++j) {
+            m[j] = Math.max(mappability[j], MIN_MAPPABILITY);
+        }
+
+        // start from the warm start or from the mapped reads of every genome
+        double[] a = new double[numGenomes];
+        if (warmStart != null) {
+            for (int j = 0; j < numGenomes; ++j) {
+                a[j] = warmStart[j] * numReads;
+            }
+        } else {
+            for (int p = 0; p < patterns.getNumPatterns(); ++p) {
+                for (int j : patterns.getGenomesUnsafe(p)) {
+                    a[j] += patterns.getCount(p);
+                }
+            }
+        }
+        normalize(a, numReads);
+
+        List<Chunk> chunks = createChunks(patterns, numGenomes,
+                executor.getNumThreads());
+
+        int iteration = 0;
+        double logLikelihood = 0.0;
+        boolean converged = false;
+        boolean budgetExceeded = false;
+        while (iteration < maxIterations && !converged) {
+            if (monitor.isCanceled()) {
+                throw new CancellationException("Solve was canceled");
+            }
+            if (iteration > 0 && deadline != LassoCorrection.NO_DEADLINE
+                    && System.currentTimeMillis() >= deadline) {
+                budgetExceeded = true;
+                break;
+            }
+
+            double[] w = new double[numGenomes];
+            for (int j = 0; j < numGenomes; ++j) {
+                w[j] = a[j] * m[j];
+            }
+
+            // E-step and accumulation of the M-step
+            double[] assigned = new double[numGenomes];
+            logLikelihood = runChunks(chunks, w, assigned, executor);
+            ++iteration;
+
+            double[] next = new double[numGenomes];
+            for (int j = 0; j < numGenomes; ++j) {
+                next[j] = assigned[j] / m[j];
+            }
+            normalize(next, numReads);
+
+            double change = 0.0;
+            for (int j = 0; j < numGenomes; ++j) {
+                change = Math.max(change, Math.abs(next[j] - a[j]));
+            }
+            a = next;
+            converged = change < tolerance;
+
+            monitor.setProgress((double) iteration / maxIterations,
+                    "EM iteration " + iteration);
+        }
+
+        // likelihood of the observed patterns, relative to all mapped reads
+        double total = 0.0;
+        for (int j = 0; j < numGenomes; ++j) {
+            total += a[j] * m[j];
+        }
+        final double objective = -logLikelihood
+                + (total > 0.0 ? patterns.getNumMapped() * Math.log(total)
+                        : 0.0);
+
+        final long time = System.currentTimeMillis() - startTime;
+        recorder.record(new RunStatistics(0, objective, iteration, time,
+                Thread.currentThread().getName(),
+                (converged ? RunStatistics.Status.CONVERGED
+                        : (budgetExceeded ? RunStatistics.Status.BUDGET_EXCEEDED
+                                : RunStatistics.Status.MAX_ITERATIONS_REACHED))));
+        return new LassoResult(a, objective, iteration, time, Double.NaN,
+                budgetExceeded);
+    }
+
+    /**
+     * Turns the estimated number of reads originating from every genome into
+     * fractions of all reads. The sum is limited to 1.
+     */
+    private static void normalize(final double[] a, final int numReads) {
+        double sum = 0.0;
+        for (double v : a) {
+            sum += v;
+        }
+        if (sum <= 0.0) {
+            return;
+        }
+        final double scale = (sum > numReads ? 1.0 / sum : 1.0 / numReads);
+        for (int j = 0; j < a.length; ++j) {
+            a[j] *= scale;
+        }
+    }
+
+    private static List<Chunk> createChunks(final MappingPatterns patterns,
+            final int numGenomes, final int numThreads) {
+        final int numPatterns = patterns.getNumPatterns();
+        final int numChunks = Math.max(1,
+                Math.min(numThreads, numPatterns / MIN_CHUNK_SIZE));
+        List<Chunk> chunks = new ArrayList<Chunk>(numChunks);
+        for (int c = 0; c < numChunks; ++c) {
+            chunks.add(new Chunk(patterns, numGenomes, (int) ((long) c
+                    * numPatterns / numChunks), (int) ((long) (c + 1)
+                    * numPatterns / numChunks)));
+        }
+        return chunks;
+    }
+
+    private static double runChunks(final List<Chunk> chunks,
+            final double[] w, final double[] assigned,
+            final SolverExecutor executor) {
+        for (Chunk chunk : chunks) {
+            chunk.setWeights(w);
+        }
+        if (chunks.size() == 1) {
+            Chunk chunk = chunks.get(0);
+            double logLikelihood = chunk.call();
+            chunk.addAssigned(assigned);
+            return logLikelihood;
+        }
+
+        double logLikelihood = 0.0;
+        try {
+            List<Future<Double>> results = executor.getExecutorService()
+                    .invokeAll(chunks);
+            for (int c = 0; c < chunks.size(); ++c) {
+                logLikelihood += results.get(c).get();
+                chunks.get(c).addAssigned(assigned);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Solve was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("EM estimation failed.",
+                    e.getCause());
+        }
+        return logLikelihood;
+    }
+
+    /**
+     * E-step over a contiguous range of patterns. Every chunk accumulates the
+     * assigned reads in its own buffer.
+     */
+    private static final class Chunk implements Callable<Double> {
+
+        private final MappingPatterns patterns;
+        private final int begin;
+        private final int end;
+        private final double[] assigned;
+        private double[] w;
+
+        Chunk(final MappingPatterns patterns, final int numGenomes,
+                final int begin, final int end) {
+            this.patterns = patterns;
+            this.begin = begin;
+            this.end = end;
+            this.assigned = new double[numGenomes];
+        }
+
+        void setWeights(final double[] w) {
+            this.w = w;
+        }
+
+        void addAssigned(final double[] total) {
+            for (int j = 0; j < total.length; ++j) {
+                total[j] += assigned[j];
+            }
+        }
+
+        @Override
+        public Double call() {
+            Arrays.fill(assigned, 0.0);
+            double logLikelihood = 0.0;
+            for (int p = begin; p < end; ++p) {
+                final int count = patterns.getCount(p);
+                if (count == 0) {
+                    continue;
+                }
+                final int[] genomes = patterns.getGenomesUnsafe(p);
+                double denominator = 0.0;
+                for (int j : genomes) {
+                    denominator += w[j];
+                }
+                if (denominator > 0.0) {
+                    final double scale = count / denominator;
+                    for (int j : genomes) {
+                        assigned[j] += w[j] * scale;
+                    }
+                    logLikelihood += count * Math.log(denominator);
+                } else {
+                    // no genome of the pattern is present (yet), share evenly
+                    final double share = (double) count / genomes.length;
+                    for (int j : genomes) {
+                        assigned[j] += share;
+                    }
+                }
+            }
+            return logLikelihood;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Gap safe screening rule for the correction problem
+ * 
+ * <pre>
+ * min 1/2 ||S x - r||^2  s.t. x >= 0, sum(x) <= t
+ * </pre>
+ * 
+ * Given any feasible point x, the duality gap bounds the distance of the dual
+ * point theta = S x - r to the (unique) dual optimum. This in turn bounds the
+ * gradient S^T theta* at the optimum. By the KKT conditions, x*_j can only be
+ * positive if (S^T theta*)_j is the smallest gradient entry and not positive.
+ * Variables whose gradient is provably larger are zero in every optimal
+ * solution and can be removed from the problem. See Fercoq, Gramfort and
+ * Salmon (2015), "Mind the duality gap: safer rules for the lasso".
+ * 
+ * @author aiche
+ */
+final class GapSafeScreening {
+
+    /**
+     * Margin protecting the rule against rounding errors.
+     */
+    private static final double SAFETY_MARGIN = 1.0e-12;
+
+    private final double[] sm;
+    private final int numRows;
+    private final int numCols;
+    private final double[] reads;
+    private final double sumBound;
+    private final double[] columnNorms;
+    private final double stepSize;
+
+    /**
+     * Gram matrix S^T S (in double or single precision) and correlations S^T
+     * r for the gradient steps.
+     */
+    private final double[] gram;
+    private final float[] singleGram;
+    private final double[] correlations;
+
+    /**
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param sumBound
+     *            The upper bound of the sum of the abundances.
+     */
+    GapSafeScreening(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double sumBound) {
+        this(sm, reads, sumBound, false);
+    }
+
+    /**
+     * @param singlePrecision
+     *            If true, the Gram matrix is stored in single precision.
+     */
+    GapSafeScreening(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double sumBound, final boolean singlePrecision) {
+        this.sm = sm.getMatrix().getData();
+        this.numRows = sm.numRows();
+        this.numCols = sm.numCols();
+        this.reads = reads.getMatrix().getData();
+        this.sumBound = sumBound;
+
+        gram = (singlePrecision ? null : DenseKernels.gram(this.sm, numRows,
+                numCols));
+        singleGram = (singlePrecision ? DenseKernels.gramSingle(this.sm,
+                numRows, numCols) : null);
+        correlations = new double[numCols];
+        DenseKernels.transposeMatvec(this.sm, numRows, numCols, this.reads,
+                correlations);
+
+        // the squared Frobenius norm (sum of the squared column norms) bounds
+        // the Lipschitz constant of the gradient
+        columnNorms = new double[numCols];
+        double lipschitz = 0.0;
+        // the column norms are part of the rule and always computed in
+        // double precision, the (single precision) Gram matrix only serves
+        // the gradient steps
+        for (int i = 0, offset = 0; i < numRows; ++i, offset += numCols) {
+            for (int j = 0; j < numCols; ++j) {
+                columnNorms[j] += this.sm[offset + j] * this.sm[offset + j];
+            }
+        }
+        for (int j = 0; j < numCols; ++j) {
+            lipschitz += columnNorms[j];
+            columnNorms[j] = Math.sqrt(columnNorms[j]);
+        }
+        stepSize = (lipschitz > 0.0 ? 1.0 / lipschitz : 0.0);
+    }
+
+    /**
+     * Improves a point by projected gradient steps. The rule is only as sharp
+     * as the duality gap of the point it is given, and COBYLA solutions are
+     * often not accurate enough to separate present from absent species.
+     * 
+     * @param x
+     *            A point of the full problem, improved in place.
+     * @param iterations
+     *            The number of gradient steps.
+     * @return The improved, feasible point.
+     */
+    double[] refine(final double[] x, final int iterations) {
+        StartPointStrategy.projectOnFeasibleSet(x, sumBound);
+        double[] gradient = new double[numCols];
+        for (int it = 0; it < iterations; ++it) {
+            if (singleGram != null) {
+                DenseKernels.gramUpdate(singleGram, numCols, x, correlations,
+                        gradient);
+            } else {
+                DenseKernels.gramUpdate(gram, numCols, x, correlations,
+                        gradient);
+            }
+            for (int j = 0; j < numCols; ++j) {
+                x[j] -= stepSize * gradient[j];
+            }
+            StartPointStrategy.projectOnFeasibleSet(x, sumBound);
+        }
+        return x;
+    }
+
+    /**
+     * Determines the variables that are zero in every optimal solution.
+     * 
+     * @param x
+     *            A feasible point of the full problem.
+     * @param eliminated
+     *            Variables already known to be zero, updated in place.
+     * @return The number of newly eliminated variables.
+     */
+    int screen(final double[] x, final boolean[] eliminated) {
+        final int numVariables = columnNorms.length;
+
+        double[] gradient = new double[numVariables];
+        final double radius = Math.sqrt(2.0 * computeGap(x, gradient));
+
+        // the smallest gradient entry at the optimum is at most this
+        double minUpper = 0.0;
+        for (int j = 0; j < numVariables; ++j) {
+            minUpper = Math.min(minUpper, gradient[j] + columnNorms[j]
+                    * radius);
+        }
+
+        int newlyEliminated = 0;
+        for (int j = 0; j < numVariables; ++j) {
+            if (!eliminated[j]
+                    && gradient[j] - columnNorms[j] * radius > minUpper
+                            + SAFETY_MARGIN) {
+                eliminated[j] = true;
+                ++newlyEliminated;
+            }
+        }
+        return newlyEliminated;
+    }
+
+    /**
+     * Computes the duality gap of a feasible point, an upper bound of the
+     * difference between its objective value and the optimal objective value
+     * of <code>1/2 ||S x - r||^2</code>.
+     * 
+     * @param x
+     *            A feasible point of the full problem.
+     * @return The duality gap.
+     */
+    double dualityGap(final double[] x) {
+        return computeGap(x, new double[numCols]);
+    }
+
+    /**
+     * Computes the duality gap of x and the gradient S^T (S x - r).
+     */
+    private double computeGap(final double[] x, final double[] gradient) {
+        // dual point theta = S x - r
+        double[] theta = new double[numRows];
+        final double primal = 0.5 * DenseKernels.residual(sm, numRows,
+                numCols, x, reads, theta);
+        final double thetaReads = DenseKernels.dot(theta, 0, reads, numRows);
+
+        // gradient S^T theta
+        DenseKernels.transposeMatvec(sm, numRows, numCols, theta, gradient);
+        double minGradient = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < numCols; ++j) {
+            minGradient = Math.min(minGradient, gradient[j]);
+        }
+
+        // D(theta) = -theta^T r - 1/2 ||theta||^2 + t min(0, min_j g_j)
+        final double dual = -thetaReads - primal + sumBound
+                * Math.min(0.0, minGradient);
+        return Math.max(0.0, primal - dual);
+    }
+}
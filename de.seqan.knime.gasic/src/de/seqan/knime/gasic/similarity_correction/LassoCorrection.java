@@ -29,45 +29,118 @@
  */
 package de.seqan.knime.gasic.similarity_correction;
 
-import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.ejml.simple.SimpleMatrix;
 
 import com.cureos.numerics.Cobyla;
+import com.cureos.numerics.CobylaExitStatus;
 
 /**
  * Computes the corrected abundance matrix for a given similarity matrix and
  * read counts.
  * 
+ * The class holds only the (immutable) solver settings, so a single instance
+ * can be used to solve several problems concurrently.
+ * 
  * @author aiche
  */
 public class LassoCorrection {
 
+    private final LassoSettings settings;
+
     private final double rhobeg;
     private final double rhoend;
     private final int iprint;
     private final int nthreads;
 
     private final int maxfun;
+    private final boolean racing;
+    private final StartPointStrategy startPointStrategy;
+    private final int numStarts;
+    private final boolean screening;
+    private final SketchType sketchType;
+    private final int sketchSize;
+    private final boolean refineSketch;
+    private final boolean singlePrecision;
+
+    /**
+     * Deadline of solves without time budget.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Number of start points used when a warm start is given.
+     */
+    private static final int NUM_WARM_START_VALUES = 3;
+
+    /**
+     * Interval in which a blocked solve polls its monitor for cancellation.
+     */
+    private static final long MONITOR_INTERVAL_MS = 100;
+
+    /**
+     * Maximal number of screen-and-solve rounds if screening is enabled.
+     */
+    private static final int MAX_SCREENING_ROUNDS = 3;
 
-    private double[] minSolution;
-    private double minObjective;
+    /**
+     * Number of projected gradient steps sharpening the screening point.
+     */
+    private static final int SCREENING_ITERATIONS = 100;
+
+    /**
+     * Seed of the sketches, approximate solves are reproducible.
+     */
+    private static final long SKETCH_SEED = 20140512L;
 
     public LassoCorrection() {
-        this(0, 4, 1.0, 1.0e-10, 10000);
+        this(new LassoSettings.Builder().build());
     }
 
     public LassoCorrection(final int iprint, final int nthreads,
             final double rhobeg, final double rhoend, final int maxfun) {
-        minObjective = Double.POSITIVE_INFINITY;
-        minSolution = null;
-        this.iprint = iprint;
-        this.nthreads = nthreads;
-        this.rhobeg = rhobeg;
-        this.rhoend = rhoend;
-        this.maxfun = maxfun;
+        this(new LassoSettings.Builder().iprint(iprint).threads(nthreads)
+                .trustRegion(rhobeg, rhoend).maxIterations(maxfun).build());
+    }
+
+    /**
+     * @param settings
+     *            The solver settings.
+     */
+    public LassoCorrection(final LassoSettings settings) {
+        this.settings = settings;
+        this.iprint = settings.getIprint();
+        this.nthreads = settings.getThreads();
+        this.rhobeg = settings.getRhoBeg();
+        this.rhoend = settings.getRhoEnd();
+        this.maxfun = settings.getMaxIterations();
+        this.racing = settings.isRacing();
+        this.startPointStrategy = settings.getStartPointStrategy();
+        this.numStarts = settings.getNumStarts();
+        this.screening = settings.isScreening();
+        this.sketchType = settings.getSketchType();
+        this.sketchSize = settings.getSketchSize();
+        this.refineSketch = settings.isRefineSketch();
+        this.singlePrecision = settings.isSinglePrecision();
+    }
+
+    /**
+     * @return The solver settings.
+     */
+    public LassoSettings getSettings() {
+        return settings;
     }
 
     /**
@@ -82,41 +155,635 @@ public class LassoCorrection {
      */
     public double[] similarityCorrection(final SimpleMatrix sm,
             final SimpleMatrix reads) {
+        return similarityCorrection(sm, reads, null);
+    }
+
+    /**
+     * Calculate corrected abundances given a similarity matrix and observations
+     * using optimization, starting from a known (approximate) solution.
+     * 
+     * Instead of the full grid of heuristic start points only the warm start
+     * and a small number of diversified start points are optimized.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param warmStart
+     *            Solution of a closely related problem (e.g., the previous
+     *            bootstrap replicate). If null the default start points are
+     *            used.
+     * @return Estimated abundance of each species in the sample.
+     */
+    public double[] similarityCorrection(final SimpleMatrix sm,
+            final SimpleMatrix reads, final double[] warmStart) {
+        return solve(sm, reads, warmStart).getSolution();
+    }
 
-        // compute total number of reads
-        final int numGenoms = reads.numRows();
+    /**
+     * Calculate corrected abundances given a similarity matrix and observations
+     * using optimization. The COBYLA runs are executed on a temporary thread
+     * pool with the configured number of threads.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param warmStart
+     *            Solution of a closely related problem or null.
+     * @return The solution together with statistics about the optimization.
+     * @see #similarityCorrection(SimpleMatrix, SimpleMatrix, double[])
+     */
+    public LassoResult solve(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[] warmStart) {
+        SolverExecutor executor = new SolverExecutor(nthreads);
+        try {
+            return solve(sm, reads, warmStart, executor, SolverMonitor.NONE);
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-        // 1 constraint for each read (non-negative) and total sum <= 1
-        final int numConstraints = numGenoms + 1;
+    /**
+     * Calculate corrected abundances given a similarity matrix and observations
+     * using optimization. The COBYLA runs are executed on the given (shared)
+     * executor; the calling thread blocks until all runs finished.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param warmStart
+     *            Solution of a closely related problem or null.
+     * @param executor
+     *            The executor running the COBYLA runs.
+     * @param monitor
+     *            Receives the progress per finished start point and is polled
+     *            for cancellation.
+     * @return The solution together with statistics about the optimization.
+     * @throws CancellationException
+     *             If the monitor requested cancellation. All runs of this
+     *             solve are stopped before the exception is thrown.
+     */
+    public LassoResult solve(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor) {
+        return solve(sm, reads, warmStart, executor, monitor,
+                SolverRecorder.NONE);
+    }
+
+    /**
+     * Like
+     * {@link #solve(SimpleMatrix, SimpleMatrix, double[], SolverExecutor, SolverMonitor)}
+     * but reports the statistics of every COBYLA run to the given recorder.
+     * 
+     * @param recorder
+     *            Receives the statistics of every run.
+     */
+    public LassoResult solve(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder) {
+        return solve(sm, reads, warmStart, executor, monitor, recorder,
+                NO_DEADLINE);
+    }
+
+    /**
+     * Like
+     * {@link #solve(SimpleMatrix, SimpleMatrix, double[], SolverExecutor, SolverMonitor, SolverRecorder)}
+     * but with a time budget. Once the deadline passes, all outstanding runs
+     * are stopped and the best feasible point found so far is returned; the
+     * result is flagged with {@link LassoResult#isBudgetExceeded()}.
+     * 
+     * @param deadline
+     *            The deadline in milliseconds since the epoch (see
+     *            {@link System#currentTimeMillis()}), {@link #NO_DEADLINE}
+     *            for none.
+     */
+    public LassoResult solve(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder,
+            final long deadline) {
+        return solve(sm, reads, warmStart, 1.0, executor, monitor, recorder,
+                deadline);
+    }
+
+    /**
+     * Like
+     * {@link #solve(SimpleMatrix, SimpleMatrix, double[], SolverExecutor, SolverMonitor, SolverRecorder, long)}
+     * but builds the similarity matrix from the counts of the simulated
+     * reads (see {@link #getSimilarityMatrix(int[][])}). In single precision
+     * mode without screening and sketching, the COBYLA runs only hold the
+     * float matrix: a double matrix is only built while the start points are
+     * computed.
+     * 
+     * @param counts
+     *            counts[i][j] is the number of simulated reads of genome i
+     *            mapping to genome j.
+     */
+    public LassoResult solve(final int[][] counts, final SimpleMatrix reads,
+            final double[] warmStart, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder,
+            final long deadline) {
+        final int numGenoms = counts.length;
+        if (!singlePrecision || screening
+                || (sketchSize > 0 && sketchSize < numGenoms)) {
+            return solve(getSimilarityMatrix(counts), reads, warmStart,
+                    executor, monitor, recorder, deadline);
+        }
+
+        final long startTime = System.currentTimeMillis();
+
+        // the double matrix is garbage before the runs start
+        double[][] initialValues = (warmStart == null ? startPointStrategy
+                .createStartPoints(getSimilarityMatrix(counts), reads,
+                        numStarts) : getWarmStartValues(warmStart, 1.0));
 
-        // normalize reads by its total number
+        ResultCollector collector = new ResultCollector();
+        multistart(null, getSingleSimilarityMatrix(counts), numGenoms,
+                numGenoms, reads, initialValues, 1.0, executor, monitor,
+                recorder, collector, deadline);
+        return collector.createResult(System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Computes the regularization path, i.e., the solutions for a sequence of
+     * upper bounds of the total abundance. Each point of the path is warm
+     * started from the solution of the previous one, so sorting the bounds
+     * increasingly or decreasingly makes consecutive problems similar.
+     * 
+     * As all abundances are non-negative, the sum bound equals the L1 norm
+     * bound of the lasso. The penalized form (with penalty lambda) has the
+     * same solutions for suitable pairs of bound and lambda.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param sumBounds
+     *            The upper bounds of the sum of the abundances.
+     * @param executor
+     *            The executor running the COBYLA runs.
+     * @param monitor
+     *            Receives the progress per finished path point and is polled
+     *            for cancellation.
+     * @return One result per bound, in the order of the bounds.
+     * @throws CancellationException
+     *             If the monitor requested cancellation.
+     */
+    public LassoResult[] solvePath(final SimpleMatrix sm,
+            final SimpleMatrix reads, final double[] sumBounds,
+            final SolverExecutor executor, final SolverMonitor monitor) {
+        return solvePath(sm, reads, sumBounds, executor, monitor, NO_DEADLINE);
+    }
+
+    /**
+     * Like
+     * {@link #solvePath(SimpleMatrix, SimpleMatrix, double[], SolverExecutor, SolverMonitor)}
+     * but all points share the given deadline. Points solved after the
+     * deadline passed are the best start points and flagged accordingly.
+     * 
+     * @param deadline
+     *            The deadline in milliseconds since the epoch,
+     *            {@link #NO_DEADLINE} for none.
+     */
+    public LassoResult[] solvePath(final SimpleMatrix sm,
+            final SimpleMatrix reads, final double[] sumBounds,
+            final SolverExecutor executor, final SolverMonitor monitor,
+            final long deadline) {
+        LassoResult[] path = new LassoResult[sumBounds.length];
+        double[] warmStart = null;
+        for (int p = 0; p < sumBounds.length; ++p) {
+            path[p] = solve(sm, reads, warmStart, sumBounds[p], executor,
+                    SolverMonitor.NONE, SolverRecorder.NONE, deadline);
+            warmStart = path[p].getSolution();
+
+            if (monitor.isCanceled()) {
+                throw new CancellationException("Solve was canceled");
+            }
+            monitor.setProgress((double) (p + 1) / sumBounds.length,
+                    "Path point " + (p + 1) + " of " + sumBounds.length);
+        }
+        return path;
+    }
 
-        double[][] initialValues = getInitialValues(numGenoms);
+    private LassoResult solve(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[] warmStart, final double sumBound,
+            final SolverExecutor executor, final SolverMonitor monitor,
+            final SolverRecorder recorder, final long deadline) {
+        if (sketchSize <= 0 || sketchSize >= sm.numRows()) {
+            return solveExact(sm, reads, warmStart, sumBound, executor,
+                    monitor, recorder, deadline);
+        }
 
-        ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        final long startTime = System.currentTimeMillis();
 
-        for (final double[] initialValue : initialValues) {
-            executor.execute(new Runnable() {
+        SimpleMatrix[] sketched = sketchType.sketch(sm, reads, sketchSize,
+                new Random(SKETCH_SEED));
+        LassoResult approximate = solveExact(sketched[0], sketched[1],
+                warmStart, sumBound, executor, monitor, recorder, deadline);
+        double[] solution = approximate.getSolution();
+        int evaluations = approximate.getEvaluations();
+        if (solution == null) {
+            return approximate;
+        }
+
+        boolean budgetExceeded = approximate.isBudgetExceeded();
+        if (refineSketch && !budgetExceeded) {
+            LassoResult refined = solveExact(sm, reads, solution, sumBound,
+                    executor, monitor, recorder, deadline);
+            evaluations += refined.getEvaluations();
+            budgetExceeded = refined.isBudgetExceeded();
+            if (refined.getSolution() != null) {
+                solution = refined.getSolution();
+            }
+        }
+
+        // bound the loss of the approximation by the duality gap (which
+        // refers to 1/2 ||S x - r||^2) of an improved point p:
+        // f(x) - f* <= (f(x) - f(p)) + 2 gap(p)
+        CobylaObjective objective = new CobylaObjective(sm, reads, sumBound);
+        GapSafeScreening gap = new GapSafeScreening(sm, reads, sumBound,
+                singlePrecision);
+        double[] improved = gap.refine(solution.clone(), SCREENING_ITERATIONS);
+        final double value = objective.computeObjectiveValue(solution);
+        final double objectiveGap = Math.max(0.0, value
+                - objective.computeObjectiveValue(improved))
+                + 2.0 * gap.dualityGap(improved);
+        return new LassoResult(solution, value, evaluations,
+                System.currentTimeMillis() - startTime, objectiveGap,
+                budgetExceeded);
+    }
+
+    private LassoResult solveExact(final SimpleMatrix sm,
+            final SimpleMatrix reads, final double[] warmStart,
+            final double sumBound, final SolverExecutor executor,
+            final SolverMonitor monitor, final SolverRecorder recorder,
+            final long deadline) {
+
+        final long startTime = System.currentTimeMillis();
+
+        double[][] initialValues = (warmStart == null ? startPointStrategy
+                .createStartPoints(sm, reads, numStarts)
+                : getWarmStartValues(warmStart, sumBound));
+        if (warmStart == null && sumBound < 1.0) {
+            for (double[] initialValue : initialValues) {
+                StartPointStrategy.projectOnFeasibleSet(initialValue, sumBound);
+            }
+        }
+
+        if (!screening) {
+            ResultCollector collector = new ResultCollector();
+            multistart(sm, reads, initialValues, sumBound, executor, monitor,
+                    recorder, collector, deadline);
+            return collector.createResult(System.currentTimeMillis()
+                    - startTime);
+        }
+
+        // screen with the best start point, solve the reduced problem and
+        // repeat as long as the better solution eliminates more variables
+        final int numGenoms = sm.numCols();
+        GapSafeScreening screener = new GapSafeScreening(sm, reads, sumBound,
+                singlePrecision);
+        boolean[] eliminated = new boolean[numGenoms];
+        screener.screen(screener.refine(getBestFeasiblePoint(
+                new CobylaObjective(sm, reads, sumBound), numGenoms,
+                initialValues, sumBound), SCREENING_ITERATIONS), eliminated);
+
+        double[] solution = null;
+        double objective = Double.POSITIVE_INFINITY;
+        int evaluations = 0;
+        boolean budgetExceeded = false;
+        for (int round = 0; round < MAX_SCREENING_ROUNDS; ++round) {
+            int[] active = getActive(eliminated);
+            if (active.length == 0) {
+                // all abundances are provably zero
+                solution = new double[numGenoms];
+                objective = new CobylaObjective(sm, reads, sumBound)
+                        .computeObjectiveValue(solution);
+                break;
+            }
+
+            double[][] reducedStarts = new double[initialValues.length][];
+            for (int i = 0; i < initialValues.length; ++i) {
+                reducedStarts[i] = restrict(initialValues[i], active);
+            }
+
+            ResultCollector collector = new ResultCollector();
+            multistart(extractColumns(sm, active), reads, reducedStarts,
+                    sumBound, executor, monitor, recorder, collector, deadline);
+            evaluations += collector.getEvaluations();
+            budgetExceeded = collector.isBudgetExceeded();
+            if (collector.getSolution() == null) {
+                break;
+            }
+            solution = expand(collector.getSolution(), active, numGenoms);
+            objective = collector.getObjective();
+            if (budgetExceeded) {
+                break;
+            }
+
+            // the reduced solution is feasible for the full problem, its
+            // smaller duality gap may eliminate further variables
+            double[] feasible = screener.refine(solution.clone(),
+                    SCREENING_ITERATIONS);
+            if (screener.screen(feasible, eliminated) == 0) {
+                break;
+            }
+
+            // continue from the current solution only
+            initialValues = getWarmStartValues(solution, sumBound);
+        }
+
+        return new LassoResult(solution, objective, evaluations,
+                System.currentTimeMillis() - startTime, Double.NaN,
+                budgetExceeded);
+    }
+
+    /**
+     * Runs COBYLA from all start points in parallel and collects the best
+     * solution.
+     */
+    private void multistart(final SimpleMatrix sm, final SimpleMatrix reads,
+            final double[][] initialValues, final double sumBound,
+            final SolverExecutor executor, final SolverMonitor monitor,
+            final SolverRecorder recorder, final ResultCollector collector,
+            final long deadline) {
+        // all runs share the single precision copy of the matrix
+        multistart(sm, (singlePrecision ? DenseKernels.toFloat(sm.getMatrix()
+                .getData(), sm.numRows() * sm.numCols()) : null), sm
+                .numRows(), sm.numCols(), reads, initialValues, sumBound,
+                executor, monitor, recorder, collector, deadline);
+    }
+
+    /**
+     * Runs COBYLA from all start points in parallel on the double matrix sm
+     * or, if given, on its single precision version singleSm, in which case
+     * sm may be null.
+     */
+    private void multistart(final SimpleMatrix sm, final float[] singleSm,
+            final int numRows, final int numGenoms, final SimpleMatrix reads,
+            final double[][] initialValues, final double sumBound,
+            final SolverExecutor executor, final SolverMonitor monitor,
+            final SolverRecorder recorder, final ResultCollector collector,
+            final long deadline) {
+
+        // 1 constraint for each variable (non-negative) and total sum <= bound
+        final int numConstraints = numGenoms + 1;
+
+        final SolveControl control = new SolveControl(deadline);
+        final Race race = (racing ? new Race() : null);
+
+        CompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                executor.getExecutorService());
+        List<Future<Void>> runs = new ArrayList<Future<Void>>(
+                initialValues.length);
+
+        if (deadline != NO_DEADLINE) {
+            // runs stopped before their first evaluation contribute nothing,
+            // so the best start point is the fallback
+            CobylaObjective objective = createObjective(sm, singleSm,
+                    numRows, numGenoms, reads, sumBound);
+            double[] best = getBestFeasiblePoint(objective, numGenoms,
+                    initialValues, sumBound);
+            collector.update(best, objective.computeObjectiveValue(best));
+        }
+
+        final boolean recording = (recorder != SolverRecorder.NONE);
+        for (int i = 0; i < initialValues.length; ++i) {
+            final int startPoint = i;
+            final double[] initialValue = initialValues[i];
+            runs.add(completionService.submit(new Runnable() {
 
                 @Override
                 public void run() {
+                    final long runStart = (recording ? System
+                            .currentTimeMillis() : 0);
+
                     // solve the lasso problem
-                    CobylaObjective calcfc = new CobylaObjective(sm, reads);
+                    CobylaObjective calcfc = createObjective(sm, singleSm,
+                            numRows, numGenoms, reads, sumBound);
+                    MonitoredObjective monitored = new MonitoredObjective(
+                            calcfc, control, race);
 
                     // do the actual optimization
-                    Cobyla.FindMinimum(calcfc, numGenoms, numConstraints,
-                            initialValue, rhobeg, rhoend, iprint, maxfun);
-                    updateResult(calcfc, initialValue);
+                    CobylaExitStatus status;
+                    try {
+                        status = Cobyla.FindMinimum(monitored, numGenoms,
+                                numConstraints, initialValue, rhobeg, rhoend,
+                                iprint, maxfun);
+                    } catch (RunAbandonedException e) {
+                        collector.addEvaluations(monitored.getEvaluations());
+                        // dominated by another run or canceled runs have
+                        // nothing to contribute, runs stopped by the time
+                        // budget contribute their best point
+                        final boolean budget = control.isBudgetExceeded();
+                        if (budget && monitored.getBestSolution() != null) {
+                            collector.update(monitored.getBestSolution(),
+                                    monitored.getBestObjective());
+                        }
+                        if (recording) {
+                            recorder.record(new RunStatistics(startPoint,
+                                    monitored.getBestObjective(), monitored
+                                            .getEvaluations(), System
+                                            .currentTimeMillis() - runStart,
+                                    Thread.currentThread().getName(),
+                                    (budget ? RunStatistics.Status.BUDGET_EXCEEDED
+                                            : RunStatistics.Status.ABANDONED)));
+                        }
+                        return;
+                    }
+
+                    double objective = calcfc
+                            .computeObjectiveValue(initialValue);
+                    if (race != null) {
+                        race.converged(initialValue.clone(), objective);
+                    }
+                    collector.addEvaluations(monitored.getEvaluations());
+                    collector.update(initialValue, objective);
+                    if (recording) {
+                        recorder.record(new RunStatistics(startPoint,
+                                objective, monitored.getEvaluations(), System
+                                        .currentTimeMillis() - runStart,
+                                Thread.currentThread().getName(),
+                                toStatus(status)));
+                    }
+                }
+            }, null));
+        }
+
+        try {
+            for (int finished = 0; finished < runs.size();) {
+                if (monitor.isCanceled()) {
+                    stopRuns(control, runs);
+                    throw new CancellationException("Solve was canceled");
                 }
-            });
+                // runs notice the deadline on their next evaluation, queued
+                // runs as soon as they start
+                control.checkDeadline();
+
+                Future<Void> run = completionService.poll(
+                        MONITOR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (run == null) {
+                    continue;
+                }
+
+                // propagate unexpected failures of a run
+                run.get();
+                ++finished;
+                monitor.setProgress((double) finished / runs.size(),
+                        "Start point " + finished + " of " + runs.size());
+            }
+        } catch (InterruptedException e) {
+            stopRuns(control, runs);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Solve was interrupted");
+        } catch (ExecutionException e) {
+            stopRuns(control, runs);
+            throw new IllegalStateException("COBYLA run failed", e.getCause());
+        }
+        if (control.isBudgetExceeded()) {
+            collector.setBudgetExceeded();
+        }
+
+    }
+
+    /**
+     * Creates the objective of the runs of a multistart: on singleSm if
+     * given, otherwise on sm. Overridden by tests to check which matrix the
+     * runs use.
+     */
+    CobylaObjective createObjective(final SimpleMatrix sm,
+            final float[] singleSm, final int numRows, final int numCols,
+            final SimpleMatrix reads, final double sumBound) {
+        return (singleSm != null ? new CobylaObjective(singleSm, numRows,
+                numCols, reads, sumBound) : new CobylaObjective(sm, reads,
+                sumBound));
+    }
+
+    /**
+     * Projects all start points onto the feasible set and returns the one
+     * with the smallest objective value.
+     */
+    private static double[] getBestFeasiblePoint(
+            final CobylaObjective objective, final int numGenoms,
+            final double[][] points, final double sumBound) {
+        double[] best = new double[numGenoms];
+        double bestObjective = objective.computeObjectiveValue(best);
+        for (double[] point : points) {
+            double[] feasible = StartPointStrategy.projectOnFeasibleSet(
+                    point.clone(), sumBound);
+            double value = objective.computeObjectiveValue(feasible);
+            if (value < bestObjective) {
+                best = feasible;
+                bestObjective = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param counts
+     *            counts[i][j] is the number of simulated reads of genome i
+     *            mapping to genome j.
+     * @return The similarity matrix, the counts normalized by the number of
+     *         simulated reads mapping back to their own genome.
+     */
+    public static SimpleMatrix getSimilarityMatrix(final int[][] counts) {
+        final int numGenoms = counts.length;
+
+        SimpleMatrix sm = new SimpleMatrix(numGenoms, numGenoms);
+
+        for (int i = 0; i < numGenoms; ++i) {
+            for (int j = 0; j < numGenoms; ++j) {
+                sm.set(i, j, (double) counts[i][j] / (double) counts[i][i]);
+            }
         }
 
-        executor.shutdown();
-        // Wait until all threads are finish
-        while (!executor.isTerminated()) {
+        return sm;
+    }
+
+    /**
+     * @return The similarity matrix of {@link #getSimilarityMatrix(int[][])}
+     *         in single precision (row-major), computed without the double
+     *         matrix.
+     */
+    static float[] getSingleSimilarityMatrix(final int[][] counts) {
+        final int numGenoms = counts.length;
+
+        float[] sm = new float[numGenoms * numGenoms];
+
+        for (int i = 0; i < numGenoms; ++i) {
+            for (int j = 0; j < numGenoms; ++j) {
+                sm[i * numGenoms + j] = (float) ((double) counts[i][j]
+                        / (double) counts[i][i]);
+            }
         }
 
-        return minSolution;
+        return sm;
+    }
+
+    private static int[] getActive(final boolean[] eliminated) {
+        int numActive = 0;
+        for (boolean e : eliminated) {
+            numActive += (e ? 0 : 1);
+        }
+        int[] active = new int[numActive];
+        for (int j = 0, a = 0; j < eliminated.length; ++j) {
+            if (!eliminated[j]) {
+                active[a++] = j;
+            }
+        }
+        return active;
+    }
+
+    private static SimpleMatrix extractColumns(final SimpleMatrix sm,
+            final int[] columns) {
+        SimpleMatrix reduced = new SimpleMatrix(sm.numRows(), columns.length);
+        for (int i = 0; i < sm.numRows(); ++i) {
+            for (int c = 0; c < columns.length; ++c) {
+                reduced.set(i, c, sm.get(i, columns[c]));
+            }
+        }
+        return reduced;
+    }
+
+    private static double[] restrict(final double[] x, final int[] active) {
+        double[] restricted = new double[active.length];
+        for (int a = 0; a < active.length; ++a) {
+            restricted[a] = x[active[a]];
+        }
+        return restricted;
+    }
+
+    private static double[] expand(final double[] x, final int[] active,
+            final int size) {
+        double[] expanded = new double[size];
+        for (int a = 0; a < active.length; ++a) {
+            expanded[active[a]] = x[a];
+        }
+        return expanded;
+    }
+
+    private static RunStatistics.Status toStatus(CobylaExitStatus status) {
+        switch (status) {
+        case Normal:
+            return RunStatistics.Status.CONVERGED;
+        case MaxIterationsReached:
+            return RunStatistics.Status.MAX_ITERATIONS_REACHED;
+        default:
+            return RunStatistics.Status.DIVERGING_ROUNDING_ERRORS;
+        }
+    }
+
+    /**
+     * Stops all runs of a solve: pending runs are removed from the executor,
+     * running ones stop at their next function evaluation.
+     */
+    private void stopRuns(SolveControl control, List<Future<Void>> runs) {
+        control.stop();
+        for (Future<Void> run : runs) {
+            run.cancel(false);
+        }
     }
 
     public double[] similarityCorrection(double[][] similarity,
@@ -129,52 +796,117 @@ public class LassoCorrection {
         return similarityCorrection(sm, reads);
     }
 
-    private synchronized void updateResult(CobylaObjective cobylaObjective,
-            double[] currentSolution) {
-        double currentObjective = cobylaObjective
-                .computeObjectiveValue(currentSolution);
-        if (currentObjective < minObjective) {
-            minObjective = currentObjective;
-            minSolution = currentSolution;
-        }
+    /**
+     * Describes all settings that influence the result of a solve. Used to
+     * build cache keys, see {@link CorrectionCache}.
+     * 
+     * @return A string describing the solver settings.
+     * @see LassoSettings#getFingerprint()
+     */
+    public String getSettingsFingerprint() {
+        return settings.getFingerprint();
     }
 
-    private double[][] getInitialValues(final int numGenoms) {
-        int possibleEquals = (int) Math.floor((1 / numGenoms) / 0.1);
+    /**
+     * Writes the solver settings, e.g., to configure the solver of a worker
+     * process.
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        settings.write(out);
+    }
 
-        double[][] initialValues = new double[(3 * numGenoms) + 1
-                + possibleEquals][];
+    /**
+     * Creates a solver with the settings written by
+     * {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The solver.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public static LassoCorrection read(final DataInput in) throws IOException {
+        return new LassoCorrection(LassoSettings.read(in));
+    }
+
+    /**
+     * Creates the start points for a warm started optimization: the warm start
+     * itself, the warm start shrunk towards the uniform distribution and the
+     * uniform distribution.
+     * 
+     * @param warmStart
+     *            The solution to start from.
+     * @param sumBound
+     *            The upper bound of the sum of the abundances.
+     * @return The start points.
+     */
+    private double[][] getWarmStartValues(final double[] warmStart,
+            final double sumBound) {
+        final int numGenoms = warmStart.length;
+        final double uniform = Math.min(1.0, sumBound) / numGenoms;
 
-        double lowStart = 0.1 / (numGenoms - 1);
+        // the optimizer works in place, so we never hand out the original
+        double[] start = StartPointStrategy.projectOnFeasibleSet(
+                warmStart.clone(), sumBound);
+
+        double[][] initialValues = new double[NUM_WARM_START_VALUES][numGenoms];
         for (int i = 0; i < numGenoms; ++i) {
-            initialValues[i] = new double[numGenoms];
-            Arrays.fill(initialValues[i], lowStart);
-            initialValues[i][i] = 0.9;
+            initialValues[0][i] = start[i];
+            initialValues[1][i] = 0.5 * start[i] + 0.5 * uniform;
+            initialValues[2][i] = uniform;
         }
 
-        lowStart = 0.2 / (numGenoms - 1);
-        for (int i = 0; i < numGenoms; ++i) {
-            initialValues[numGenoms + i] = new double[numGenoms];
-            Arrays.fill(initialValues[numGenoms + i], lowStart);
-            initialValues[numGenoms + i][i] = 0.8;
+        return initialValues;
+    }
+
+    /**
+     * Collects the best solution of the concurrent runs of a single solve.
+     */
+    private static final class ResultCollector {
+        private double[] minSolution = null;
+        private double minObjective = Double.POSITIVE_INFINITY;
+        private int evaluations = 0;
+        private boolean budgetExceeded = false;
+
+        synchronized void update(double[] solution, double objective) {
+            if (objective < minObjective) {
+                minObjective = objective;
+                minSolution = solution;
+            }
         }
 
-        for (int i = 0; i < numGenoms; ++i) {
-            initialValues[(2 * numGenoms) + i] = new double[numGenoms];
-            Arrays.fill(initialValues[(2 * numGenoms) + i], 0.01);
-            initialValues[(2 * numGenoms) + i][i] = 0.9;
+        synchronized void addEvaluations(int numEvaluations) {
+            evaluations += numEvaluations;
         }
 
-        for (int i = 0; i < possibleEquals; ++i) {
-            double startParameter = 1 / numGenoms - (i * 0.1);
-            initialValues[(3 * numGenoms) + i] = new double[numGenoms];
-            Arrays.fill(initialValues[(3 * numGenoms) + i], startParameter);
+        synchronized double[] getSolution() {
+            return minSolution;
         }
 
-        initialValues[initialValues.length - 1] = new double[numGenoms];
-        Arrays.fill(initialValues[initialValues.length - 1], 0.5);
+        synchronized double getObjective() {
+            return minObjective;
+        }
 
-        return initialValues;
-    }
+        synchronized int getEvaluations() {
+            return evaluations;
+        }
 
+        synchronized void setBudgetExceeded() {
+            budgetExceeded = true;
+        }
+
+        synchronized boolean isBudgetExceeded() {
+            return budgetExceeded;
+        }
+
+        synchronized LassoResult createResult(long time) {
+            return new LassoResult(minSolution, minObjective, evaluations,
+                    time, Double.NaN, budgetExceeded);
+        }
+    }
 }
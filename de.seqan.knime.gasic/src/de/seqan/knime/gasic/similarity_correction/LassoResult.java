@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+/**
+ * Immutable result of a single {@link LassoCorrection} solve.
+ * 
+ * @author aiche
+ */
+public final class LassoResult {
+
+    private final double[] solution;
+    private final double objective;
+    private final int evaluations;
+    private final long time;
+    private final double objectiveGap;
+    private final boolean budgetExceeded;
+
+    /**
+     * @param solution
+     *            The estimated abundances.
+     * @param objective
+     *            The objective value of the solution.
+     * @param evaluations
+     *            The number of objective function evaluations of all runs.
+     * @param time
+     *            The wall clock time of the solve in milliseconds.
+     */
+    public LassoResult(final double[] solution, final double objective,
+            final int evaluations, final long time) {
+        this(solution, objective, evaluations, time, Double.NaN);
+    }
+
+    /**
+     * @param solution
+     *            The estimated abundances.
+     * @param objective
+     *            The objective value of the solution.
+     * @param evaluations
+     *            The number of objective function evaluations of all runs.
+     * @param time
+     *            The wall clock time of the solve in milliseconds.
+     * @param objectiveGap
+     *            Upper bound of the difference between the objective value
+     *            and the optimal objective value, NaN if unknown.
+     */
+    public LassoResult(final double[] solution, final double objective,
+            final int evaluations, final long time, final double objectiveGap) {
+        this(solution, objective, evaluations, time, objectiveGap, false);
+    }
+
+    /**
+     * @param solution
+     *            The estimated abundances.
+     * @param objective
+     *            The objective value of the solution.
+     * @param evaluations
+     *            The number of objective function evaluations of all runs.
+     * @param time
+     *            The wall clock time of the solve in milliseconds.
+     * @param objectiveGap
+     *            Upper bound of the difference between the objective value
+     *            and the optimal objective value, NaN if unknown.
+     * @param budgetExceeded
+     *            True if the solve was stopped by its time budget.
+     */
+    public LassoResult(final double[] solution, final double objective,
+            final int evaluations, final long time, final double objectiveGap,
+            final boolean budgetExceeded) {
+        this.solution = (solution == null ? null : solution.clone());
+        this.objective = objective;
+        this.evaluations = evaluations;
+        this.time = time;
+        this.objectiveGap = objectiveGap;
+        this.budgetExceeded = budgetExceeded;
+    }
+
+    /**
+     * @return A copy of the estimated abundances, null if no run finished.
+     */
+    public double[] getSolution() {
+        return (solution == null ? null : solution.clone());
+    }
+
+    /**
+     * @return The objective value of the solution.
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return The number of objective function evaluations of all runs.
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return The wall clock time of the solve in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Upper bound of the difference between the objective value and
+     *         the optimal objective value, NaN if it was not computed (only
+     *         approximate solves compute it).
+     */
+    public double getObjectiveGap() {
+        return objectiveGap;
+    }
+
+    /**
+     * @return True if the solve was stopped by its time budget, the solution
+     *         is the best one found until then.
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable settings of a {@link LassoCorrection}. Created with a
+ * {@link Builder}, which starts from the defaults of the original solver
+ * (heuristic start points, no racing, screening or sketching, double
+ * precision), e.g.
+ * 
+ * <pre>
+ * LassoSettings settings = new LassoSettings.Builder().threads(1)
+ *         .maxIterations(2000)
+ *         .startPoints(StartPointStrategy.DATA_DRIVEN, 4)
+ *         .singlePrecision(true).build();
+ * </pre>
+ * 
+ * @author aiche
+ */
+public final class LassoSettings {
+
+    /**
+     * Builder of {@link LassoSettings}. Every setter returns the builder.
+     */
+    public static final class Builder {
+        private int iprint = 0;
+        private int threads = 4;
+        private double rhobeg = 1.0;
+        private double rhoend = 1.0e-10;
+        private int maxIterations = 10000;
+        private boolean racing = false;
+        private StartPointStrategy startPointStrategy = StartPointStrategy.HEURISTIC;
+        private int numStarts = 0;
+        private boolean screening = false;
+        private SketchType sketchType = SketchType.SPARSE_SIGN;
+        private int sketchSize = 0;
+        private boolean refineSketch = false;
+        private boolean singlePrecision = false;
+
+        /**
+         * @param iprint
+         *            The verbosity of COBYLA.
+         */
+        public Builder iprint(final int iprint) {
+            this.iprint = iprint;
+            return this;
+        }
+
+        /**
+         * @param threads
+         *            The number of threads of solves that create their own
+         *            thread pool.
+         */
+        public Builder threads(final int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param rhobeg
+         *            The initial trust region radius of COBYLA.
+         * @param rhoend
+         *            The final trust region radius of COBYLA.
+         */
+        public Builder trustRegion(final double rhobeg, final double rhoend) {
+            this.rhobeg = rhobeg;
+            this.rhoend = rhoend;
+            return this;
+        }
+
+        /**
+         * @param maxIterations
+         *            The maximal number of function evaluations of a COBYLA
+         *            run.
+         */
+        public Builder maxIterations(final int maxIterations) {
+            this.maxIterations = maxIterations;
+            return this;
+        }
+
+        /**
+         * @param racing
+         *            If true, the COBYLA runs of the different start points
+         *            race against each other: runs that clearly trail the
+         *            best run or approach a solution another run already
+         *            converged to are abandoned early.
+         */
+        public Builder racing(final boolean racing) {
+            this.racing = racing;
+            return this;
+        }
+
+        /**
+         * @param strategy
+         *            The strategy used to create the start points of a cold
+         *            started optimization.
+         * @param numStarts
+         *            The number of start points, if the strategy supports
+         *            it.
+         */
+        public Builder startPoints(final StartPointStrategy strategy,
+                final int numStarts) {
+            this.startPointStrategy = strategy;
+            this.numStarts = numStarts;
+            return this;
+        }
+
+        /**
+         * @param screening
+         *            If true, variables that are provably zero in every
+         *            optimal solution are removed from the problem before and
+         *            between optimization rounds (gap safe screening).
+         */
+        public Builder screening(final boolean screening) {
+            this.screening = screening;
+            return this;
+        }
+
+        /**
+         * @param type
+         *            The random projection of the approximate mode.
+         * @param size
+         *            If positive and smaller than the number of rows of the
+         *            similarity matrix, the rows of the least-squares system
+         *            are compressed to this many rows before optimization
+         *            (approximate mode).
+         * @param refine
+         *            If true, the solution of the sketched problem is refined
+         *            on the exact problem.
+         */
+        public Builder sketch(final SketchType type, final int size,
+                final boolean refine) {
+            this.sketchType = type;
+            this.sketchSize = size;
+            this.refineSketch = refine;
+            return this;
+        }
+
+        /**
+         * @param singlePrecision
+         *            If true, the similarity matrix shared by all COBYLA runs
+         *            and the Gram matrix of the screening are stored in
+         *            single precision (float), the kernels still accumulate
+         *            in double precision.
+         */
+        public Builder singlePrecision(final boolean singlePrecision) {
+            this.singlePrecision = singlePrecision;
+            return this;
+        }
+
+        /**
+         * @return The settings.
+         */
+        public LassoSettings build() {
+            return new LassoSettings(this);
+        }
+    }
+
+    private final int iprint;
+    private final int threads;
+    private final double rhobeg;
+    private final double rhoend;
+    private final int maxIterations;
+    private final boolean racing;
+    private final StartPointStrategy startPointStrategy;
+    private final int numStarts;
+    private final boolean screening;
+    private final SketchType sketchType;
+    private final int sketchSize;
+    private final boolean refineSketch;
+    private final boolean singlePrecision;
+
+    private LassoSettings(final Builder builder) {
+        iprint = builder.iprint;
+        threads = builder.threads;
+        rhobeg = builder.rhobeg;
+        rhoend = builder.rhoend;
+        maxIterations = builder.maxIterations;
+        racing = builder.racing;
+        startPointStrategy = builder.startPointStrategy;
+        numStarts = builder.numStarts;
+        screening = builder.screening;
+        sketchType = builder.sketchType;
+        sketchSize = builder.sketchSize;
+        refineSketch = builder.refineSketch;
+        singlePrecision = builder.singlePrecision;
+    }
+
+    /**
+     * @return The verbosity of COBYLA.
+     */
+    public int getIprint() {
+        return iprint;
+    }
+
+    /**
+     * @return The number of threads of solves that create their own thread
+     *         pool.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return The initial trust region radius of COBYLA.
+     */
+    public double getRhoBeg() {
+        return rhobeg;
+    }
+
+    /**
+     * @return The final trust region radius of COBYLA.
+     */
+    public double getRhoEnd() {
+        return rhoend;
+    }
+
+    /**
+     * @return The maximal number of function evaluations of a COBYLA run.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * @return True if the COBYLA runs race against each other.
+     */
+    public boolean isRacing() {
+        return racing;
+    }
+
+    /**
+     * @return The strategy of the start points of a cold start.
+     */
+    public StartPointStrategy getStartPointStrategy() {
+        return startPointStrategy;
+    }
+
+    /**
+     * @return The number of start points, if the strategy supports it.
+     */
+    public int getNumStarts() {
+        return numStarts;
+    }
+
+    /**
+     * @return True if gap safe screening is enabled.
+     */
+    public boolean isScreening() {
+        return screening;
+    }
+
+    /**
+     * @return The random projection of the approximate mode.
+     */
+    public SketchType getSketchType() {
+        return sketchType;
+    }
+
+    /**
+     * @return The number of rows of the sketched problem, 0 for exact
+     *         solves.
+     */
+    public int getSketchSize() {
+        return sketchSize;
+    }
+
+    /**
+     * @return True if sketched solutions are refined on the exact problem.
+     */
+    public boolean isRefineSketch() {
+        return refineSketch;
+    }
+
+    /**
+     * @return True if the matrices of the solver are stored in single
+     *         precision.
+     */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * Describes all settings that influence the result of a solve. Used to
+     * build cache keys, see {@link CorrectionCache}.
+     * 
+     * @return A string describing the solver settings.
+     */
+    public String getFingerprint() {
+        // the number of threads and iprint do not change the result
+        return "LassoCorrection[rhobeg=" + rhobeg + ",rhoend=" + rhoend
+                + ",maxfun=" + maxIterations + ",racing=" + racing
+                + ",starts=" + startPointStrategy + "/" + numStarts
+                + ",screening=" + screening + ",sketch=" + sketchType + "/"
+                + sketchSize + "/" + refineSketch + ",single="
+                + singlePrecision + "]";
+    }
+
+    /**
+     * Writes the settings, e.g., to configure the solver of a worker process.
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(iprint);
+        out.writeInt(threads);
+        out.writeDouble(rhobeg);
+        out.writeDouble(rhoend);
+        out.writeInt(maxIterations);
+        out.writeBoolean(racing);
+        out.writeUTF(startPointStrategy.name());
+        out.writeInt(numStarts);
+        out.writeBoolean(screening);
+        out.writeUTF(sketchType.name());
+        out.writeInt(sketchSize);
+        out.writeBoolean(refineSketch);
+        out.writeBoolean(singlePrecision);
+    }
+
+    /**
+     * Reads settings written by {@link #write(DataOutput)}.
+     * 
+     * @param in
+     *            The input.
+     * @return The settings.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public static LassoSettings read(final DataInput in) throws IOException {
+        try {
+            Builder builder = new Builder().iprint(in.readInt())
+                    .threads(in.readInt())
+                    .trustRegion(in.readDouble(), in.readDouble())
+                    .maxIterations(in.readInt()).racing(in.readBoolean());
+            builder.startPoints(StartPointStrategy.valueOf(in.readUTF()),
+                    in.readInt());
+            builder.screening(in.readBoolean());
+            builder.sketch(SketchType.valueOf(in.readUTF()), in.readInt(),
+                    in.readBoolean());
+            return builder.singlePrecision(in.readBoolean()).build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid solver settings: "
+                    + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compressed mapping information of a read set. Reads that map to the same
+ * set of genomes (their mapping pattern) are stored only once together with
+ * their count. The number of distinct patterns is usually orders of magnitude
+ * smaller than the number of reads.
+ * 
+ * @author aiche
+ */
+public final class MappingPatterns {
+
+    private final int numGenomes;
+    private final List<int[]> patterns;
+    private final Map<BitSet, Integer> index;
+    private int[] counts;
+    private int numPatterns;
+    private int numUnmapped;
+    /**
+     * Resampled patterns share the pattern storage and cannot be extended.
+     */
+    private final boolean resampled;
+
+    /**
+     * Creates an empty set of patterns.
+     * 
+     * @param numGenomes
+     *            The number of genomes.
+     */
+    public MappingPatterns(final int numGenomes) {
+        this.numGenomes = numGenomes;
+        this.patterns = new ArrayList<int[]>();
+        this.index = new HashMap<BitSet, Integer>();
+        this.counts = new int[16];
+        this.numPatterns = 0;
+        this.numUnmapped = 0;
+        this.resampled = false;
+    }
+
+    private MappingPatterns(final MappingPatterns other, final int[] counts,
+            final int numUnmapped) {
+        this.numGenomes = other.numGenomes;
+        this.patterns = other.patterns;
+        this.index = other.index;
+        this.counts = counts;
+        this.numPatterns = counts.length;
+        this.numUnmapped = numUnmapped;
+        this.resampled = true;
+    }
+
+    /**
+     * Adds a single read.
+     * 
+     * @param pattern
+     *            The genomes the read maps to.
+     * @return The index of the pattern of the read, -1 if the read maps to no
+     *         genome.
+     */
+    public int add(final BitSet pattern) {
+        if (resampled) {
+            throw new IllegalStateException(
+                    "Resampled mapping patterns cannot be extended.");
+        }
+        if (pattern.isEmpty()) {
+            ++numUnmapped;
+            return -1;
+        }
+        Integer p = index.get(pattern);
+        if (p == null) {
+            p = patterns.size();
+            int[] genomes = new int[pattern.cardinality()];
+            for (int g = pattern.nextSetBit(0), i = 0; g >= 0; g = pattern
+                    .nextSetBit(g + 1)) {
+                genomes[i++] = g;
+            }
+            patterns.add(genomes);
+            index.put((BitSet) pattern.clone(), p);
+            ++numPatterns;
+            if (p == counts.length) {
+                int[] grown = new int[2 * counts.length];
+                System.arraycopy(counts, 0, grown, 0, counts.length);
+                counts = grown;
+            }
+        }
+        ++counts[p];
+        return p;
+    }
+
+    /**
+     * Creates patterns with the same mapping patterns but different counts,
+     * e.g., of a bootstrap sample of the reads.
+     * 
+     * @param readPatterns
+     *            The pattern index of every read as returned by
+     *            {@link #add(BitSet)}.
+     * @param weights
+     *            The number of times every read is contained in the sample.
+     * @return The patterns of the sample.
+     */
+    public MappingPatterns resample(final int[] readPatterns,
+            final int[] weights) {
+        int[] sampleCounts = new int[numPatterns];
+        int unmapped = 0;
+        for (int r = 0; r < readPatterns.length; ++r) {
+            int p = readPatterns[r];
+            if (p < 0) {
+                unmapped += weights[r];
+            } else {
+                sampleCounts[p] += weights[r];
+            }
+        }
+        return new MappingPatterns(this, sampleCounts, unmapped);
+    }
+
+    /**
+     * @return The number of reads mapping to every genome (reads mapping to
+     *         several genomes are counted for each of them).
+     */
+    public int[] getGenomeCounts() {
+        int[] genomeCounts = new int[numGenomes];
+        for (int p = 0; p < numPatterns; ++p) {
+            for (int g : patterns.get(p)) {
+                genomeCounts[g] += counts[p];
+            }
+        }
+        return genomeCounts;
+    }
+
+    /**
+     * @return The number of genomes.
+     */
+    public int getNumGenomes() {
+        return numGenomes;
+    }
+
+    /**
+     * @return The number of distinct (non-empty) mapping patterns.
+     */
+    public int getNumPatterns() {
+        return numPatterns;
+    }
+
+    /**
+     * @param p
+     *            The pattern index.
+     * @return The number of reads with the given pattern.
+     */
+    public int getCount(final int p) {
+        return counts[p];
+    }
+
+    /**
+     * @param p
+     *            The pattern index.
+     * @return The sorted indices of the genomes of the pattern.
+     */
+    public int[] getGenomes(final int p) {
+        return patterns.get(p).clone();
+    }
+
+    /**
+     * @return The number of reads that map to no genome.
+     */
+    public int getNumUnmapped() {
+        return numUnmapped;
+    }
+
+    /**
+     * @return The number of reads that map to at least one genome.
+     */
+    public long getNumMapped() {
+        long mapped = 0;
+        for (int p = 0; p < numPatterns; ++p) {
+            mapped += counts[p];
+        }
+        return mapped;
+    }
+
+    /**
+     * The genomes of the pattern without copying, for the solvers.
+     */
+    int[] getGenomesUnsafe(final int p) {
+        return patterns.get(p);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import com.cureos.numerics.Calcfc;
+
+/**
+ * Wraps a {@link CobylaObjective} and keeps track of the progress of a single
+ * COBYLA run, i.e., the number of function evaluations and the best feasible
+ * solution found so far. The run is abandoned once the solve is stopped and,
+ * if the run takes part in a {@link Race}, once it is clearly dominated.
+ * 
+ * @author aiche
+ */
+final class MonitoredObjective implements Calcfc {
+
+    /**
+     * Tolerance used to decide if a point satisfies the constraints.
+     */
+    private static final double FEASIBILITY_TOLERANCE = 1.0e-8;
+
+    private final CobylaObjective objective;
+    private final SolveControl control;
+    private final Race race;
+
+    private int evaluations;
+    private double bestObjective;
+    private double[] bestSolution;
+
+    /**
+     * @param objective
+     *            The objective to optimize.
+     * @param control
+     *            The stop flag of the solve.
+     * @param race
+     *            The race this run takes part in, can be null.
+     */
+    MonitoredObjective(final CobylaObjective objective,
+            final SolveControl control, final Race race) {
+        this.objective = objective;
+        this.control = control;
+        this.race = race;
+        evaluations = 0;
+        bestObjective = Double.POSITIVE_INFINITY;
+        bestSolution = null;
+    }
+
+    @Override
+    public double Compute(int numVariables, int numConstraints, double[] x,
+            double[] con) {
+        control.checkContinue();
+
+        double value = objective.Compute(numVariables, numConstraints, x, con);
+        ++evaluations;
+
+        if (value < bestObjective && isFeasible(con)) {
+            bestObjective = value;
+            bestSolution = x.clone();
+        }
+
+        if (race != null && race.shouldReport(evaluations)) {
+            race.report(this, x);
+        }
+
+        return value;
+    }
+
+    private boolean isFeasible(double[] con) {
+        for (double c : con) {
+            if (c < -FEASIBILITY_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of function evaluations performed so far.
+     */
+    int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return The best objective value of a feasible point seen so far.
+     */
+    double getBestObjective() {
+        return bestObjective;
+    }
+
+    /**
+     * @return The best feasible point seen so far or null if none was seen.
+     */
+    double[] getBestSolution() {
+        return bestSolution;
+    }
+}
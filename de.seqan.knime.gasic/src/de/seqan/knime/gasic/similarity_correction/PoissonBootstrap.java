@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.Random;
+
+/**
+ * Poisson bootstrap: instead of drawing n indices with replacement, every
+ * element is included k ~ Poisson(1) times, independently of all other
+ * elements. For large n this is equivalent to the multinomial bootstrap, but
+ * a sample can be drawn in a single pass without storing (and sorting) the n
+ * drawn indices. The size of a sample is n in expectation only.
+ * 
+ * @author aiche
+ */
+public final class PoissonBootstrap {
+
+    /**
+     * exp(-1), the probability of weight 0.
+     */
+    private static final double EXP_MINUS_ONE = Math.exp(-1.0);
+
+    private PoissonBootstrap() {
+    }
+
+    /**
+     * Draws the weight of a single element.
+     * 
+     * @param random
+     *            The source of randomness.
+     * @return A Poisson(1) distributed weight, the number of times the element
+     *         is included in the sample.
+     */
+    public static int nextWeight(final Random random) {
+        // inversion by sequential search, needs two uniform numbers on average
+        double u = random.nextDouble();
+        double p = EXP_MINUS_ONE;
+        int k = 0;
+        while (u > p) {
+            u -= p;
+            ++k;
+            p /= k;
+        }
+        return k;
+    }
+}
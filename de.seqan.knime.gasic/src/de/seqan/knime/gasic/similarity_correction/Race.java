@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared state of a racing multistart optimization. All runs of one
+ * {@link LassoCorrection#similarityCorrection(org.ejml.simple.SimpleMatrix, org.ejml.simple.SimpleMatrix)}
+ * call periodically report their best objective value. Runs that clearly
+ * trail the current leader or that approach a solution another run already
+ * converged to are abandoned.
+ * 
+ * @author aiche
+ */
+final class Race {
+
+    /**
+     * Number of function evaluations between two reports of a run.
+     */
+    static final int REPORT_INTERVAL = 50;
+
+    /**
+     * Number of function evaluations a run may perform before it can be
+     * abandoned.
+     */
+    static final int MIN_EVALUATIONS = 200;
+
+    /**
+     * A run is trailing if its best objective exceeds the leading objective
+     * by this factor (plus {@link #ABSOLUTE_MARGIN}).
+     */
+    static final double TRAILING_FACTOR = 10.0;
+    static final double ABSOLUTE_MARGIN = 1.0e-8;
+
+    /**
+     * Two solutions closer than this (maximum norm) are considered to be in
+     * the same basin.
+     */
+    static final double BASIN_TOLERANCE = 1.0e-4;
+
+    private double leadingObjective;
+    private final List<double[]> convergedSolutions;
+
+    Race() {
+        leadingObjective = Double.POSITIVE_INFINITY;
+        convergedSolutions = new ArrayList<double[]>();
+    }
+
+    boolean shouldReport(int evaluations) {
+        return evaluations % REPORT_INTERVAL == 0;
+    }
+
+    /**
+     * Report the progress of a run. Throws a {@link RunAbandonedException} if
+     * the run should be stopped.
+     * 
+     * @param run
+     *            The reporting run.
+     * @param x
+     *            The current point of the run.
+     */
+    synchronized void report(MonitoredObjective run, double[] x) {
+        final double runObjective = run.getBestObjective();
+        if (runObjective < leadingObjective) {
+            leadingObjective = runObjective;
+            return;
+        }
+
+        if (run.getEvaluations() < MIN_EVALUATIONS) {
+            return;
+        }
+
+        if (runObjective > TRAILING_FACTOR * leadingObjective
+                + ABSOLUTE_MARGIN) {
+            throw new RunAbandonedException("Run is dominated (objective "
+                    + runObjective + " vs. " + leadingObjective + ")");
+        }
+
+        if (findBasin(x) != null) {
+            throw new RunAbandonedException(
+                    "Run approaches an already converged solution");
+        }
+    }
+
+    /**
+     * Registers the solution of a converged run.
+     * 
+     * @param solution
+     *            The final solution of the run.
+     * @param objective
+     *            The objective value of the solution.
+     */
+    synchronized void converged(double[] solution, double objective) {
+        if (objective < leadingObjective) {
+            leadingObjective = objective;
+        }
+        // a basin is only needed once to abandon the runs approaching it
+        if (findBasin(solution) == null) {
+            convergedSolutions.add(solution);
+        }
+    }
+
+    private double[] findBasin(double[] x) {
+        for (double[] solution : convergedSolutions) {
+            if (maxDistance(solution, x) < BASIN_TOLERANCE) {
+                return solution;
+            }
+        }
+        return null;
+    }
+
+    private static double maxDistance(double[] a, double[] b) {
+        double d = 0.0;
+        for (int i = 0; i < a.length; ++i) {
+            d = Math.max(d, Math.abs(a[i] - b[i]));
+        }
+        return d;
+    }
+}
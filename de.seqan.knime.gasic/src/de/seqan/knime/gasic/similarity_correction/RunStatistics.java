@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+/**
+ * Immutable statistics of a single COBYLA run, i.e., the optimization from a
+ * single start point.
+ * 
+ * @author aiche
+ */
+public final class RunStatistics {
+
+    /**
+     * Final state of a run.
+     */
+    public enum Status {
+        /** COBYLA converged. */
+        CONVERGED,
+        /** COBYLA stopped after the maximal number of iterations. */
+        MAX_ITERATIONS_REACHED,
+        /** COBYLA stopped because of rounding errors. */
+        DIVERGING_ROUNDING_ERRORS,
+        /** The run was stopped early (racing or cancellation). */
+        ABANDONED,
+        /** The run was stopped by the time budget of the solve. */
+        BUDGET_EXCEEDED
+    }
+
+    private final int startPoint;
+    private final double objective;
+    private final int evaluations;
+    private final long time;
+    private final String thread;
+    private final Status status;
+
+    /**
+     * @param startPoint
+     *            Index of the start point of the run.
+     * @param objective
+     *            Objective value of the best feasible point of the run.
+     * @param evaluations
+     *            Number of function evaluations.
+     * @param time
+     *            Wall clock time of the run in milliseconds.
+     * @param thread
+     *            Name of the thread that executed the run.
+     * @param status
+     *            Final state of the run.
+     */
+    public RunStatistics(final int startPoint, final double objective,
+            final int evaluations, final long time, final String thread,
+            final Status status) {
+        this.startPoint = startPoint;
+        this.objective = objective;
+        this.evaluations = evaluations;
+        this.time = time;
+        this.thread = thread;
+        this.status = status;
+    }
+
+    public int getStartPoint() {
+        return startPoint;
+    }
+
+    public double getObjective() {
+        return objective;
+    }
+
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return True if COBYLA converged.
+     */
+    public boolean isConverged() {
+        return status == Status.CONVERGED;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Random projections compressing the rows of the least-squares system
+ * <code>S x = r</code> in the approximate mode of {@link LassoCorrection}.
+ * Both sketches apply the same k x m projection Phi to S and r, such that
+ * <code>||Phi (S x - r)||</code> approximates <code>||S x - r||</code> for all
+ * x with high probability.
+ * 
+ * @author aiche
+ */
+public enum SketchType {
+
+    /**
+     * Dense projection with independent N(0, 1/k) entries. Costs O(k m n).
+     */
+    GAUSSIAN {
+        @Override
+        void project(final double[] augmented, final int rows,
+                final int cols, final double[] sketch, final int sketchSize,
+                final Random random) {
+            final double scale = 1.0 / Math.sqrt(sketchSize);
+            for (int i = 0; i < rows; ++i) {
+                final int offset = i * cols;
+                for (int h = 0; h < sketchSize; ++h) {
+                    final double phi = random.nextGaussian() * scale;
+                    final int target = h * cols;
+                    for (int j = 0; j < cols; ++j) {
+                        sketch[target + j] += phi * augmented[offset + j];
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * Sparse projection with a few random +-1 entries per original row
+     * (OSNAP). Costs O(s m n) with s = min(k, 4) non-zeros per row.
+     */
+    SPARSE_SIGN {
+        @Override
+        void project(final double[] augmented, final int rows,
+                final int cols, final double[] sketch, final int sketchSize,
+                final Random random) {
+            final int nonZeros = Math.min(sketchSize, MAX_NON_ZEROS);
+            final double scale = 1.0 / Math.sqrt(nonZeros);
+            for (int i = 0; i < rows; ++i) {
+                final int offset = i * cols;
+                for (int s = 0; s < nonZeros; ++s) {
+                    // one target row in each of the s blocks of the sketch
+                    final int begin = s * sketchSize / nonZeros;
+                    final int end = (s + 1) * sketchSize / nonZeros;
+                    final int target = (begin + random.nextInt(end - begin))
+                            * cols;
+                    final double phi = (random.nextBoolean() ? scale : -scale);
+                    for (int j = 0; j < cols; ++j) {
+                        sketch[target + j] += phi * augmented[offset + j];
+                    }
+                }
+            }
+        }
+    };
+
+    /**
+     * Maximal number of non-zeros per row of the sparse sign sketch.
+     */
+    private static final int MAX_NON_ZEROS = 4;
+
+    /**
+     * Adds the projection of the row-major rows x cols matrix augmented to the
+     * row-major sketchSize x cols matrix sketch.
+     */
+    abstract void project(double[] augmented, int rows, int cols,
+            double[] sketch, int sketchSize, Random random);
+
+    /**
+     * Sketches the system <code>S x = r</code>.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param sketchSize
+     *            The number of rows k of the sketched system.
+     * @param random
+     *            Source of the random projection.
+     * @return The sketched matrix (k x n) and the sketched reads (k x 1).
+     */
+    SimpleMatrix[] sketch(final SimpleMatrix sm, final SimpleMatrix reads,
+            final int sketchSize, final Random random) {
+        final int rows = sm.numRows();
+        final int cols = sm.numCols() + 1;
+
+        // [S | r], such that both see the same projection
+        double[] augmented = new double[rows * cols];
+        for (int i = 0; i < rows; ++i) {
+            for (int j = 0; j < cols - 1; ++j) {
+                augmented[i * cols + j] = sm.get(i, j);
+            }
+            augmented[i * cols + cols - 1] = reads.get(i, 0);
+        }
+
+        double[] sketch = new double[sketchSize * cols];
+        project(augmented, rows, cols, sketch, sketchSize, random);
+
+        SimpleMatrix sketchedSm = new SimpleMatrix(sketchSize, cols - 1);
+        SimpleMatrix sketchedReads = new SimpleMatrix(sketchSize, 1);
+        for (int h = 0; h < sketchSize; ++h) {
+            for (int j = 0; j < cols - 1; ++j) {
+                sketchedSm.set(h, j, sketch[h * cols + j]);
+            }
+            sketchedReads.set(h, 0, sketch[h * cols + cols - 1]);
+        }
+        return new SimpleMatrix[] { sketchedSm, sketchedReads };
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+/**
+ * Shared stop flag of all COBYLA runs of a single solve. It is checked on
+ * every function evaluation, so setting it stops all runs almost
+ * immediately. The flag is also set once the deadline of the solve passes.
+ * 
+ * @author aiche
+ */
+final class SolveControl {
+
+    private volatile boolean stopped;
+    private volatile boolean budgetExceeded;
+    private final long deadline;
+
+    SolveControl() {
+        this(LassoCorrection.NO_DEADLINE);
+    }
+
+    /**
+     * @param deadline
+     *            The runs stop once {@link System#currentTimeMillis()} reaches
+     *            this.
+     */
+    SolveControl(final long deadline) {
+        this.deadline = deadline;
+        stopped = false;
+        budgetExceeded = false;
+    }
+
+    /**
+     * Signals all runs to stop at their next function evaluation.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return True if the runs were stopped because the deadline passed.
+     */
+    boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Stops all runs if the deadline passed.
+     */
+    void checkDeadline() {
+        if (!stopped && deadline != LassoCorrection.NO_DEADLINE
+                && System.currentTimeMillis() >= deadline) {
+            budgetExceeded = true;
+            stopped = true;
+        }
+    }
+
+    /**
+     * @throws RunAbandonedException
+     *             If the runs should stop.
+     */
+    void checkContinue() {
+        checkDeadline();
+        if (stopped) {
+            throw new RunAbandonedException("Solve was stopped");
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived thread pool executing the COBYLA runs of {@link LassoCorrection}.
+ * It is meant to be shared by all solves of an owner (e.g., a node) instead of
+ * creating a new pool for every solve.
+ * 
+ * @author aiche
+ */
+public final class SolverExecutor {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+    private final ExecutorService executor;
+    private final int numThreads;
+
+    /**
+     * @param numThreads
+     *            The number of worker threads.
+     */
+    public SolverExecutor(final int numThreads) {
+        this.numThreads = numThreads;
+        final int pool = POOL_COUNTER.incrementAndGet();
+        executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactory() {
+                    private final AtomicInteger threadCounter = new AtomicInteger(
+                            0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "GASiC-Solver-" + pool + "-"
+                                + threadCounter.incrementAndGet());
+                        // never keep the VM alive because of idle solvers
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @return The underlying executor.
+     */
+    ExecutorService getExecutorService() {
+        return executor;
+    }
+
+    /**
+     * @return True if {@link #shutdown()} was called.
+     */
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Stops all running COBYLA runs and releases the worker threads.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
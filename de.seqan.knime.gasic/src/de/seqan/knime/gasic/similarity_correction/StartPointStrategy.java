@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2013-2014, Knut Reinert, Freie Uinversitaet Berlin
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Knut Reinert or the Freie Universitaet Berlin nor 
+ *       the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL KNUT REINERT OR THE FREIE UNIVESITAET  
+ * BERLIN BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, 
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.seqan.knime.gasic.similarity_correction;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Strategies to generate the start points of the multistart COBYLA
+ * optimization in {@link LassoCorrection}.
+ * 
+ * @author aiche
+ */
+public enum StartPointStrategy {
+
+    /**
+     * Fixed grid of 3N+1 (14 for a single genome) start points, each
+     * favoring a single genome. The number of start points grows linearly
+     * with the number of genomes and does not depend on the data.
+     */
+    HEURISTIC {
+        @Override
+        double[][] createStartPoints(final SimpleMatrix sm,
+                final SimpleMatrix reads, final int numStarts) {
+            final int numGenoms = sm.numCols();
+            // integer division as in the original implementation, so the
+            // equal start points only exist for a single genome; older
+            // workflows rely on reproducing its results
+            int possibleEquals = (int) Math.floor((1 / numGenoms) / 0.1);
+
+            double[][] initialValues = new double[(3 * numGenoms) + 1
+                    + possibleEquals][];
+
+            double lowStart = 0.1 / (numGenoms - 1);
+            for (int i = 0; i < numGenoms; ++i) {
+                initialValues[i] = new double[numGenoms];
+                Arrays.fill(initialValues[i], lowStart);
+                initialValues[i][i] = 0.9;
+            }
+
+            lowStart = 0.2 / (numGenoms - 1);
+            for (int i = 0; i < numGenoms; ++i) {
+                initialValues[numGenoms + i] = new double[numGenoms];
+                Arrays.fill(initialValues[numGenoms + i], lowStart);
+                initialValues[numGenoms + i][i] = 0.8;
+            }
+
+            for (int i = 0; i < numGenoms; ++i) {
+                initialValues[(2 * numGenoms) + i] = new double[numGenoms];
+                Arrays.fill(initialValues[(2 * numGenoms) + i], 0.01);
+                initialValues[(2 * numGenoms) + i][i] = 0.9;
+            }
+
+            for (int i = 0; i < possibleEquals; ++i) {
+                double startParameter = 1.0 / numGenoms - (i * 0.1);
+                initialValues[(3 * numGenoms) + i] = new double[numGenoms];
+                Arrays.fill(initialValues[(3 * numGenoms) + i],
+                        startParameter);
+            }
+
+            initialValues[initialValues.length - 1] = new double[numGenoms];
+            Arrays.fill(initialValues[initialValues.length - 1], 0.5);
+
+            return initialValues;
+        }
+    },
+
+    /**
+     * A fixed number of start points derived from the data: the projection
+     * of the unconstrained least-squares solution onto the feasible set, the
+     * projected normalized read vector and random perturbations of the
+     * former.
+     */
+    DATA_DRIVEN {
+        @Override
+        double[][] createStartPoints(final SimpleMatrix sm,
+                final SimpleMatrix reads, final int numStarts) {
+            final int numGenoms = sm.numCols();
+            double[][] initialValues = new double[Math.max(1, numStarts)][];
+
+            // the least-squares solution (pseudo inverse also covers singular
+            // similarity matrices)
+            double[] leastSquares = sm.pseudoInverse().mult(reads).getMatrix()
+                    .getData().clone();
+            initialValues[0] = projectOnFeasibleSet(leastSquares);
+
+            if (initialValues.length > 1) {
+                double[] observed = new double[numGenoms];
+                for (int i = 0; i < numGenoms; ++i) {
+                    observed[i] = reads.get(i, 0);
+                }
+                initialValues[1] = projectOnFeasibleSet(observed);
+            }
+
+            // the perturbations should be reproducible
+            Random rnd = new Random(PERTURBATION_SEED);
+            for (int p = 2; p < initialValues.length; ++p) {
+                double[] perturbed = new double[numGenoms];
+                for (int i = 0; i < numGenoms; ++i) {
+                    perturbed[i] = initialValues[0][i]
+                            * (1.0 + PERTURBATION_SCALE * rnd.nextGaussian())
+                            + PERTURBATION_SCALE / numGenoms * rnd.nextDouble();
+                }
+                initialValues[p] = projectOnFeasibleSet(perturbed);
+            }
+
+            return initialValues;
+        }
+    };
+
+    /**
+     * Seed of the random perturbations of the {@link #DATA_DRIVEN} strategy.
+     */
+    private static final long PERTURBATION_SEED = 20140512L;
+
+    /**
+     * Relative size of the random perturbations of the {@link #DATA_DRIVEN}
+     * strategy.
+     */
+    private static final double PERTURBATION_SCALE = 0.25;
+
+    /**
+     * Creates the start points for the given problem.
+     * 
+     * @param sm
+     *            Matrix with pairwise similarities between species.
+     * @param reads
+     *            Vector of read counts per species (normalized).
+     * @param numStarts
+     *            Requested number of start points. Ignored by strategies with
+     *            a fixed number of start points.
+     * @return The start points, each as a new array.
+     */
+    abstract double[][] createStartPoints(final SimpleMatrix sm,
+            final SimpleMatrix reads, final int numStarts);
+
+    /**
+     * Euclidean projection of x onto the set {x >= 0, sum(x) <= 1}. Works in
+     * place.
+     * 
+     * @param x
+     *            The point to project.
+     * @return x
+     */
+    static double[] projectOnFeasibleSet(final double[] x) {
+        return projectOnFeasibleSet(x, 1.0);
+    }
+
+    /**
+     * Euclidean projection of x onto the set {x >= 0, sum(x) <= bound}. Works
+     * in place.
+     * 
+     * @param x
+     *            The point to project.
+     * @param bound
+     *            The upper bound of the sum of x.
+     * @return x
+     */
+    static double[] projectOnFeasibleSet(final double[] x, final double bound) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; ++i) {
+            x[i] = Math.max(0.0, x[i]);
+            sum += x[i];
+        }
+        if (sum <= bound) {
+            return x;
+        }
+
+        // projection onto the simplex, see Duchi et al. (2008)
+        double[] sorted = x.clone();
+        Arrays.sort(sorted);
+        double cumulative = 0.0;
+        double theta = 0.0;
+        for (int i = sorted.length - 1; i >= 0; --i) {
+            cumulative += sorted[i];
+            double t = (cumulative - bound) / (sorted.length - i);
+            if (i == 0 || sorted[i - 1] <= t) {
+                theta = t;
+                break;
+            }
+        }
+        for (int i = 0; i < x.length; ++i) {
+            x[i] = Math.max(0.0, x[i] - theta);
+        }
+        return x;
+    }
+}